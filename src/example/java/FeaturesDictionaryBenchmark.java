@@ -0,0 +1,133 @@
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+import it.cnr.isti.hlt.nlp4sparkml.indexer.FeaturesDictionary;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Measure the memory footprint and the lookup time of {@link FeaturesDictionary} (on the heap, off-heap and
+ * memory-mapped) compared with a HashMap&lt;String, Long&gt;. The features are random words generated in memory.
+ */
+public class FeaturesDictionaryBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int numFeatures = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int numLookups = args.length > 1 ? Integer.parseInt(args[1]) : 2000000;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        Random r = new Random(1);
+        String[] features = new String[numFeatures];
+        long[] ids = new long[numFeatures];
+        HashMap<String, Boolean> seen = new HashMap<>();
+        for (int i = 0; i < numFeatures; ) {
+            StringBuilder sb = new StringBuilder();
+            int len = 3 + r.nextInt(10);
+            for (int j = 0; j < len; j++)
+                sb.append((char) ('a' + Math.min(25, (int) Math.abs(r.nextGaussian() * 6))));
+            String feature = sb.toString();
+            if (seen.put(feature, true) == null) {
+                features[i] = feature;
+                ids[i] = i;
+                i++;
+            }
+        }
+        seen = null;
+        String[] queries = new String[numLookups];
+        for (int i = 0; i < numLookups; i++)
+            queries[i] = r.nextInt(10) == 0 ? features[r.nextInt(numFeatures)] + "#" : features[r.nextInt(numFeatures)];
+
+        long before = usedMemory();
+        HashMap<String, Long> map = new HashMap<>();
+        for (int i = 0; i < numFeatures; i++)
+            map.put(new String(features[i]), ids[i]);
+        long mapBytes = usedMemory() - before;
+
+        FeaturesDictionary dictionary = FeaturesDictionary.build(features, ids);
+        FeaturesDictionary offHeap = dictionary.offHeap();
+        Path file = Files.createTempFile("nlp4sparkml", ".dict");
+        dictionary.writeTo(file);
+        FeaturesDictionary mapped = FeaturesDictionary.map(file);
+        System.out.println(String.format(Locale.ROOT, "%d features: HashMap %.1f bytes/feature, dictionary %.1f bytes/feature",
+                numFeatures, mapBytes / (double) numFeatures, dictionary.sizeInBytes() / (double) numFeatures));
+
+        for (int it = 0; it < iterations; it++) {
+            long checksum = 0;
+            long start = System.nanoTime();
+            for (String q : queries) {
+                Long id = map.get(q);
+                checksum += id != null ? id : -1;
+            }
+            double mapNs = (System.nanoTime() - start) / (double) numLookups;
+
+            start = System.nanoTime();
+            for (String q : queries)
+                checksum -= dictionary.getID(q);
+            double heapNs = (System.nanoTime() - start) / (double) numLookups;
+
+            start = System.nanoTime();
+            for (String q : queries)
+                checksum += offHeap.getID(q);
+            double offHeapNs = (System.nanoTime() - start) / (double) numLookups;
+
+            start = System.nanoTime();
+            for (String q : queries)
+                checksum -= mapped.getID(q);
+            double mappedNs = (System.nanoTime() - start) / (double) numLookups;
+
+            System.out.println(String.format(Locale.ROOT, "Iteration %d: HashMap %.0f ns, heap %.0f ns, off-heap %.0f ns, mapped %.0f ns per lookup (checksum %d)",
+                    it, mapNs, heapNs, offHeapNs, mappedNs, checksum));
+        }
+        Files.delete(file);
+    }
+
+    private static long usedMemory() {
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        Runtime rt = Runtime.getRuntime();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+import it.cnr.isti.hlt.nlp4sparkml.classifier.boosting.BoostClassifier;
+import it.cnr.isti.hlt.nlp4sparkml.classifier.boosting.WeakHypothesis;
+import it.cnr.isti.hlt.nlp4sparkml.data.DataUtils;
+import it.cnr.isti.hlt.nlp4sparkml.data.MultilabelPoint;
+import it.cnr.isti.hlt.nlp4sparkml.data.PointClassificationResults;
+import it.cnr.isti.hlt.nlp4sparkml.utils.KryoUtils;
+import org.apache.spark.SparkConf;
+import org.apache.spark.serializer.JavaSerializer;
+import org.apache.spark.serializer.KryoSerializer;
+import org.apache.spark.serializer.SerializerInstance;
+import scala.reflect.ClassTag;
+import scala.reflect.ClassTag$;
+
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Compare, for the main nlp4sparkml classes, the serialized size and the serialization/deserialization
+ * throughput of the Java serialization with the Kryo serialization configured by {@link KryoUtils#enableKryo(SparkConf)}.
+ * Usage: KryoSerializationBenchmark [iterations] [className]. Since the JIT profile of the shared benchmark loop is
+ * polluted by the previously measured classes, run each class in its own JVM to get precise numbers.
+ */
+public class KryoSerializationBenchmark {
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        String className = args.length > 1 ? args[1] : null;
+        SparkConf conf = KryoUtils.enableKryo(new SparkConf());
+        SerializerInstance java = new JavaSerializer(conf).newInstance();
+        SerializerInstance kryo = new KryoSerializer(conf).newInstance();
+
+        Random r = new Random(1);
+        int[] features = new int[200];
+        double[] weights = new double[features.length];
+        for (int i = 0; i < features.length; i++) {
+            features[i] = i * 37 + r.nextInt(37);
+            weights[i] = r.nextDouble();
+        }
+        int[] documents = new int[1000];
+        int[][] labels = new int[documents.length][];
+        for (int i = 0; i < documents.length; i++) {
+            documents[i] = i * 3;
+            labels[i] = new int[]{r.nextInt(90), r.nextInt(90)};
+        }
+        int numLabels = 90;
+        WeakHypothesis[] whs = new WeakHypothesis[100];
+        for (int i = 0; i < whs.length; i++) {
+            whs[i] = new WeakHypothesis(numLabels);
+            for (int labelID = 0; labelID < numLabels; labelID++)
+                whs[i].setLabelData(labelID, new WeakHypothesis.WeakHypothesisData(labelID, r.nextInt(10000), r.nextGaussian(), r.nextGaussian()));
+        }
+        double[] scores = new double[numLabels];
+        int[] resultLabels = new int[numLabels];
+        for (int i = 0; i < numLabels; i++) {
+            resultLabels[i] = i;
+            scores[i] = r.nextGaussian();
+        }
+
+        run("MultilabelPoint", new MultilabelPoint(1, 10000, features, weights, new int[]{3, 7}), MultilabelPoint.class, java, kryo, iterations, className);
+        run("FeatureDocuments", new DataUtils.FeatureDocuments(5, documents, labels), DataUtils.FeatureDocuments.class, java, kryo, iterations / 10, className);
+        run("LabelDocuments", new DataUtils.LabelDocuments(5, documents), DataUtils.LabelDocuments.class, java, kryo, iterations, className);
+        run("WeakHypothesis", whs[0], WeakHypothesis.class, java, kryo, iterations, className);
+        run("BoostClassifier", new BoostClassifier(whs), BoostClassifier.class, java, kryo, iterations / 100, className);
+        run("PointClassificationResults", new PointClassificationResults(1, resultLabels, scores, new double[numLabels]),
+                PointClassificationResults.class, java, kryo, iterations, className);
+    }
+
+    private static <T> void run(String name, T obj, Class<T> cls, SerializerInstance java, SerializerInstance kryo, int iterations, String className) {
+        if (className != null && !className.equals(name))
+            return;
+        ClassTag<T> tag = ClassTag$.MODULE$.apply(cls);
+        System.out.println(name + ":");
+        for (SerializerInstance ser : new SerializerInstance[]{java, kryo}) {
+            // Warm up.
+            for (int i = 0; i < iterations; i++)
+                ser.deserialize(ser.serialize(obj, tag), tag);
+
+            long start = System.nanoTime();
+            ByteBuffer bytes = null;
+            for (int i = 0; i < iterations; i++)
+                bytes = ser.serialize(obj, tag);
+            double serSecs = (System.nanoTime() - start) / 1e9;
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                bytes.rewind();
+                ser.deserialize(bytes, tag);
+            }
+            double deserSecs = (System.nanoTime() - start) / 1e9;
+            System.out.println(String.format(Locale.ROOT, "  %-6s size %8d bytes, ser %10.0f ops/s, deser %10.0f ops/s",
+                    ser == java ? "java" : "kryo", bytes.limit(), iterations / serSecs, iterations / deserSecs));
+        }
+    }
+}
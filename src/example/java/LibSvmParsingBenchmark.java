@@ -0,0 +1,122 @@
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+import it.cnr.isti.hlt.nlp4sparkml.data.LibSvmLineParser;
+import it.cnr.isti.hlt.nlp4sparkml.data.MultilabelPoint;
+
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Measure the throughput (in MB/s) of the LibSvm lines parsing, comparing the old parsing based on
+ * regular expressions with {@link LibSvmLineParser}. The lines are generated in memory, so the
+ * benchmark measures only the CPU cost of the parsing.
+ */
+public class LibSvmParsingBenchmark {
+
+    public static void main(String[] args) {
+        int numLines = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        // Generate lines similar to a sparse textual dataset.
+        Random r = new Random(1);
+        ArrayList<String> lines = new ArrayList<>();
+        long numBytes = 0;
+        for (int i = 0; i < numLines; i++) {
+            StringBuilder sb = new StringBuilder();
+            sb.append(r.nextInt(90) + 1);
+            if (r.nextBoolean())
+                sb.append(',').append(r.nextInt(90) + 1);
+            int numFeatures = 20 + r.nextInt(100);
+            int featID = 0;
+            for (int j = 0; j < numFeatures; j++) {
+                featID += 1 + r.nextInt(500);
+                sb.append(' ').append(featID).append(':').append(String.format(Locale.ROOT, "%.6f", r.nextDouble()));
+            }
+            String line = sb.toString();
+            numBytes += line.length() + 1;
+            lines.add(line);
+        }
+        double mb = numBytes / (1024.0 * 1024.0);
+        System.out.println("Generated " + numLines + " lines, " + String.format(Locale.ROOT, "%.1f", mb) + " MB");
+
+        LibSvmLineParser parser = new LibSvmLineParser(false, false);
+        for (int it = 0; it < iterations; it++) {
+            long checksum = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < lines.size(); i++)
+                checksum += splitParse(lines.get(i), i, 0).getFeatures().length;
+            double splitSecs = (System.nanoTime() - start) / 1e9;
+
+            start = System.nanoTime();
+            for (int i = 0; i < lines.size(); i++)
+                checksum -= parser.parse(lines.get(i), i, 0).getFeatures().length;
+            double parserSecs = (System.nanoTime() - start) / 1e9;
+
+            System.out.println(String.format(Locale.ROOT, "Iteration %d: split %.1f MB/s, parser %.1f MB/s (checksum %d)",
+                    it, mb / splitSecs, mb / parserSecs, checksum));
+        }
+    }
+
+    /**
+     * The parsing originally used by DataUtils.
+     */
+    private static MultilabelPoint splitParse(String line, int index, int numFeatures) {
+        String[] fields = line.split("\\s+");
+        String[] t = fields[0].split(",");
+        int[] labels = new int[t.length];
+        for (int i = 0; i < t.length; i++)
+            labels[i] = new Double(Double.parseDouble(t[i])).intValue() - 1;
+        ArrayList<Integer> indexes = new ArrayList<Integer>();
+        ArrayList<Double> values = new ArrayList<Double>();
+        for (int j = 1; j < fields.length; j++) {
+            String data = fields[j];
+            if (data.startsWith("#"))
+                break;
+            String[] featInfo = data.split(":");
+            indexes.add(Integer.parseInt(featInfo[0]) - 1);
+            values.add(Double.parseDouble(featInfo[1]));
+        }
+        return new MultilabelPoint(index, numFeatures, indexes.stream().mapToInt(i -> i).toArray(), values.stream().mapToDouble(i -> i).toArray(), labels);
+    }
+}
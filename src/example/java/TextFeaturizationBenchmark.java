@@ -0,0 +1,112 @@
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+import it.cnr.isti.hlt.nlp4sparkml.featurizer.TextFeaturizer;
+import it.cnr.isti.hlt.nlp4sparkml.indexer.IdentifierGenerator;
+import it.cnr.isti.hlt.nlp4sparkml.indexer.IdentifierGeneratorModel;
+import it.cnr.isti.hlt.nlp4sparkml.indexer.OccurrencesCounter;
+import it.cnr.isti.hlt.nlp4sparkml.tokenizer.PuntuactionTokenizer;
+import it.cnr.isti.hlt.nlp4sparkml.utils.Logging;
+import it.cnr.isti.hlt.nlp4sparkml.weighter.TfIdfWeighter;
+import it.cnr.isti.hlt.nlp4sparkml.weighter.TfIdfWeighterModel;
+import org.apache.spark.SparkConf;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.sql.DataFrame;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.RowFactory;
+import org.apache.spark.sql.SQLContext;
+import org.apache.spark.sql.types.DataTypes;
+import org.apache.spark.sql.types.StructField;
+import org.apache.spark.sql.types.StructType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Compare the end-to-end featurization time of the chained stages {@link PuntuactionTokenizer} -&gt;
+ * {@link IdentifierGeneratorModel} -&gt; {@link OccurrencesCounter} -&gt; {@link TfIdfWeighterModel} with the
+ * fused {@link TextFeaturizer} configured with the same fitted components. The documents are random texts
+ * generated in memory and the transformations are run on a local Spark context.
+ */
+public class TextFeaturizationBenchmark {
+
+    public static void main(String[] args) {
+        int numDocs = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int docLength = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+        Logging.disableSparkLogging();
+        Logging.disableNLP4SparkMLLogging();
+        JavaSparkContext sc = new JavaSparkContext("local[*]", "TextFeaturizationBenchmark",
+                new SparkConf().set("spark.sql.shuffle.partitions", "8"));
+        try {
+            Random r = new Random(1);
+            ArrayList<Row> docs = new ArrayList<>();
+            for (int i = 0; i < numDocs; i++) {
+                StringBuilder sb = new StringBuilder();
+                for (int j = 0; j < docLength; j++) {
+                    int word = (int) Math.min(100000, Math.abs(r.nextGaussian() * 5000));
+                    sb.append('w').append(word).append(j % 15 == 14 ? ". " : " ");
+                }
+                docs.add(RowFactory.create((long) i, sb.toString()));
+            }
+            StructType schema = DataTypes.createStructType(new StructField[]{
+                    DataTypes.createStructField("docID", DataTypes.LongType, false),
+                    DataTypes.createStructField("content", DataTypes.StringType, false)
+            });
+            DataFrame df = new SQLContext(sc).createDataFrame(sc.parallelize(docs, sc.defaultParallelism() * 2), schema).cache();
+            df.count();
+
+            PuntuactionTokenizer tokenizer = new PuntuactionTokenizer();
+            tokenizer.setInputCol("content").setOutputCol("tokens");
+            IdentifierGenerator identifierEstimator = new IdentifierGenerator();
+            identifierEstimator.setFeaturesFields(new ArrayList<>(Collections.singletonList("tokens")));
+            IdentifierGeneratorModel indexer = identifierEstimator.fit(tokenizer.transform(df));
+            indexer.setIdCol("docID").setInputCol(new ArrayList<>(Collections.singletonList("tokens"))).setOutputCol("featuresIndexed");
+            OccurrencesCounter counter = new OccurrencesCounter();
+            counter.setInputCol("featuresIndexed").setOutputCol("occurrences");
+            TfIdfWeighterModel weighter = new TfIdfWeighter().setInputCol("occurrences").fit(counter.transform(indexer.transform(tokenizer.transform(df))));
+            weighter.setInputCol("occurrences").setOutputCol("weights");
+
+            TextFeaturizer featurizer = new TextFeaturizer().setComponents(tokenizer, indexer, weighter)
+                    .setInputCol("content").setOutputCol("point").setIdCol("docID");
+
+            System.out.println(String.format(Locale.ROOT, "%d documents, %d tokens per document, %d features",
+                    numDocs, docLength, indexer.getDictionary().size()));
+            for (int it = 0; it < iterations; it++) {
+                long start = System.nanoTime();
+                long chainedCount = weighter.transform(counter.transform(indexer.transform(tokenizer.transform(df)))).rdd().count();
+                double chainedMs = (System.nanoTime() - start) / 1e6;
+
+                start = System.nanoTime();
+                long fusedCount = featurizer.transform(df).rdd().count();
+                double fusedMs = (System.nanoTime() - start) / 1e6;
+
+                System.out.println(String.format(Locale.ROOT, "Iteration %d: chained stages %.0f ms (%d rows), fused transformer %.0f ms (%d rows)",
+                        it, chainedMs, chainedCount, fusedMs, fusedCount));
+            }
+        } finally {
+            sc.stop();
+        }
+    }
+}
@@ -93,7 +93,7 @@ public abstract class MultilabelClassifierEstimator<T extends JavaModel<T>> exte
 
     /**
      * Set the input column name. The input column must be in format as coded in
-     * {@link DataUtils#multilabelPointDataType()} method.
+     * {@link DataUtils#multilabelPointDataType()} or {@link DataUtils#multilabelPointVectorDataType()} method.
      *
      * @param inputCol The input column name.
      * @return This classifier.
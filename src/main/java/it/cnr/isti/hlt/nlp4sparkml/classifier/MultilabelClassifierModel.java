@@ -45,23 +45,22 @@ package it.cnr.isti.hlt.nlp4sparkml.classifier;
 import it.cnr.isti.hlt.nlp4sparkml.data.DataUtils;
 import it.cnr.isti.hlt.nlp4sparkml.data.MultilabelPoint;
 import it.cnr.isti.hlt.nlp4sparkml.data.PointClassificationResults;
+import it.cnr.isti.hlt.nlp4sparkml.utils.ColumnFunctions;
 import it.cnr.isti.hlt.nlp4sparkml.utils.Cond;
 import it.cnr.isti.hlt.nlp4sparkml.utils.JavaModel;
-import it.cnr.isti.hlt.nlp4sparkml.utils.UID;
-import org.apache.spark.api.java.JavaRDD;
 import org.apache.spark.api.java.JavaSparkContext;
-import org.apache.spark.broadcast.Broadcast;
+import org.apache.spark.api.java.function.Function;
 import org.apache.spark.ml.Estimator;
 import org.apache.spark.ml.Model;
 import org.apache.spark.ml.param.Param;
 import org.apache.spark.sql.DataFrame;
 import org.apache.spark.sql.Row;
 import org.apache.spark.sql.RowFactory;
+import org.apache.spark.sql.api.java.UDF1;
 import org.apache.spark.sql.types.DataType;
 import org.apache.spark.sql.types.DataTypes;
 import org.apache.spark.sql.types.StructField;
 import org.apache.spark.sql.types.StructType;
-import org.apache.spark.storage.StorageLevel;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -76,7 +75,6 @@ public abstract class MultilabelClassifierModel<T extends MultilabelClassifierMo
 
     private final Param<String> inputCol;
     private final Param<String> outputCol;
-    private final String uid;
 
     /**
      * The total number of features used to build the model.
@@ -84,10 +82,20 @@ public abstract class MultilabelClassifierModel<T extends MultilabelClassifierMo
     private final int nf;
 
     public MultilabelClassifierModel(Estimator parent, int numFeatures) {
+        this((String) null, numFeatures);
         Cond.requireNotNull(parent, "parent");
-        Cond.require(numFeatures > 0, "The number of features is less than 1");
         setParent(parent);
-        this.uid = UID.generateUID(getClass());
+    }
+
+    /**
+     * Create a model without a parent estimator, e.g. a model loaded from disk.
+     *
+     * @param uid         The uid of the model or 'null' to generate a new one.
+     * @param numFeatures The total number of features used to build the model.
+     */
+    protected MultilabelClassifierModel(String uid, int numFeatures) {
+        super(uid);
+        Cond.require(numFeatures > 0, "The number of features is less than 1");
         this.nf = numFeatures;
         inputCol = new Param<String>(this, "inputCol", "Input column name");
         outputCol = new Param<String>(this, "outputCol", "Output column name");
@@ -95,6 +103,15 @@ public abstract class MultilabelClassifierModel<T extends MultilabelClassifierMo
         setDefault(outputCol, "results");
     }
 
+    /**
+     * Get the total number of features used to build the model.
+     *
+     * @return The total number of features used to build the model.
+     */
+    public int getNumFeatures() {
+        return nf;
+    }
+
     /**
      * Get the input column name.
      *
@@ -135,48 +152,29 @@ public abstract class MultilabelClassifierModel<T extends MultilabelClassifierMo
     @Override
     public DataFrame transform(DataFrame dataset) {
         Cond.requireNotNull(dataset, "dataset");
-        StructType updatedSchema = transformSchema(dataset.schema());
-        DataFrame df = dataset.withColumn(getOutputCol(), dataset.col(getInputCol()));
-        JavaRDD<Row> rows = df.javaRDD().persist(StorageLevel.MEMORY_AND_DISK_SER());
-        JavaSparkContext sc = new JavaSparkContext(rows.context());
-        Broadcast<Integer> numFeatures = sc.broadcast(nf);
-        initBroadcastVariables(sc);
-        JavaRDD<Row> updatedRows = rows.map(row -> {
-            int outIndex = row.fieldIndex(getOutputCol());
-            MultilabelPoint pt = DataUtils.toMultilabelPoint(row, getInputCol(), numFeatures.value());
-            PointClassificationResults res = classifyPoint(pt);
-            Object[] values = new Object[row.size()];
-            for (int i = 0; i < row.size(); i++) {
-                if (i != outIndex)
-                    values[i] = row.get(i);
-                else {
-                    Row r = RowFactory.create(res.getPointID(), res.getLabels(), res.getScores(), res.getPositiveThresholds());
-                    values[i] = r;
-                }
-            }
-            return RowFactory.create(values);
-        });
-
-        DataFrame dfRet = df.sqlContext().createDataFrame(updatedRows, updatedSchema);
-        return dfRet;
+        transformSchema(dataset.schema());
+        JavaSparkContext sc = new JavaSparkContext(dataset.sqlContext().sparkContext());
+        Function<MultilabelPoint, PointClassificationResults> classifier = createPointClassifier(sc);
+        int numFeatures = nf;
+        UDF1<Row, Row> classify = point -> {
+            PointClassificationResults res = classifier.call(DataUtils.toMultilabelPoint(point, numFeatures));
+            return RowFactory.create(res.getPointID(), res.getLabels(), res.getScores(), res.getPositiveThresholds());
+        };
+        return ColumnFunctions.withColumn(dataset, uid(), dataset.col(getInputCol()), getOutputCol(), classify,
+                DataUtils.pointClassificationResultsDataType());
     }
 
 
     /**
-     * Declare all the necessary broadcast variables. The subclasses need to store the broadcast variables somewhere
-     * at its internal.
+     * Create the function classifying the points, declaring all the necessary broadcast variables. The function
+     * is created by each call of {@link #transform(DataFrame)} and must capture only the broadcast variables and
+     * the values it needs, not this model, so that a later change of the model params does not alter the results
+     * of the DataFrames already returned.
      *
      * @param sc The spark context.
+     * @return The function classifying a single point.
      */
-    protected abstract void initBroadcastVariables(JavaSparkContext sc);
-
-    /**
-     * Classify the specified point.
-     *
-     * @param inputPoint The  input point to be classified.
-     * @return The classification results.
-     */
-    protected abstract PointClassificationResults classifyPoint(MultilabelPoint inputPoint);
+    protected abstract Function<MultilabelPoint, PointClassificationResults> createPointClassifier(JavaSparkContext sc);
 
 
     @Override
@@ -199,9 +197,4 @@ public abstract class MultilabelClassifierModel<T extends MultilabelClassifierMo
         Cond.require(inputType instanceof StructType, "The type of 'inputType' parameter must be 'StructType'");
         DataUtils.checkMultilabelPointDataType((StructType) inputType);
     }
-
-    @Override
-    public String uid() {
-        return uid;
-    }
 }
@@ -0,0 +1,142 @@
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+package it.cnr.isti.hlt.nlp4sparkml.classifier;
+
+import it.cnr.isti.hlt.nlp4sparkml.data.ContingencyTable;
+import it.cnr.isti.hlt.nlp4sparkml.utils.Cond;
+
+import java.io.Serializable;
+
+/**
+ * The effectiveness of a multilabel classification task, computed by a {@link MultilabelEvaluator}. It
+ * contains a contingency table for each label, the micro-averaged contingency table (the sum of all the
+ * labels tables) and the macro-averaged measures (the mean of the measures of each label).
+ *
+ * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ */
+public class MultilabelEvaluation implements Serializable {
+
+    private final ContingencyTable[] labelTables;
+    private final ContingencyTable microTable;
+
+    public MultilabelEvaluation(ContingencyTable[] labelTables) {
+        Cond.requireNotNull(labelTables, "labelTables");
+        this.labelTables = labelTables;
+        long tp = 0, tn = 0, fp = 0, fn = 0;
+        for (ContingencyTable ct : labelTables) {
+            tp += ct.tp();
+            tn += ct.tn();
+            fp += ct.fp();
+            fn += ct.fn();
+        }
+        this.microTable = new ContingencyTable(tp, tn, fp, fn);
+    }
+
+    /**
+     * Get the number of labels evaluated.
+     *
+     * @return The number of labels evaluated.
+     */
+    public int getNumLabels() {
+        return labelTables.length;
+    }
+
+    /**
+     * Get the contingency table of the specified label.
+     *
+     * @param labelID The label ID.
+     * @return The contingency table of the label.
+     */
+    public ContingencyTable getLabelTable(int labelID) {
+        Cond.require(labelID >= 0 && labelID < labelTables.length, "The label ID is not valid: " + labelID);
+        return labelTables[labelID];
+    }
+
+    /**
+     * Get the micro-averaged contingency table, i.e. the sum of the contingency tables of all labels.
+     *
+     * @return The micro-averaged contingency table.
+     */
+    public ContingencyTable getMicroTable() {
+        return microTable;
+    }
+
+    public double microPrecision() {
+        return microTable.precision();
+    }
+
+    public double microRecall() {
+        return microTable.recall();
+    }
+
+    public double microF1() {
+        return microTable.f1();
+    }
+
+    public double macroPrecision() {
+        double sum = 0;
+        for (ContingencyTable ct : labelTables)
+            sum += ct.precision();
+        return labelTables.length == 0 ? 1.0 : sum / labelTables.length;
+    }
+
+    public double macroRecall() {
+        double sum = 0;
+        for (ContingencyTable ct : labelTables)
+            sum += ct.recall();
+        return labelTables.length == 0 ? 1.0 : sum / labelTables.length;
+    }
+
+    public double macroF1() {
+        double sum = 0;
+        for (ContingencyTable ct : labelTables)
+            sum += ct.f1();
+        return labelTables.length == 0 ? 1.0 : sum / labelTables.length;
+    }
+
+    @Override
+    public String toString() {
+        return "Labels: " + labelTables.length + "\nMicro-averaged " + microTable.toString() + "\nMacro-averaged Precision: " +
+                macroPrecision() + ", Recall: " + macroRecall() + ", F1: " + macroF1();
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+package it.cnr.isti.hlt.nlp4sparkml.classifier;
+
+import it.cnr.isti.hlt.nlp4sparkml.data.ContingencyTable;
+import it.cnr.isti.hlt.nlp4sparkml.data.DataUtils;
+import it.cnr.isti.hlt.nlp4sparkml.utils.Cond;
+import it.cnr.isti.hlt.nlp4sparkml.utils.RowUtils;
+import it.cnr.isti.hlt.nlp4sparkml.utils.UID;
+import org.apache.spark.ml.evaluation.Evaluator;
+import org.apache.spark.ml.param.Param;
+import org.apache.spark.ml.param.ParamMap;
+import org.apache.spark.sql.DataFrame;
+import org.apache.spark.sql.Row;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A Spark ML evaluator for multilabel classifiers. The evaluator reads, from the same row, the classification
+ * results produced by a {@link MultilabelClassifierModel} (results column) and the gold labels of the
+ * classified point (gold column, in the format of {@link DataUtils#multilabelPointDataType()}). The
+ * TP, FP, FN and TN counts of every label are computed in a single distributed aggregation, so nothing specific
+ * to a single document is collected on the driver.
+ * <br/><br/>
+ * A label is assigned to a point when its score is greater than the corresponding positive threshold.
+ *
+ * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ */
+public class MultilabelEvaluator extends Evaluator {
+
+    public static final String MICRO_PRECISION = "microPrecision";
+    public static final String MICRO_RECALL = "microRecall";
+    public static final String MICRO_F1 = "microF1";
+    public static final String MACRO_PRECISION = "macroPrecision";
+    public static final String MACRO_RECALL = "macroRecall";
+    public static final String MACRO_F1 = "macroF1";
+
+    private static final List<String> METRICS = Arrays.asList(MICRO_PRECISION, MICRO_RECALL, MICRO_F1, MACRO_PRECISION, MACRO_RECALL, MACRO_F1);
+
+    private final String uid;
+    private final Param<String> resultsCol;
+    private final Param<String> goldCol;
+    private final Param<String> metricName;
+
+    public MultilabelEvaluator() {
+        this(UID.generateUID(MultilabelEvaluator.class));
+    }
+
+    private MultilabelEvaluator(String uid) {
+        this.uid = uid;
+        resultsCol = new Param<String>(this, "resultsCol", "The column containing the classification results");
+        goldCol = new Param<String>(this, "goldCol", "The column containing the points with the gold labels");
+        metricName = new Param<String>(this, "metricName", "The metric returned by evaluate()");
+        setDefault(resultsCol, "results");
+        setDefault(goldCol, "points");
+        setDefault(metricName, MICRO_F1);
+    }
+
+
+    // ------ Generated param getter to ensure that Scala params() function works well! --------
+    public Param<String> resultsCol() {
+        return resultsCol;
+    }
+
+    public Param<String> goldCol() {
+        return goldCol;
+    }
+
+    public Param<String> metricName() {
+        return metricName;
+    }
+
+
+    public String getResultsCol() {
+        return getOrDefault(resultsCol);
+    }
+
+    public MultilabelEvaluator setResultsCol(String resultsCol) {
+        set(this.resultsCol, resultsCol);
+        return this;
+    }
+
+    public String getGoldCol() {
+        return getOrDefault(goldCol);
+    }
+
+    public MultilabelEvaluator setGoldCol(String goldCol) {
+        set(this.goldCol, goldCol);
+        return this;
+    }
+
+    public String getMetricName() {
+        return getOrDefault(metricName);
+    }
+
+    /**
+     * Set the metric returned by {@link #evaluate(DataFrame)}. Allowed values are {@link #MICRO_PRECISION},
+     * {@link #MICRO_RECALL}, {@link #MICRO_F1}, {@link #MACRO_PRECISION}, {@link #MACRO_RECALL} and
+     * {@link #MACRO_F1}.
+     *
+     * @param metricName The name of the metric.
+     * @return This evaluator.
+     */
+    public MultilabelEvaluator setMetricName(String metricName) {
+        Cond.require(METRICS.contains(metricName), "The metric " + metricName + " is not valid. Allowed values are " + METRICS);
+        set(this.metricName, metricName);
+        return this;
+    }
+
+
+    @Override
+    public double evaluate(DataFrame dataset) {
+        MultilabelEvaluation evaluation = computeEvaluation(dataset);
+        switch (getMetricName()) {
+            case MICRO_PRECISION:
+                return evaluation.microPrecision();
+            case MICRO_RECALL:
+                return evaluation.microRecall();
+            case MACRO_PRECISION:
+                return evaluation.macroPrecision();
+            case MACRO_RECALL:
+                return evaluation.macroRecall();
+            case MACRO_F1:
+                return evaluation.macroF1();
+            default:
+                return evaluation.microF1();
+        }
+    }
+
+    /**
+     * Compute the contingency tables of all the labels found in the specified dataset.
+     *
+     * @param dataset The dataset containing the classification results and the gold labels.
+     * @return The evaluation of the classification results.
+     */
+    public MultilabelEvaluation computeEvaluation(DataFrame dataset) {
+        Cond.requireNotNull(dataset, "dataset");
+        String resultsField = getResultsCol();
+        String goldField = getGoldCol();
+        Cond.require(Arrays.asList(dataset.schema().fieldNames()).contains(resultsField), "The results column " + resultsField + " does not exist");
+        Cond.require(Arrays.asList(dataset.schema().fieldNames()).contains(goldField), "The gold column " + goldField + " does not exist");
+
+        // For each label, the counts of TP, TN, FP and FN. The array grows as new labels are found.
+        long[] counts = dataset.select(resultsField, goldField).javaRDD().treeAggregate(new long[0],
+                (acc, row) -> countRow(acc, row, resultsField, goldField), MultilabelEvaluator::mergeCounts);
+
+        ContingencyTable[] tables = new ContingencyTable[counts.length / 4];
+        for (int labelID = 0; labelID < tables.length; labelID++) {
+            int base = labelID * 4;
+            tables[labelID] = new ContingencyTable(counts[base], counts[base + 1], counts[base + 2], counts[base + 3]);
+        }
+        return new MultilabelEvaluation(tables);
+    }
+
+    private static long[] countRow(long[] counts, Row row, String resultsField, String goldField) {
+        Row results = row.getStruct(row.fieldIndex(resultsField));
+        Row point = row.getStruct(row.fieldIndex(goldField));
+        int[] labels = RowUtils.getIntArray(results, DataUtils.LABELS);
+        double[] scores = RowUtils.getDoubleArray(results, DataUtils.SCORES);
+        double[] thresholds = RowUtils.getDoubleArray(results, DataUtils.POSITIVE_THRESHOLDS);
+        int[] goldLabels = RowUtils.getIntArray(point, DataUtils.LABELS);
+
+        int maxLabel = -1;
+        for (int labelID : labels)
+            maxLabel = Math.max(maxLabel, labelID);
+        for (int labelID : goldLabels)
+            maxLabel = Math.max(maxLabel, labelID);
+        if ((maxLabel + 1) * 4 > counts.length)
+            counts = Arrays.copyOf(counts, (maxLabel + 1) * 4);
+
+        boolean[] gold = new boolean[maxLabel + 1];
+        for (int labelID : goldLabels)
+            gold[labelID] = true;
+        boolean[] evaluated = new boolean[maxLabel + 1];
+        for (int i = 0; i < labels.length; i++) {
+            int labelID = labels[i];
+            evaluated[labelID] = true;
+            boolean positive = scores[i] > thresholds[i];
+            int base = labelID * 4;
+            if (positive && gold[labelID])
+                counts[base]++;
+            else if (!positive && !gold[labelID])
+                counts[base + 1]++;
+            else if (positive)
+                counts[base + 2]++;
+            else
+                counts[base + 3]++;
+        }
+        // Gold labels without a classification result are false negatives.
+        for (int labelID : goldLabels) {
+            if (!evaluated[labelID])
+                counts[labelID * 4 + 3]++;
+        }
+        return counts;
+    }
+
+    private static long[] mergeCounts(long[] counts1, long[] counts2) {
+        long[] merged = counts1.length >= counts2.length ? counts1 : counts2;
+        long[] other = merged == counts1 ? counts2 : counts1;
+        for (int i = 0; i < other.length; i++)
+            merged[i] += other[i];
+        return merged;
+    }
+
+
+    @Override
+    public String uid() {
+        return uid;
+    }
+
+    @Override
+    public MultilabelEvaluator copy(ParamMap extra) {
+        MultilabelEvaluator evaluator = new MultilabelEvaluator(uid);
+        copyValues(evaluator, extra);
+        return evaluator;
+    }
+}
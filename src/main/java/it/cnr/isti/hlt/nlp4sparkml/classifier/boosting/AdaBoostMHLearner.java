@@ -48,11 +48,9 @@ import it.cnr.isti.hlt.nlp4sparkml.data.MultilabelPoint;
 import org.apache.spark.api.java.JavaRDD;
 import org.apache.spark.api.java.JavaSparkContext;
 import org.apache.spark.broadcast.Broadcast;
-import org.apache.spark.mllib.linalg.SparseVector;
 import org.apache.spark.storage.StorageLevel;
 
 import java.io.Serializable;
-import java.util.HashMap;
 import java.util.Iterator;
 
 /**
@@ -141,12 +139,13 @@ public class AdaBoostMHLearner {
         }
         labelDocuments = labelDocuments.persist(StorageLevel.MEMORY_AND_DISK_SER());
 
-        JavaRDD<DataUtils.FeatureDocuments> featureDocuments = DataUtils.getFeatureDocuments(docs).persist(StorageLevel.MEMORY_AND_DISK());
+        JavaRDD<DataUtils.FeatureDocuments> featureDocuments = DataUtils.getFeatureDocuments(docs).persist(StorageLevel.MEMORY_AND_DISK_SER());
         int numWantedPartitions = (int) Math.ceil(featureDocuments.count() / (double) numFeaturesPerPartition);
         if (featureDocuments.partitions().size() < numWantedPartitions) {
-            featureDocuments = featureDocuments.repartition(numWantedPartitions);
+            JavaRDD<DataUtils.FeatureDocuments> repartitioned = featureDocuments.repartition(numWantedPartitions).persist(StorageLevel.MEMORY_AND_DISK_SER());
+            featureDocuments.unpersist();
+            featureDocuments = repartitioned;
         }
-        featureDocuments = featureDocuments.persist(StorageLevel.MEMORY_AND_DISK_SER());
         Logging.l().info("Ok, done!");
 
         WeakHypothesis[] computedWH = new WeakHypothesis[numIterations];
@@ -175,21 +174,15 @@ public class AdaBoostMHLearner {
         Broadcast<WeakHypothesis> distWH = sc.broadcast(localWH);
         Broadcast<double[][]> distDM = sc.broadcast(localDM);
         JavaRDD<DMPartialResult> partialResults = docs.map(doc -> {
-            SparseVector sv = doc.getFeaturesAsSparseVector();
-            int[] validFeatures = sv.indices();
-            HashMap<Integer, Integer> dictFeatures = new HashMap<>();
-            for (int featID : validFeatures)
-                dictFeatures.put(featID, featID);
-            HashMap<Integer, Integer> dictLabels = new HashMap<>();
-            for (int idx = 0; idx < doc.getLabels().length; idx++)
-                dictLabels.put(doc.getLabels()[idx], doc.getLabels()[idx]);
-
             double[][] dm = distDM.getValue();
+            boolean[] positiveLabels = new boolean[dm.length];
+            for (int labelID : doc.getLabels())
+                positiveLabels[labelID] = true;
             WeakHypothesis wh = distWH.getValue();
             double[] labelsRes = new double[dm.length];
             for (int labelID = 0; labelID < dm.length; labelID++) {
                 float catValue = 1;
-                if (dictLabels.containsKey(labelID)) {
+                if (positiveLabels[labelID]) {
                     catValue = -1;
                 }
 
@@ -197,7 +190,7 @@ public class AdaBoostMHLearner {
                 double value = 0;
                 WeakHypothesis.WeakHypothesisData v = wh.getLabelData(labelID);
                 int pivot = v.getFeatureID();
-                if (dictFeatures.containsKey(pivot))
+                if (doc.hasFeature(pivot))
                     value = v.getC1();
                 else
                     value = v.getC0();
@@ -314,24 +307,27 @@ public class AdaBoostMHLearner {
             }
 
 
+            // The labels of the current document, cleared after each document.
+            boolean[] positiveLabels = new boolean[numLabels];
             for (int docIdx = 0; docIdx < feat.getDocuments().length; docIdx++) {
                 int docID = feat.getDocuments()[docIdx];
                 int[] labels = feat.getLabels()[docIdx];
-                HashMap<Integer, Integer> catDict = new HashMap<Integer, Integer>();
                 for (int labelIdx = 0; labelIdx < labels.length; labelIdx++) {
                     int currentCatID = labels[labelIdx];
                     double distValue = dm[currentCatID][docID];
                     // Feature and category compare together.
                     weight_b1_x1[currentCatID] += distValue;
-                    catDict.put(currentCatID, currentCatID);
+                    positiveLabels[currentCatID] = true;
                 }
                 for (int currentCatID = 0; currentCatID < numLabels; currentCatID++) {
-                    if (catDict.containsKey(currentCatID))
+                    if (positiveLabels[currentCatID])
                         continue;
                     double distValue = dm[currentCatID][docID];
                     // Feature compare on document and category not.
                     weight_bminus_1_x1[currentCatID] += distValue;
                 }
+                for (int labelIdx = 0; labelIdx < labels.length; labelIdx++)
+                    positiveLabels[labels[labelIdx]] = false;
             }
 
             // Compute the remaining values.
@@ -443,7 +439,7 @@ public class AdaBoostMHLearner {
         }
     }
 
-    private static class WeakHypothesisResults implements Serializable {
+    static class WeakHypothesisResults implements Serializable {
         private final int pivot;
         private final double[] c0;
         private final double[] c1;
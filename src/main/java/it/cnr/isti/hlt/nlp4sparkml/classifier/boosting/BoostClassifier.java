@@ -63,8 +63,13 @@ import it.cnr.isti.hlt.nlp4sparkml.data.MultilabelPoint;
 import it.cnr.isti.hlt.nlp4sparkml.data.PointClassificationResults;
 import it.cnr.isti.hlt.nlp4sparkml.utils.Cond;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * A boosting classifier built with {@link AdaBoostMHLearner} or
@@ -74,38 +79,95 @@ import java.util.HashMap;
  */
 public class BoostClassifier implements Serializable {
 
+    private static final int MAGIC = 0x42435346;
+    private static final int VERSION = 2;
+
     /**
      * The set of weak hypothesis of the model.
      */
     private final WeakHypothesis[] whs;
 
+    /**
+     * The positive threshold of each label.
+     */
+    private double[] positiveThresholds;
+
     public BoostClassifier(WeakHypothesis[] whs) {
         if (whs == null)
             throw new NullPointerException("The set of generated WHs is 'null'");
         this.whs = whs;
+        this.positiveThresholds = new double[whs.length > 0 ? whs[0].getNumLabels() : 0];
+    }
+
+    /**
+     * Get the positive threshold of each label. A label is assigned to a point if its score is greater
+     * than the label threshold. By default all thresholds are equal to 0.
+     *
+     * @return The positive threshold of each label.
+     */
+    public double[] getPositiveThresholds() {
+        return positiveThresholds.clone();
+    }
+
+    /**
+     * Set the positive threshold of each label, e.g. the thresholds computed by {@link ThresholdTuner}.
+     *
+     * @param positiveThresholds The positive threshold of each label.
+     */
+    public void setPositiveThresholds(double[] positiveThresholds) {
+        Cond.requireNotNull(positiveThresholds, "positiveThresholds");
+        Cond.require(positiveThresholds.length == getNumLabels(), "The number of thresholds is different from the number of labels");
+        this.positiveThresholds = positiveThresholds.clone();
+    }
+
+    /**
+     * Build a classifier sharing the weak hypothesis of this classifier and using the specified positive
+     * thresholds. This classifier is not modified.
+     *
+     * @param positiveThresholds The positive threshold of each label.
+     * @return The new classifier.
+     */
+    public BoostClassifier withPositiveThresholds(double[] positiveThresholds) {
+        BoostClassifier bc = new BoostClassifier(whs);
+        bc.setPositiveThresholds(positiveThresholds);
+        return bc;
+    }
+
+    /**
+     * Get the set of weak hypothesis of the model, in the order they have been generated.
+     *
+     * @return The set of weak hypothesis of the model.
+     */
+    public WeakHypothesis[] getWeakHypotheses() {
+        return whs;
+    }
+
+    /**
+     * Get the number of labels handled by the model. A model without weak hypothesis built with
+     * {@link #BoostClassifier(WeakHypothesis[])} handles no labels.
+     *
+     * @return The number of labels handled by the model.
+     */
+    public int getNumLabels() {
+        return positiveThresholds.length;
     }
 
 
     public PointClassificationResults classify(MultilabelPoint doc) {
         Cond.requireNotNull(doc, "point");
-        int[] indices = doc.getFeaturesAsSparseVector().indices();
-        HashMap<Integer, Integer> dict = new HashMap<Integer, Integer>();
-        for (int idx = 0; idx < indices.length; idx++) {
-            dict.put(indices[idx], indices[idx]);
-        }
-        int[] labels = new int[whs[0].getNumLabels()];
+        int[] labels = new int[getNumLabels()];
         double[] positiveThreshold = new double[labels.length];
         for (int labelID = 0; labelID < labels.length; labelID++) {
             labels[labelID] = labelID;
-            positiveThreshold[labelID] = 0;
+            positiveThreshold[labelID] = positiveThresholds[labelID];
         }
 
-        double[] scores = new double[whs[0].getNumLabels()];
+        double[] scores = new double[labels.length];
         for (int i = 0; i < whs.length; i++) {
             WeakHypothesis wh = whs[i];
             for (int labelID = 0; labelID < wh.getNumLabels(); labelID++) {
                 int featureID = wh.getLabelData(labelID).getFeatureID();
-                if (dict.containsKey(featureID)) {
+                if (doc.hasFeature(featureID)) {
                     scores[labelID] += wh.getLabelData(labelID).getC1();
                 } else {
                     scores[labelID] += wh.getLabelData(labelID).getC0();
@@ -117,4 +179,117 @@ public class BoostClassifier implements Serializable {
         return res;
     }
 
+
+    /**
+     * Build a compacted version of this classifier where, for each label, all the weak hypothesis
+     * sharing the same pivot feature are merged into a single entry by summing their C0 and C1 values.
+     * The classification cost of the compacted classifier depends on the number of distinct pivots
+     * instead of on the number of boosting iterations, while the computed scores are the same of this
+     * classifier (up to floating point rounding).
+     * <br/><br/>
+     * The labels having less distinct pivots than other labels are padded with entries having
+     * feature ID -1 and C0 and C1 values equals to 0.
+     *
+     * @return The compacted classifier.
+     */
+    public BoostClassifier compact() {
+        int numLabels = getNumLabels();
+        ArrayList<LinkedHashMap<Integer, double[]>> labelsPivots = new ArrayList<>();
+        int maxPivots = 0;
+        for (int labelID = 0; labelID < numLabels; labelID++) {
+            LinkedHashMap<Integer, double[]> pivots = new LinkedHashMap<>();
+            for (int i = 0; i < whs.length; i++) {
+                WeakHypothesis.WeakHypothesisData whd = whs[i].getLabelData(labelID);
+                double[] values = pivots.computeIfAbsent(whd.getFeatureID(), k -> new double[2]);
+                values[0] += whd.getC0();
+                values[1] += whd.getC1();
+            }
+            labelsPivots.add(pivots);
+            maxPivots = Math.max(maxPivots, pivots.size());
+        }
+
+        WeakHypothesis[] compacted = new WeakHypothesis[maxPivots];
+        for (int i = 0; i < maxPivots; i++)
+            compacted[i] = new WeakHypothesis(numLabels);
+        for (int labelID = 0; labelID < numLabels; labelID++) {
+            int i = 0;
+            for (Map.Entry<Integer, double[]> pivot : labelsPivots.get(labelID).entrySet()) {
+                compacted[i].setLabelData(labelID, new WeakHypothesis.WeakHypothesisData(labelID, pivot.getKey(), pivot.getValue()[0], pivot.getValue()[1]));
+                i++;
+            }
+            for (; i < maxPivots; i++)
+                compacted[i].setLabelData(labelID, new WeakHypothesis.WeakHypothesisData(labelID, -1, 0, 0));
+        }
+        BoostClassifier compactedClassifier = new BoostClassifier(compacted);
+        compactedClassifier.positiveThresholds = positiveThresholds.clone();
+        return compactedClassifier;
+    }
+
+
+    /**
+     * Write the model in a compact binary format, starting with a magic number and a format version. The model
+     * can be read back with {@link #readFrom(DataInput)}.
+     *
+     * @param out The output where to write the model.
+     * @throws IOException Raised if some error occurs while writing.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        Cond.requireNotNull(out, "out");
+        int numLabels = getNumLabels();
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(whs.length);
+        out.writeInt(numLabels);
+        for (int i = 0; i < whs.length; i++) {
+            for (int labelID = 0; labelID < numLabels; labelID++) {
+                WeakHypothesis.WeakHypothesisData whd = whs[i].getLabelData(labelID);
+                out.writeInt(whd.getFeatureID());
+                out.writeDouble(whd.getC0());
+                out.writeDouble(whd.getC1());
+            }
+        }
+        for (int labelID = 0; labelID < numLabels; labelID++)
+            out.writeDouble(positiveThresholds[labelID]);
+    }
+
+    /**
+     * Read a model written with {@link #writeTo(DataOutput)}. The data written by the first version of the
+     * format, without the header and the positive thresholds, is also accepted: in that case all the thresholds
+     * are set to 0.
+     *
+     * @param in The input from where to read the model.
+     * @return The model read.
+     * @throws IOException Raised if some error occurs while reading.
+     */
+    public static BoostClassifier readFrom(DataInput in) throws IOException {
+        Cond.requireNotNull(in, "in");
+        int version = 1;
+        int numHypothesis = in.readInt();
+        if (numHypothesis == MAGIC) {
+            version = in.readInt();
+            Cond.require(version == VERSION, "Unsupported boosting classifier version " + version);
+            numHypothesis = in.readInt();
+        }
+        int numLabels = in.readInt();
+        WeakHypothesis[] whs = new WeakHypothesis[numHypothesis];
+        for (int i = 0; i < numHypothesis; i++) {
+            WeakHypothesis wh = new WeakHypothesis(numLabels);
+            for (int labelID = 0; labelID < numLabels; labelID++) {
+                int featureID = in.readInt();
+                double c0 = in.readDouble();
+                double c1 = in.readDouble();
+                wh.setLabelData(labelID, new WeakHypothesis.WeakHypothesisData(labelID, featureID, c0, c1));
+            }
+            whs[i] = wh;
+        }
+        BoostClassifier bc = new BoostClassifier(whs);
+        double[] positiveThresholds = new double[numLabels];
+        if (version >= 2) {
+            for (int labelID = 0; labelID < numLabels; labelID++)
+                positiveThresholds[labelID] = in.readDouble();
+        }
+        bc.positiveThresholds = positiveThresholds;
+        return bc;
+    }
+
 }
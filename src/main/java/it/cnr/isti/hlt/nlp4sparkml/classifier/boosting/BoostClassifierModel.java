@@ -43,38 +43,201 @@
 package it.cnr.isti.hlt.nlp4sparkml.classifier.boosting;
 
 import it.cnr.isti.hlt.nlp4sparkml.classifier.MultilabelClassifierModel;
+import it.cnr.isti.hlt.nlp4sparkml.data.DataUtils;
 import it.cnr.isti.hlt.nlp4sparkml.data.MultilabelPoint;
 import it.cnr.isti.hlt.nlp4sparkml.data.PointClassificationResults;
 import it.cnr.isti.hlt.nlp4sparkml.utils.Cond;
+import it.cnr.isti.hlt.nlp4sparkml.utils.JavaMLReader;
+import it.cnr.isti.hlt.nlp4sparkml.utils.JavaMLWriter;
 import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.api.java.function.Function;
 import org.apache.spark.broadcast.Broadcast;
 import org.apache.spark.ml.Estimator;
+import org.apache.spark.ml.param.Param;
+import org.apache.spark.ml.param.ParamMap;
+import org.apache.spark.ml.util.MLReader;
+import org.apache.spark.ml.util.MLWritable;
+import org.apache.spark.ml.util.MLWriter;
+import org.apache.spark.sql.DataFrame;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 
 /**
  * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
  */
-public class BoostClassifierModel extends MultilabelClassifierModel<BoostClassifierModel> {
+public class BoostClassifierModel extends MultilabelClassifierModel<BoostClassifierModel> implements MLWritable {
+
+    private static final String CLASSIFIER_FILE = JavaMLWriter.DATA_DIR + "/classifier.bin";
 
-    private final BoostClassifier bc;
+    /**
+     * The full precision classifier. It is transient because the executors access the classifier
+     * only through the broadcast variable created by each call of {@link #transform(DataFrame)}.
+     */
+    private final transient BoostClassifier bc;
 
-    private Broadcast<BoostClassifier> bcModel;
+    private final Param<Integer> quantizationBits;
 
     public BoostClassifierModel(Estimator parent, BoostClassifier bc, int numFeatures) {
         super(parent, numFeatures);
         Cond.requireNotNull(bc, "bc");
         this.bc = bc;
+        quantizationBits = new Param<Integer>(this, "quantizationBits", "The number of bits used to quantize the model or 0 to use the full precision model");
+        setDefault(quantizationBits, 0);
+    }
+
+    private BoostClassifierModel(String uid, BoostClassifier bc, int numFeatures) {
+        super(uid, numFeatures);
+        Cond.requireNotNull(bc, "bc");
+        this.bc = bc;
+        quantizationBits = new Param<Integer>(this, "quantizationBits", "The number of bits used to quantize the model or 0 to use the full precision model");
+        setDefault(quantizationBits, 0);
+    }
+
+
+    public Param<Integer> quantizationBits() {
+        return quantizationBits;
+    }
+
+
+    /**
+     * Get the number of bits used to quantize the C0 and C1 values of the model at classification time.
+     *
+     * @return The number of quantization bits (8 or 16) or 0 if the full precision model is used.
+     */
+    public int getQuantizationBits() {
+        return getOrDefault(quantizationBits);
+    }
+
+    /**
+     * Set the number of bits used to quantize the C0 and C1 values of the model at classification time. The
+     * quantization is disabled by default. The saved model is always the full precision model.
+     *
+     * @param bits The number of quantization bits (8 or 16) or 0 to use the full precision model.
+     * @return This model.
+     */
+    public BoostClassifierModel setQuantizationBits(int bits) {
+        Cond.require(bits == 0 || bits == 8 || bits == 16, "The number of quantization bits must be 0, 8 or 16: " + bits);
+        set(quantizationBits, bits);
+        return this;
+    }
+
+    /**
+     * Build a new model using the compacted version of the boosting classifier of this model (see
+     * {@link BoostClassifier#compact()}). The new model has the same params values of this model.
+     *
+     * @return The compacted model.
+     */
+    public BoostClassifierModel compact() {
+        return copyWithClassifier(bc.compact());
     }
 
+    /**
+     * Build a new model whose boosting classifier uses the specified positive thresholds (see
+     * {@link BoostClassifier#withPositiveThresholds(double[])}). The new model has the same params values of this
+     * model, which is not modified.
+     *
+     * @param positiveThresholds The positive threshold of each label.
+     * @return The new model.
+     */
+    public BoostClassifierModel withPositiveThresholds(double[] positiveThresholds) {
+        return copyWithClassifier(bc.withPositiveThresholds(positiveThresholds));
+    }
+
+    private BoostClassifierModel copyWithClassifier(BoostClassifier classifier) {
+        BoostClassifierModel model = new BoostClassifierModel((String) null, classifier, getNumFeatures());
+        copyValues(model, ParamMap.empty());
+        if (hasParent())
+            model.setParent(parent());
+        return model;
+    }
+
+    /**
+     * Compare the scores of the quantized model with the scores of the full precision model on the points
+     * contained in the input column of the specified dataset.
+     *
+     * @param dataset The dataset to use.
+     * @return The quantization report.
+     */
+    public QuantizationReport evaluateQuantization(DataFrame dataset) {
+        Cond.requireNotNull(dataset, "dataset");
+        int bits = getQuantizationBits();
+        Cond.require(bits != 0, "The quantization is not enabled on this model");
+        String inputCol = getInputCol();
+        int numFeatures = getNumFeatures();
+        return QuantizationReport.compute(bc, QuantizedBoostClassifier.quantize(bc, bits),
+                dataset.javaRDD().map(row -> DataUtils.toMultilabelPoint(row, inputCol, numFeatures)));
+    }
+
+    /**
+     * Get the boosting classifier used by this model.
+     *
+     * @return The boosting classifier used by this model.
+     */
+    public BoostClassifier getClassifier() {
+        return bc;
+    }
+
+
+    @Override
+    protected Function<MultilabelPoint, PointClassificationResults> createPointClassifier(JavaSparkContext sc) {
+        int bits = getQuantizationBits();
+        if (bits == 0) {
+            Broadcast<BoostClassifier> bcModel = sc.broadcast(bc);
+            return point -> bcModel.getValue().classify(point);
+        }
+        Broadcast<QuantizedBoostClassifier> bcQuantizedModel = sc.broadcast(QuantizedBoostClassifier.quantize(bc, bits));
+        return point -> bcQuantizedModel.getValue().classify(point);
+    }
 
     @Override
-    protected void initBroadcastVariables(JavaSparkContext sc) {
-        bcModel = sc.broadcast(bc);
+    public MLWriter write() {
+        return new BoostClassifierModelWriter(this);
     }
 
     @Override
-    protected PointClassificationResults classifyPoint(MultilabelPoint inputPoint) {
-        BoostClassifier cl = bcModel.getValue();
-        return cl.classify(inputPoint);
+    public void save(String path) throws IOException {
+        write().save(path);
     }
 
+    public static MLReader<BoostClassifierModel> read() {
+        return new BoostClassifierModelReader();
+    }
+
+    public static BoostClassifierModel load(String path) {
+        return read().load(path);
+    }
+
+
+    private static class BoostClassifierModelWriter extends JavaMLWriter<BoostClassifierModel> {
+
+        BoostClassifierModelWriter(BoostClassifierModel instance) {
+            super(instance);
+        }
+
+        @Override
+        protected void saveData(String path) throws IOException {
+            try (DataOutputStream os = create(path, CLASSIFIER_FILE)) {
+                os.writeInt(getInstance().getNumFeatures());
+                getInstance().bc.writeTo(os);
+            }
+        }
+    }
+
+    private static class BoostClassifierModelReader extends JavaMLReader<BoostClassifierModel> {
+
+        BoostClassifierModelReader() {
+            super(BoostClassifierModel.class);
+        }
+
+        @Override
+        protected BoostClassifierModel loadData(String path, String uid) throws IOException {
+            try (DataInputStream is = open(path, CLASSIFIER_FILE)) {
+                int numFeatures = is.readInt();
+                BoostClassifier bc = BoostClassifier.readFrom(is);
+                return new BoostClassifierModel(uid, bc, numFeatures);
+            }
+        }
+    }
 }
@@ -0,0 +1,198 @@
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+package it.cnr.isti.hlt.nlp4sparkml.classifier.boosting;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import it.cnr.isti.hlt.nlp4sparkml.utils.KryoUtils;
+import it.cnr.isti.hlt.nlp4sparkml.utils.NLP4SparkMLKryoRegistrator;
+
+/**
+ * The Kryo serializers of the boosting classes, including the package-private ones used internally by
+ * {@link AdaBoostMHLearner}. The serializers are registered by {@link NLP4SparkMLKryoRegistrator}.
+ *
+ * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ */
+public class BoostingKryoSerializers {
+
+    /**
+     * Register the boosting classes in the specified Kryo instance.
+     *
+     * @param kryo The Kryo instance.
+     */
+    public static void register(Kryo kryo) {
+        kryo.register(WeakHypothesis.WeakHypothesisData.class, new WeakHypothesisDataSerializer());
+        kryo.register(WeakHypothesis.class, new WeakHypothesisSerializer());
+        kryo.register(WeakHypothesis[].class);
+        kryo.register(BoostClassifier.class, new BoostClassifierSerializer());
+        kryo.register(QuantizedBoostClassifier.class, new QuantizedBoostClassifierSerializer());
+        kryo.register(AdaBoostMHLearner.DMPartialResult.class, new DMPartialResultSerializer());
+        kryo.register(AdaBoostMHLearner.WeakHypothesisResults.class, new WeakHypothesisResultsSerializer());
+    }
+
+
+    private static class WeakHypothesisDataSerializer extends Serializer<WeakHypothesis.WeakHypothesisData> {
+        @Override
+        public void write(Kryo kryo, Output output, WeakHypothesis.WeakHypothesisData whd) {
+            output.writeInt(whd.getLabelID(), true);
+            output.writeInt(whd.getFeatureID());
+            output.writeDouble(whd.getC0());
+            output.writeDouble(whd.getC1());
+        }
+
+        @Override
+        public WeakHypothesis.WeakHypothesisData read(Kryo kryo, Input input, Class<WeakHypothesis.WeakHypothesisData> type) {
+            int labelID = input.readInt(true);
+            int featureID = input.readInt();
+            double c0 = input.readDouble();
+            double c1 = input.readDouble();
+            return new WeakHypothesis.WeakHypothesisData(labelID, featureID, c0, c1);
+        }
+    }
+
+    private static class WeakHypothesisSerializer extends Serializer<WeakHypothesis> {
+        @Override
+        public void write(Kryo kryo, Output output, WeakHypothesis wh) {
+            output.writeInt(wh.getNumLabels(), true);
+            for (int labelID = 0; labelID < wh.getNumLabels(); labelID++)
+                kryo.writeObjectOrNull(output, wh.getLabelData(labelID), WeakHypothesis.WeakHypothesisData.class);
+        }
+
+        @Override
+        public WeakHypothesis read(Kryo kryo, Input input, Class<WeakHypothesis> type) {
+            WeakHypothesis wh = new WeakHypothesis(input.readInt(true));
+            for (int labelID = 0; labelID < wh.getNumLabels(); labelID++) {
+                WeakHypothesis.WeakHypothesisData whd = kryo.readObjectOrNull(input, WeakHypothesis.WeakHypothesisData.class);
+                if (whd != null)
+                    wh.setLabelData(labelID, whd);
+            }
+            return wh;
+        }
+    }
+
+    private static class BoostClassifierSerializer extends Serializer<BoostClassifier> {
+        @Override
+        public void write(Kryo kryo, Output output, BoostClassifier bc) {
+            WeakHypothesis[] whs = bc.getWeakHypotheses();
+            output.writeInt(whs.length, true);
+            for (WeakHypothesis wh : whs)
+                kryo.writeObject(output, wh);
+            KryoUtils.writeDoubles(output, bc.getPositiveThresholds());
+        }
+
+        @Override
+        public BoostClassifier read(Kryo kryo, Input input, Class<BoostClassifier> type) {
+            WeakHypothesis[] whs = new WeakHypothesis[input.readInt(true)];
+            for (int i = 0; i < whs.length; i++)
+                whs[i] = kryo.readObject(input, WeakHypothesis.class);
+            BoostClassifier bc = new BoostClassifier(whs);
+            double[] thresholds = KryoUtils.readDoubles(input);
+            if (thresholds != null)
+                bc.setPositiveThresholds(thresholds);
+            return bc;
+        }
+    }
+
+    private static class QuantizedBoostClassifierSerializer extends Serializer<QuantizedBoostClassifier> {
+        @Override
+        public void write(Kryo kryo, Output output, QuantizedBoostClassifier qbc) {
+            output.writeInt(qbc.getBits(), true);
+            output.writeInt(qbc.getNumHypothesis(), true);
+            KryoUtils.writeInts(output, qbc.getFeatureIDs());
+            KryoUtils.writeBytes(output, qbc.getC0Bytes());
+            KryoUtils.writeBytes(output, qbc.getC1Bytes());
+            KryoUtils.writeShorts(output, qbc.getC0Shorts());
+            KryoUtils.writeShorts(output, qbc.getC1Shorts());
+            KryoUtils.writeDoubles(output, qbc.getScales());
+            KryoUtils.writeDoubles(output, qbc.getPositiveThresholds());
+        }
+
+        @Override
+        public QuantizedBoostClassifier read(Kryo kryo, Input input, Class<QuantizedBoostClassifier> type) {
+            int bits = input.readInt(true);
+            int numHypothesis = input.readInt(true);
+            int[] featureIDs = KryoUtils.readInts(input);
+            byte[] c0Bytes = KryoUtils.readBytes(input);
+            byte[] c1Bytes = KryoUtils.readBytes(input);
+            short[] c0Shorts = KryoUtils.readShorts(input);
+            short[] c1Shorts = KryoUtils.readShorts(input);
+            double[] scales = KryoUtils.readDoubles(input);
+            double[] thresholds = KryoUtils.readDoubles(input);
+            return new QuantizedBoostClassifier(bits, numHypothesis, featureIDs, c0Bytes, c1Bytes, c0Shorts, c1Shorts, scales, thresholds);
+        }
+    }
+
+    private static class DMPartialResultSerializer extends Serializer<AdaBoostMHLearner.DMPartialResult> {
+        @Override
+        public void write(Kryo kryo, Output output, AdaBoostMHLearner.DMPartialResult res) {
+            output.writeInt(res.getDocID());
+            KryoUtils.writeDoubles(output, res.getLabelsRes());
+        }
+
+        @Override
+        public AdaBoostMHLearner.DMPartialResult read(Kryo kryo, Input input, Class<AdaBoostMHLearner.DMPartialResult> type) {
+            int docID = input.readInt();
+            return new AdaBoostMHLearner.DMPartialResult(docID, KryoUtils.readDoubles(input));
+        }
+    }
+
+    private static class WeakHypothesisResultsSerializer extends Serializer<AdaBoostMHLearner.WeakHypothesisResults> {
+        @Override
+        public void write(Kryo kryo, Output output, AdaBoostMHLearner.WeakHypothesisResults res) {
+            output.writeInt(res.getPivot());
+            KryoUtils.writeDoubles(output, res.getC0());
+            KryoUtils.writeDoubles(output, res.getC1());
+            output.writeDouble(res.getZ_s());
+        }
+
+        @Override
+        public AdaBoostMHLearner.WeakHypothesisResults read(Kryo kryo, Input input, Class<AdaBoostMHLearner.WeakHypothesisResults> type) {
+            int pivot = input.readInt();
+            double[] c0 = KryoUtils.readDoubles(input);
+            double[] c1 = KryoUtils.readDoubles(input);
+            return new AdaBoostMHLearner.WeakHypothesisResults(pivot, c0, c1, input.readDouble());
+        }
+    }
+}
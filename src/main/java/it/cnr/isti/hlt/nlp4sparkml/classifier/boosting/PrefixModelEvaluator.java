@@ -0,0 +1,184 @@
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+package it.cnr.isti.hlt.nlp4sparkml.classifier.boosting;
+
+import it.cnr.isti.hlt.nlp4sparkml.data.ContingencyTable;
+import it.cnr.isti.hlt.nlp4sparkml.data.DataUtils;
+import it.cnr.isti.hlt.nlp4sparkml.data.MultilabelPoint;
+import it.cnr.isti.hlt.nlp4sparkml.utils.Cond;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.broadcast.Broadcast;
+import org.apache.spark.sql.DataFrame;
+
+import java.io.Serializable;
+
+/**
+ * An evaluator of all the "prefix" models of a {@link BoostClassifier}. Since boosting is additive, the
+ * model obtained after N iterations is made by the first N weak hypothesis of the final model. This
+ * evaluator scores a set of points only once and, for each requested number of iterations (checkpoint),
+ * computes the contingency table (micro-averaged over all labels) of the corresponding prefix model.
+ * <br/><br/>
+ * This allows to choose the best number of iterations with a single training run and a single scoring pass.
+ * A label is assigned to a point when its score is greater than 0, since the positive thresholds of the
+ * classifier are tuned on the full model and not on its prefixes.
+ *
+ * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ */
+public class PrefixModelEvaluator implements Serializable {
+
+    /**
+     * The checkpoints, in strictly increasing order.
+     */
+    private final int[] checkpoints;
+
+    /**
+     * Create a new evaluator.
+     *
+     * @param checkpoints The numbers of iterations to evaluate, in strictly increasing order. Each value must be
+     *                    greater than 0.
+     */
+    public PrefixModelEvaluator(int[] checkpoints) {
+        Cond.requireNotNull(checkpoints, "checkpoints");
+        Cond.require(checkpoints.length > 0, "The set of checkpoints is empty");
+        for (int i = 0; i < checkpoints.length; i++) {
+            Cond.require(checkpoints[i] > 0, "The checkpoint " + checkpoints[i] + " is less than 1");
+            Cond.require(i == 0 || checkpoints[i] > checkpoints[i - 1], "The checkpoints must be in strictly increasing order");
+        }
+        this.checkpoints = checkpoints.clone();
+    }
+
+    /**
+     * Get the numbers of iterations evaluated.
+     *
+     * @return The numbers of iterations evaluated.
+     */
+    public int[] getCheckpoints() {
+        return checkpoints.clone();
+    }
+
+    /**
+     * Evaluate the prefix models of the specified classifier on the given set of points.
+     *
+     * @param bc     The classifier to evaluate. It must have at least as many weak hypothesis as the last checkpoint.
+     * @param points The points to classify. The gold labels are the labels assigned to each point.
+     * @return The contingency tables computed for each checkpoint, in the same order of the checkpoints.
+     */
+    public ContingencyTable[] evaluate(BoostClassifier bc, JavaRDD<MultilabelPoint> points) {
+        Cond.requireNotNull(bc, "bc");
+        Cond.requireNotNull(points, "points");
+        Cond.require(checkpoints[checkpoints.length - 1] <= bc.getWeakHypotheses().length, "The last checkpoint " +
+                checkpoints[checkpoints.length - 1] + " is greater than the number of weak hypothesis of the classifier: " +
+                bc.getWeakHypotheses().length);
+        JavaSparkContext sc = new JavaSparkContext(points.context());
+        Broadcast<BoostClassifier> bcModel = sc.broadcast(bc);
+        int[] cps = checkpoints;
+        // For each checkpoint, the counts of TP, TN, FP and FN.
+        long[] counts = points.treeAggregate(new long[cps.length * 4], (acc, pt) -> {
+            countPoint(bcModel.value(), cps, pt, acc);
+            return acc;
+        }, (acc1, acc2) -> {
+            for (int i = 0; i < acc1.length; i++)
+                acc1[i] += acc2[i];
+            return acc1;
+        });
+        bcModel.destroy();
+
+        ContingencyTable[] tables = new ContingencyTable[cps.length];
+        for (int i = 0; i < cps.length; i++) {
+            tables[i] = new ContingencyTable(counts[i * 4], counts[i * 4 + 1], counts[i * 4 + 2], counts[i * 4 + 3]);
+        }
+        return tables;
+    }
+
+    /**
+     * Evaluate the prefix models of the specified model on the points contained in the model input column of the
+     * given dataset.
+     *
+     * @param model   The model to evaluate.
+     * @param dataset The dataset containing the points to classify.
+     * @return The contingency tables computed for each checkpoint, in the same order of the checkpoints.
+     */
+    public ContingencyTable[] evaluate(BoostClassifierModel model, DataFrame dataset) {
+        Cond.requireNotNull(model, "model");
+        Cond.requireNotNull(dataset, "dataset");
+        String inputCol = model.getInputCol();
+        int numFeatures = model.getNumFeatures();
+        return evaluate(model.getClassifier(), dataset.javaRDD().map(row -> DataUtils.toMultilabelPoint(row, inputCol, numFeatures)));
+    }
+
+    private static void countPoint(BoostClassifier bc, int[] checkpoints, MultilabelPoint pt, long[] counts) {
+        int numLabels = bc.getNumLabels();
+        boolean[] gold = new boolean[numLabels];
+        for (int labelID : pt.getLabels()) {
+            if (labelID >= 0 && labelID < numLabels)
+                gold[labelID] = true;
+        }
+
+        WeakHypothesis[] whs = bc.getWeakHypotheses();
+        double[] scores = new double[numLabels];
+        int cp = 0;
+        for (int i = 0; i < checkpoints[checkpoints.length - 1]; i++) {
+            WeakHypothesis wh = whs[i];
+            for (int labelID = 0; labelID < numLabels; labelID++) {
+                WeakHypothesis.WeakHypothesisData whd = wh.getLabelData(labelID);
+                scores[labelID] += pt.hasFeature(whd.getFeatureID()) ? whd.getC1() : whd.getC0();
+            }
+            if (i + 1 == checkpoints[cp]) {
+                int base = cp * 4;
+                for (int labelID = 0; labelID < numLabels; labelID++) {
+                    boolean positive = scores[labelID] > 0;
+                    if (positive && gold[labelID])
+                        counts[base]++;
+                    else if (!positive && !gold[labelID])
+                        counts[base + 1]++;
+                    else if (positive)
+                        counts[base + 2]++;
+                    else
+                        counts[base + 3]++;
+                }
+                cp++;
+            }
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+package it.cnr.isti.hlt.nlp4sparkml.classifier.boosting;
+
+import it.cnr.isti.hlt.nlp4sparkml.data.MultilabelPoint;
+import it.cnr.isti.hlt.nlp4sparkml.data.PointClassificationResults;
+import it.cnr.isti.hlt.nlp4sparkml.utils.Cond;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.broadcast.Broadcast;
+
+import java.io.Serializable;
+
+/**
+ * A report comparing the scores computed by a {@link QuantizedBoostClassifier} with the scores
+ * computed by the original full precision {@link BoostClassifier} on the same set of points.
+ * <br/><br/>
+ * The ranking agreement is the fraction of label pairs, over all points, ranked in the same order by
+ * both classifiers, while the decision agreement is the fraction of (point, label) pairs assigned
+ * to the same side of the label positive threshold by both classifiers.
+ *
+ * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ */
+public class QuantizationReport implements Serializable {
+
+    private long numPoints;
+    private long numScores;
+    private double maxScoreDeviation;
+    private double sumScoreDeviation;
+    private long numRankingPairs;
+    private long numAgreeingRankingPairs;
+    private long numAgreeingDecisions;
+
+    QuantizationReport() {
+    }
+
+    /**
+     * Compute the report by classifying the specified points with both classifiers. The points are
+     * processed in a single distributed pass.
+     *
+     * @param reference The full precision classifier.
+     * @param quantized The quantized classifier.
+     * @param points    The points to classify.
+     * @return The computed report.
+     */
+    public static QuantizationReport compute(BoostClassifier reference, QuantizedBoostClassifier quantized, JavaRDD<MultilabelPoint> points) {
+        Cond.requireNotNull(reference, "reference");
+        Cond.requireNotNull(quantized, "quantized");
+        Cond.requireNotNull(points, "points");
+        Cond.require(reference.getNumLabels() == quantized.getNumLabels(), "The two classifiers have a different number of labels");
+        JavaSparkContext sc = new JavaSparkContext(points.context());
+        Broadcast<BoostClassifier> bcReference = sc.broadcast(reference);
+        Broadcast<QuantizedBoostClassifier> bcQuantized = sc.broadcast(quantized);
+        QuantizationReport report = points.aggregate(new QuantizationReport(), (r, pt) -> {
+            PointClassificationResults res = bcReference.value().classify(pt);
+            r.add(res.getScores(), bcQuantized.value().classify(pt).getScores(), res.getPositiveThresholds());
+            return r;
+        }, QuantizationReport::merge);
+        bcReference.destroy();
+        bcQuantized.destroy();
+        return report;
+    }
+
+    void add(double[] referenceScores, double[] quantizedScores, double[] positiveThresholds) {
+        numPoints++;
+        for (int i = 0; i < referenceScores.length; i++) {
+            double deviation = Math.abs(referenceScores[i] - quantizedScores[i]);
+            maxScoreDeviation = Math.max(maxScoreDeviation, deviation);
+            sumScoreDeviation += deviation;
+            numScores++;
+            if ((referenceScores[i] > positiveThresholds[i]) == (quantizedScores[i] > positiveThresholds[i]))
+                numAgreeingDecisions++;
+        }
+        long n = referenceScores.length;
+        numRankingPairs += n * (n - 1) / 2;
+        numAgreeingRankingPairs += countAgreeingPairs(referenceScores, quantizedScores);
+    }
+
+    /**
+     * Count the pairs of labels ranked in the same order by the two sets of scores, i.e. the pairs ordered in the
+     * same way by both sets or tied in both sets. The count is done in O(L log L) time, as in the Knight's
+     * algorithm for the Kendall tau: the labels are sorted by (reference, quantized) score and the discordant
+     * pairs are the inversions of the quantized scores, counted with a merge sort.
+     *
+     * @param reference The reference scores.
+     * @param quantized The quantized scores.
+     * @return The number of agreeing pairs.
+     */
+    static long countAgreeingPairs(double[] reference, double[] quantized) {
+        int n = reference.length;
+        double[] a = new double[n];
+        double[] b = new double[n];
+        for (int i = 0; i < n; i++) {
+            // Adding 0 turns -0.0 into 0.0, so the comparisons match the signum based definition.
+            a[i] = reference[i] + 0.0;
+            b[i] = quantized[i] + 0.0;
+        }
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++)
+            order[i] = i;
+        mergeSort(order, new int[n], 0, n, a, b);
+
+        long total = (long) n * (n - 1) / 2;
+        long tiedReference = 0;
+        long tiedBoth = 0;
+        double[] sortedQuantized = new double[n];
+        for (int i = 0, groupStart = 0, bothStart = 0; i < n; i++) {
+            sortedQuantized[i] = b[order[i]];
+            if (i > 0 && a[order[i]] != a[order[i - 1]])
+                groupStart = i;
+            if (i > 0 && (a[order[i]] != a[order[i - 1]] || b[order[i]] != b[order[i - 1]]))
+                bothStart = i;
+            tiedReference += i - groupStart;
+            tiedBoth += i - bothStart;
+        }
+        long discordant = countInversions(sortedQuantized, new double[n], 0, n);
+        // After the merge sort the quantized scores are sorted, so the ties are adjacent.
+        long tiedQuantized = 0;
+        for (int i = 1, start = 0; i < n; i++) {
+            if (sortedQuantized[i] != sortedQuantized[i - 1])
+                start = i;
+            tiedQuantized += i - start;
+        }
+        long concordant = total - tiedReference - tiedQuantized + tiedBoth - discordant;
+        return concordant + tiedBoth;
+    }
+
+    private static void mergeSort(int[] order, int[] tmp, int from, int to, double[] a, double[] b) {
+        if (to - from < 2)
+            return;
+        int mid = (from + to) >>> 1;
+        mergeSort(order, tmp, from, mid, a, b);
+        mergeSort(order, tmp, mid, to, a, b);
+        int i = from, j = mid, k = from;
+        while (i < mid && j < to) {
+            int c = Double.compare(a[order[i]], a[order[j]]);
+            if (c == 0)
+                c = Double.compare(b[order[i]], b[order[j]]);
+            tmp[k++] = c <= 0 ? order[i++] : order[j++];
+        }
+        while (i < mid)
+            tmp[k++] = order[i++];
+        while (j < to)
+            tmp[k++] = order[j++];
+        System.arraycopy(tmp, from, order, from, to - from);
+    }
+
+    private static long countInversions(double[] values, double[] tmp, int from, int to) {
+        if (to - from < 2)
+            return 0;
+        int mid = (from + to) >>> 1;
+        long inversions = countInversions(values, tmp, from, mid) + countInversions(values, tmp, mid, to);
+        int i = from, j = mid, k = from;
+        while (i < mid && j < to) {
+            if (values[i] <= values[j]) {
+                tmp[k++] = values[i++];
+            } else {
+                // All the remaining values of the left half are strictly greater than values[j].
+                inversions += mid - i;
+                tmp[k++] = values[j++];
+            }
+        }
+        while (i < mid)
+            tmp[k++] = values[i++];
+        while (j < to)
+            tmp[k++] = values[j++];
+        System.arraycopy(tmp, from, values, from, to - from);
+        return inversions;
+    }
+
+    QuantizationReport merge(QuantizationReport other) {
+        numPoints += other.numPoints;
+        numScores += other.numScores;
+        maxScoreDeviation = Math.max(maxScoreDeviation, other.maxScoreDeviation);
+        sumScoreDeviation += other.sumScoreDeviation;
+        numRankingPairs += other.numRankingPairs;
+        numAgreeingRankingPairs += other.numAgreeingRankingPairs;
+        numAgreeingDecisions += other.numAgreeingDecisions;
+        return this;
+    }
+
+    /**
+     * Get the number of points used to compute the report.
+     *
+     * @return The number of points used to compute the report.
+     */
+    public long getNumPoints() {
+        return numPoints;
+    }
+
+    /**
+     * Get the maximum absolute difference between a full precision score and the corresponding quantized score.
+     *
+     * @return The maximum score deviation.
+     */
+    public double getMaxScoreDeviation() {
+        return maxScoreDeviation;
+    }
+
+    /**
+     * Get the mean absolute difference between a full precision score and the corresponding quantized score.
+     *
+     * @return The mean score deviation.
+     */
+    public double getMeanScoreDeviation() {
+        return numScores == 0 ? 0 : sumScoreDeviation / numScores;
+    }
+
+    /**
+     * Get the fraction of label pairs ranked in the same order by both classifiers.
+     *
+     * @return The ranking agreement, in the range [0,1].
+     */
+    public double getRankingAgreement() {
+        return numRankingPairs == 0 ? 1 : (double) numAgreeingRankingPairs / numRankingPairs;
+    }
+
+    /**
+     * Get the fraction of (point, label) pairs having the same positive/negative decision in both classifiers.
+     *
+     * @return The decision agreement, in the range [0,1].
+     */
+    public double getDecisionAgreement() {
+        return numScores == 0 ? 1 : (double) numAgreeingDecisions / numScores;
+    }
+
+    @Override
+    public String toString() {
+        return "Points: " + numPoints + ", max score deviation: " + maxScoreDeviation + ", mean score deviation: " +
+                getMeanScoreDeviation() + ", ranking agreement: " + getRankingAgreement() + ", decision agreement: " +
+                getDecisionAgreement();
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+package it.cnr.isti.hlt.nlp4sparkml.classifier.boosting;
+
+import it.cnr.isti.hlt.nlp4sparkml.data.MultilabelPoint;
+import it.cnr.isti.hlt.nlp4sparkml.data.PointClassificationResults;
+import it.cnr.isti.hlt.nlp4sparkml.utils.Cond;
+
+import java.io.Serializable;
+
+/**
+ * A read-only version of a {@link BoostClassifier} where the C0 and C1 values of the weak
+ * hypothesis are quantized on 8 or 16 bits. Each label has its own scale factor, computed from the
+ * maximum absolute C0/C1 value assigned to that label, so the quantization error on a single value is at
+ * most half of the label scale factor. The scores are accumulated as integers and scaled back only at the end
+ * of the classification of a point.
+ * <br/><br/>
+ * The quantized C0 and C1 values take 4 (16 bits) or 8 (8 bits) times less memory than the original
+ * double values, so the model is cheaper to broadcast and more cache friendly at classification time.
+ * Use {@link QuantizationReport} to measure how much the quantized scores differ from the original ones.
+ *
+ * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ */
+public class QuantizedBoostClassifier implements Serializable {
+
+    private final int bits;
+    private final int numLabels;
+    private final int numHypothesis;
+
+    /**
+     * The pivot features, stored as [hypothesis * numLabels + labelID].
+     */
+    private final int[] featureIDs;
+
+    /**
+     * The quantized C0 and C1 values used with 8 bits quantization, same layout of {@link #featureIDs}.
+     */
+    private final byte[] c0Bytes;
+    private final byte[] c1Bytes;
+
+    /**
+     * The quantized C0 and C1 values used with 16 bits quantization, same layout of {@link #featureIDs}.
+     */
+    private final short[] c0Shorts;
+    private final short[] c1Shorts;
+
+    /**
+     * The scale factor for each label.
+     */
+    private final double[] scales;
+
+    /**
+     * The positive threshold of each label, copied from the original classifier.
+     */
+    private double[] positiveThresholds;
+
+    private QuantizedBoostClassifier(int bits, int numLabels, int numHypothesis) {
+        this.bits = bits;
+        this.numLabels = numLabels;
+        this.numHypothesis = numHypothesis;
+        int size = numLabels * numHypothesis;
+        this.featureIDs = new int[size];
+        this.c0Bytes = bits == 8 ? new byte[size] : null;
+        this.c1Bytes = bits == 8 ? new byte[size] : null;
+        this.c0Shorts = bits == 16 ? new short[size] : null;
+        this.c1Shorts = bits == 16 ? new short[size] : null;
+        this.scales = new double[numLabels];
+    }
+
+    /**
+     * Rebuild a quantized classifier from its serialized state (see {@link BoostingKryoSerializers}).
+     */
+    QuantizedBoostClassifier(int bits, int numHypothesis, int[] featureIDs, byte[] c0Bytes, byte[] c1Bytes,
+                             short[] c0Shorts, short[] c1Shorts, double[] scales, double[] positiveThresholds) {
+        Cond.require(bits == 8 || bits == 16, "The number of quantization bits must be 8 or 16: " + bits);
+        Cond.requireNotNull(featureIDs, "featureIDs");
+        Cond.requireNotNull(scales, "scales");
+        Cond.requireNotNull(positiveThresholds, "positiveThresholds");
+        Cond.require(featureIDs.length == scales.length * numHypothesis, "The number of pivot features is not valid");
+        Cond.require(positiveThresholds.length == scales.length, "The number of thresholds is different from the number of labels");
+        if (bits == 8)
+            Cond.require(c0Bytes != null && c1Bytes != null && c0Bytes.length == featureIDs.length && c1Bytes.length == featureIDs.length,
+                    "The 8 bits C0/C1 values are not valid");
+        else
+            Cond.require(c0Shorts != null && c1Shorts != null && c0Shorts.length == featureIDs.length && c1Shorts.length == featureIDs.length,
+                    "The 16 bits C0/C1 values are not valid");
+        this.bits = bits;
+        this.numLabels = scales.length;
+        this.numHypothesis = numHypothesis;
+        this.featureIDs = featureIDs;
+        this.c0Bytes = bits == 8 ? c0Bytes : null;
+        this.c1Bytes = bits == 8 ? c1Bytes : null;
+        this.c0Shorts = bits == 16 ? c0Shorts : null;
+        this.c1Shorts = bits == 16 ? c1Shorts : null;
+        this.scales = scales;
+        this.positiveThresholds = positiveThresholds;
+    }
+
+    /**
+     * Build the quantized version of the specified classifier.
+     *
+     * @param bc   The classifier to quantize.
+     * @param bits The number of bits used to represent each C0 and C1 value. Allowed values are 8 or 16.
+     * @return The quantized classifier.
+     */
+    public static QuantizedBoostClassifier quantize(BoostClassifier bc, int bits) {
+        Cond.requireNotNull(bc, "bc");
+        Cond.require(bits == 8 || bits == 16, "The number of quantization bits must be 8 or 16: " + bits);
+        WeakHypothesis[] whs = bc.getWeakHypotheses();
+        int numLabels = bc.getNumLabels();
+        QuantizedBoostClassifier qbc = new QuantizedBoostClassifier(bits, numLabels, whs.length);
+        qbc.positiveThresholds = bc.getPositiveThresholds();
+        int maxValue = (1 << (bits - 1)) - 1;
+
+        for (int labelID = 0; labelID < numLabels; labelID++) {
+            double maxAbs = 0;
+            for (int i = 0; i < whs.length; i++) {
+                WeakHypothesis.WeakHypothesisData whd = whs[i].getLabelData(labelID);
+                maxAbs = Math.max(maxAbs, Math.max(Math.abs(whd.getC0()), Math.abs(whd.getC1())));
+            }
+            Cond.require(!Double.isInfinite(maxAbs) && !Double.isNaN(maxAbs), "The label " + labelID + " has not finite C0/C1 values");
+            qbc.scales[labelID] = maxAbs > 0 ? maxAbs / maxValue : 1;
+        }
+
+        for (int i = 0; i < whs.length; i++) {
+            for (int labelID = 0; labelID < numLabels; labelID++) {
+                WeakHypothesis.WeakHypothesisData whd = whs[i].getLabelData(labelID);
+                int idx = i * numLabels + labelID;
+                qbc.featureIDs[idx] = whd.getFeatureID();
+                long c0 = Math.round(whd.getC0() / qbc.scales[labelID]);
+                long c1 = Math.round(whd.getC1() / qbc.scales[labelID]);
+                if (bits == 8) {
+                    qbc.c0Bytes[idx] = (byte) c0;
+                    qbc.c1Bytes[idx] = (byte) c1;
+                } else {
+                    qbc.c0Shorts[idx] = (short) c0;
+                    qbc.c1Shorts[idx] = (short) c1;
+                }
+            }
+        }
+        return qbc;
+    }
+
+    /**
+     * Get the number of bits used to represent each C0 and C1 value.
+     *
+     * @return The number of bits used to represent each C0 and C1 value.
+     */
+    public int getBits() {
+        return bits;
+    }
+
+    /**
+     * Get the number of labels handled by the model.
+     *
+     * @return The number of labels handled by the model.
+     */
+    public int getNumLabels() {
+        return numLabels;
+    }
+
+    /**
+     * Get the scale factor used to quantize the C0 and C1 values of the specified label.
+     *
+     * @param labelID The label ID.
+     * @return The scale factor of the label.
+     */
+    public double getScale(int labelID) {
+        Cond.require(labelID >= 0 && labelID < numLabels, "The label ID is not valid: " + labelID);
+        return scales[labelID];
+    }
+
+    int getNumHypothesis() {
+        return numHypothesis;
+    }
+
+    int[] getFeatureIDs() {
+        return featureIDs;
+    }
+
+    byte[] getC0Bytes() {
+        return c0Bytes;
+    }
+
+    byte[] getC1Bytes() {
+        return c1Bytes;
+    }
+
+    short[] getC0Shorts() {
+        return c0Shorts;
+    }
+
+    short[] getC1Shorts() {
+        return c1Shorts;
+    }
+
+    double[] getScales() {
+        return scales;
+    }
+
+    double[] getPositiveThresholds() {
+        return positiveThresholds;
+    }
+
+    /**
+     * Get the approximated memory used by the quantized C0 and C1 values, pivot features and scale factors.
+     *
+     * @return The approximated memory used by the model, in bytes.
+     */
+    public long getSizeInBytes() {
+        long size = (long) numLabels * numHypothesis;
+        return size * 4 + size * 2 * (bits / 8) + numLabels * 8L;
+    }
+
+
+    public PointClassificationResults classify(MultilabelPoint doc) {
+        Cond.requireNotNull(doc, "point");
+
+        long[] accumulators = new long[numLabels];
+        for (int i = 0; i < numHypothesis; i++) {
+            int base = i * numLabels;
+            for (int labelID = 0; labelID < numLabels; labelID++) {
+                int idx = base + labelID;
+                boolean present = doc.hasFeature(featureIDs[idx]);
+                if (bits == 8)
+                    accumulators[labelID] += present ? c1Bytes[idx] : c0Bytes[idx];
+                else
+                    accumulators[labelID] += present ? c1Shorts[idx] : c0Shorts[idx];
+            }
+        }
+
+        int[] labels = new int[numLabels];
+        double[] scores = new double[numLabels];
+        double[] positiveThreshold = new double[numLabels];
+        for (int labelID = 0; labelID < numLabels; labelID++) {
+            labels[labelID] = labelID;
+            scores[labelID] = accumulators[labelID] * scales[labelID];
+            positiveThreshold[labelID] = positiveThresholds[labelID];
+        }
+
+        return new PointClassificationResults(doc.getPointID(), labels, scores, positiveThreshold);
+    }
+}
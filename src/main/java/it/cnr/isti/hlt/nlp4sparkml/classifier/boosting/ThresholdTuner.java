@@ -0,0 +1,331 @@
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+package it.cnr.isti.hlt.nlp4sparkml.classifier.boosting;
+
+import it.cnr.isti.hlt.nlp4sparkml.data.ContingencyTable;
+import it.cnr.isti.hlt.nlp4sparkml.data.DataUtils;
+import it.cnr.isti.hlt.nlp4sparkml.data.MultilabelPoint;
+import it.cnr.isti.hlt.nlp4sparkml.utils.Cond;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.broadcast.Broadcast;
+import org.apache.spark.sql.DataFrame;
+
+import java.io.Serializable;
+
+/**
+ * A distributed optimizer of the positive thresholds of a {@link BoostClassifier}. A single aggregation over
+ * the validation points builds, for each label, two histograms of the scores: one for the points having the
+ * label as gold label and one for the other points. On the driver, for each label the tuner chooses the
+ * histogram bin boundary which maximizes the F-beta measure.
+ * <br/><br/>
+ * The bins of each histogram have a power of two width and are aligned to the multiples of their width, and the
+ * width is doubled as needed so that the bins span the range of the observed scores. Because of the alignment
+ * the histograms built on different partitions can be merged exactly, by summing the bins of the coarser grid,
+ * so the points are scored only once. No raw score is collected on the driver: the aggregated data takes
+ * numLabels * 2 * numBins longs, independently from the number of points.
+ *
+ * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ */
+public class ThresholdTuner implements Serializable {
+
+    private final int numBins;
+    private final double beta;
+
+    /**
+     * Create a tuner using 256 bins for each histogram and optimizing F1.
+     */
+    public ThresholdTuner() {
+        this(256, 1.0);
+    }
+
+    /**
+     * Create a new tuner.
+     *
+     * @param numBins The number of bins of each histogram.
+     * @param beta    The beta value of the F-beta measure to optimize.
+     */
+    public ThresholdTuner(int numBins, double beta) {
+        Cond.require(numBins > 0, "The number of bins is less than 1");
+        Cond.require(beta > 0, "The beta value must be greater than 0");
+        this.numBins = numBins;
+        this.beta = beta;
+    }
+
+    public int getNumBins() {
+        return numBins;
+    }
+
+    public double getBeta() {
+        return beta;
+    }
+
+    /**
+     * Compute the optimal positive thresholds of the specified model on the points contained in the model
+     * input column of the given dataset. The specified model is not modified.
+     *
+     * @param model   The model to tune.
+     * @param dataset The dataset containing the validation points.
+     * @return A new model, with the same params of the given model, whose classifier uses the computed thresholds.
+     */
+    public BoostClassifierModel tune(BoostClassifierModel model, DataFrame dataset) {
+        Cond.requireNotNull(model, "model");
+        Cond.requireNotNull(dataset, "dataset");
+        String inputCol = model.getInputCol();
+        int numFeatures = model.getNumFeatures();
+        double[] thresholds = computeThresholds(model.getClassifier(),
+                dataset.javaRDD().map(row -> DataUtils.toMultilabelPoint(row, inputCol, numFeatures)));
+        return model.withPositiveThresholds(thresholds);
+    }
+
+    /**
+     * Compute the optimal positive thresholds of the specified classifier on the given validation points.
+     * The classifier is not modified.
+     *
+     * @param bc     The classifier.
+     * @param points The validation points. The gold labels are the labels assigned to each point.
+     * @return The computed thresholds, one for each label.
+     */
+    public double[] computeThresholds(BoostClassifier bc, JavaRDD<MultilabelPoint> points) {
+        Cond.requireNotNull(bc, "bc");
+        Cond.requireNotNull(points, "points");
+        int numLabels = bc.getNumLabels();
+        JavaSparkContext sc = new JavaSparkContext(points.context());
+        Broadcast<BoostClassifier> bcModel = sc.broadcast(bc);
+
+        LabelHistogram[] initialHistograms = new LabelHistogram[numLabels];
+        for (int labelID = 0; labelID < numLabels; labelID++)
+            initialHistograms[labelID] = new LabelHistogram(numBins);
+        LabelHistogram[] histograms = points.treeAggregate(initialHistograms, (acc, pt) -> {
+            double[] scores = bcModel.value().classify(pt).getScores();
+            boolean[] gold = new boolean[numLabels];
+            for (int labelID : pt.getLabels()) {
+                if (labelID >= 0 && labelID < numLabels)
+                    gold[labelID] = true;
+            }
+            for (int labelID = 0; labelID < numLabels; labelID++)
+                acc[labelID].add(scores[labelID], gold[labelID]);
+            return acc;
+        }, (acc1, acc2) -> {
+            for (int labelID = 0; labelID < numLabels; labelID++)
+                acc1[labelID] = acc1[labelID].merge(acc2[labelID]);
+            return acc1;
+        });
+        bcModel.destroy();
+
+        double[] thresholds = new double[numLabels];
+        for (int labelID = 0; labelID < numLabels; labelID++) {
+            // Without validation points keep the default threshold.
+            if (!histograms[labelID].isEmpty())
+                thresholds[labelID] = chooseThreshold(histograms[labelID]);
+        }
+        return thresholds;
+    }
+
+    /**
+     * Choose the threshold maximizing the F-beta measure of the specified label. The candidate thresholds are the
+     * bin boundaries: using the boundary k, all the points falling in bins k..numBins-1 are positive.
+     */
+    private double chooseThreshold(LabelHistogram histogram) {
+        long[] negatives = histogram.negatives;
+        long[] positives = histogram.positives;
+        long totalPositives = 0, totalNegatives = 0;
+        for (int bin = 0; bin < numBins; bin++) {
+            totalNegatives += negatives[bin];
+            totalPositives += positives[bin];
+        }
+
+        // Start with all points classified as negative (k = numBins) and move the threshold down.
+        long tp = 0, fp = 0;
+        int bestK = numBins;
+        double bestF = new ContingencyTable(0, totalNegatives, 0, totalPositives).f(beta);
+        for (int k = numBins - 1; k >= 0; k--) {
+            tp += positives[k];
+            fp += negatives[k];
+            double f = new ContingencyTable(tp, totalNegatives - fp, fp, totalPositives - tp).f(beta);
+            if (f > bestF) {
+                bestF = f;
+                bestK = k;
+            }
+        }
+
+        if (bestK == numBins)
+            return histogram.maxScore;
+        return Math.nextDown(histogram.lowerBoundary(bestK));
+    }
+
+
+    /**
+     * The histograms of the scores of a single label, for the negative and for the positive points. The bin with
+     * global index g covers the scores in [g * 2^exponent, (g + 1) * 2^exponent) and the histogram keeps the
+     * numBins bins starting from the global index 'base'. Since the grids of two exponents are nested, a
+     * histogram can be coarsened, and two histograms merged, without approximations.
+     */
+    static class LabelHistogram implements Serializable {
+        private final int numBins;
+        private int exponent;
+        private long base;
+        private double minScore = Double.POSITIVE_INFINITY;
+        private double maxScore = Double.NEGATIVE_INFINITY;
+        private long[] negatives;
+        private long[] positives;
+
+        LabelHistogram(int numBins) {
+            this.numBins = numBins;
+            negatives = new long[numBins];
+            positives = new long[numBins];
+        }
+
+        boolean isEmpty() {
+            return minScore > maxScore;
+        }
+
+        void add(double score, boolean positive) {
+            Cond.require(!Double.isNaN(score) && !Double.isInfinite(score), "The score " + score + " is not finite");
+            if (isEmpty()) {
+                // The finest grid where the score has an index of at most 53 bits.
+                exponent = Math.getExponent(Math.max(Math.abs(score), Double.MIN_NORMAL)) - 52;
+                base = index(score, exponent);
+            } else {
+                long idx = index(score, exponent);
+                if (idx < base || idx >= base + numBins) {
+                    double min = Math.min(minScore, score);
+                    double max = Math.max(maxScore, score);
+                    int e = fittingExponent(min, max, exponent);
+                    rebin(e, index(min, e));
+                }
+            }
+            int bin = (int) (index(score, exponent) - base);
+            if (positive)
+                positives[bin]++;
+            else
+                negatives[bin]++;
+            minScore = Math.min(minScore, score);
+            maxScore = Math.max(maxScore, score);
+        }
+
+        /**
+         * Merge the specified histogram with this histogram.
+         *
+         * @param other The other histogram, with the same number of bins.
+         * @return The merged histogram (one of the two objects).
+         */
+        LabelHistogram merge(LabelHistogram other) {
+            if (other.isEmpty())
+                return this;
+            if (isEmpty())
+                return other;
+            double min = Math.min(minScore, other.minScore);
+            double max = Math.max(maxScore, other.maxScore);
+            int e = fittingExponent(min, max, Math.max(exponent, other.exponent));
+            long newBase = index(min, e);
+            rebin(e, newBase);
+            other.rebin(e, newBase);
+            for (int bin = 0; bin < numBins; bin++) {
+                negatives[bin] += other.negatives[bin];
+                positives[bin] += other.positives[bin];
+            }
+            minScore = min;
+            maxScore = max;
+            return this;
+        }
+
+        /**
+         * Get the number of negative or positive points falling in the specified bin.
+         */
+        long getCount(int bin, boolean positive) {
+            return positive ? positives[bin] : negatives[bin];
+        }
+
+        /**
+         * Get the lower boundary of the specified bin.
+         */
+        double lowerBoundary(int bin) {
+            return Math.scalb((double) (base + bin), exponent);
+        }
+
+        /**
+         * Get the smallest exponent, not less than the given one, whose grid has at most numBins bins between
+         * the specified scores.
+         */
+        private int fittingExponent(double min, double max, int minExponent) {
+            // Keep the indexes far from the long overflow.
+            int e = Math.max(minExponent, Math.getExponent(Math.max(Math.abs(min), Math.abs(max))) - 60);
+            while (index(max, e) - index(min, e) >= numBins)
+                e++;
+            return e;
+        }
+
+        /**
+         * Move the bins to the grid of the specified exponent (not less than the current one), starting from
+         * the given global index.
+         */
+        private void rebin(int newExponent, long newBase) {
+            if (newExponent == exponent && newBase == base)
+                return;
+            int shift = Math.min(newExponent - exponent, 63);
+            long[] newNegatives = new long[numBins];
+            long[] newPositives = new long[numBins];
+            for (int bin = 0; bin < numBins; bin++) {
+                if (negatives[bin] == 0 && positives[bin] == 0)
+                    continue;
+                // The arithmetic shift is the floor division by 2^shift.
+                int newBin = (int) (((base + bin) >> shift) - newBase);
+                newNegatives[newBin] += negatives[bin];
+                newPositives[newBin] += positives[bin];
+            }
+            negatives = newNegatives;
+            positives = newPositives;
+            exponent = newExponent;
+            base = newBase;
+        }
+
+        private static long index(double score, int exponent) {
+            double scaled = Math.scalb(score, -exponent);
+            // A negative score rounded to -0 still belongs to the bin -1.
+            if (scaled == 0 && score < 0)
+                return -1;
+            return (long) Math.floor(scaled);
+        }
+    }
+}
@@ -48,19 +48,20 @@ import java.io.Serializable;
  * A contingency table for a classification task.<br/><br/>
  * This structure allows to evaluate a classification
  * task by providing some specific measures like {@link #f1()},
- * {@link #precision()} or {@link #recall()}.
+ * {@link #precision()} or {@link #recall()}. The counts are kept as longs, so that the table can
+ * summarize the results of large datasets (e.g. micro-averaged over many labels) without overflows.
  *
  * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
  */
 public class ContingencyTable implements Serializable {
 
-    private final int tp;
-    private final int tn;
-    private final int fp;
-    private final int fn;
+    private final long tp;
+    private final long tn;
+    private final long fp;
+    private final long fn;
 
 
-    public ContingencyTable(int tp, int tn, int fp, int fn) {
+    public ContingencyTable(long tp, long tn, long fp, long fn) {
         this.tp = tp;
         this.tn = tn;
         this.fp = fp;
@@ -73,7 +74,7 @@ public class ContingencyTable implements Serializable {
      *
      * @return The number of true positives.
      */
-    public int tp() {
+    public long tp() {
         return tp;
     }
 
@@ -82,7 +83,7 @@ public class ContingencyTable implements Serializable {
      *
      * @return The number of true negatives.
      */
-    public int tn() {
+    public long tn() {
         return tn;
     }
 
@@ -91,7 +92,7 @@ public class ContingencyTable implements Serializable {
      *
      * @return The number of false positives.
      */
-    public int fp() {
+    public long fp() {
         return fp;
     }
 
@@ -100,7 +101,7 @@ public class ContingencyTable implements Serializable {
      *
      * @return The number of false negatives.
      */
-    public int fn() {
+    public long fn() {
         return fn;
     }
 
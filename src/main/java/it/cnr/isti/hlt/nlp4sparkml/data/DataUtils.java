@@ -46,11 +46,15 @@ package it.cnr.isti.hlt.nlp4sparkml.data;
 import it.cnr.isti.hlt.nlp4sparkml.datasource.LabeledTextualDocument;
 import it.cnr.isti.hlt.nlp4sparkml.datasource.TextualDocument;
 import it.cnr.isti.hlt.nlp4sparkml.utils.Cond;
+import it.cnr.isti.hlt.nlp4sparkml.utils.RowUtils;
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.spark.api.java.JavaRDD;
 import org.apache.spark.api.java.JavaSparkContext;
 import org.apache.spark.broadcast.Broadcast;
 import org.apache.spark.mllib.linalg.SparseVector;
+import org.apache.spark.mllib.linalg.Vector;
+import org.apache.spark.mllib.linalg.VectorUDT;
+import org.apache.spark.mllib.linalg.Vectors;
 import org.apache.spark.sql.DataFrame;
 import org.apache.spark.sql.Row;
 import org.apache.spark.sql.RowFactory;
@@ -59,14 +63,14 @@ import org.apache.spark.sql.types.DataType;
 import org.apache.spark.sql.types.DataTypes;
 import org.apache.spark.sql.types.StructField;
 import org.apache.spark.sql.types.StructType;
+import org.apache.spark.storage.StorageLevel;
 import scala.Tuple2;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -87,147 +91,125 @@ public class DataUtils {
      * Load data file in LibSvm format. The documents IDs are assigned according to the row index in the original
      * file, i.e. useful at classification time. We are assuming that the feature IDs are the same as the training
      * file used to build the classification model.
+     * <br/><br/>
+     * See {@link #loadLibSvmFileFormatData(JavaSparkContext, String, boolean, boolean)} for how the file is read.
      *
      * @param sc       The spark context.
      * @param dataFile The data file.
      * @return An RDD containing the read points.
      */
     public static JavaRDD<MultilabelPoint> loadLibSvmFileFormatDataAsList(JavaSparkContext sc, String dataFile, boolean labels0Based, boolean binaryProblem) {
-        if (sc == null)
-            throw new NullPointerException("The Spark Context is 'null'");
-        if (dataFile == null || dataFile.isEmpty())
-            throw new IllegalArgumentException("The dataFile is 'null'");
-
-        JavaRDD<String> lines = sc.textFile(dataFile).cache();
-        int numFeatures = computeNumFeaturesFromLibSvmFormat(lines);
-
-        ArrayList<MultilabelPoint> points = new ArrayList<>();
-        try {
-            BufferedReader br = new BufferedReader(new FileReader(dataFile));
-
-            try {
-                int docID = 0;
-                String line = br.readLine();
-                while (line != null) {
-                    if (line.isEmpty())
-                        return null;
-                    String[] fields = line.split("\\s+");
-                    String[] t = fields[0].split(",");
-                    int[] labels = new int[0];
-                    if (!binaryProblem) {
-                        labels = new int[t.length];
-                        for (int i = 0; i < t.length; i++) {
-                            String label = t[i];
-                            if (labels0Based)
-                                labels[i] = new Double(Double.parseDouble(label)).intValue();
-                            else
-                                labels[i] = new Double(Double.parseDouble(label)).intValue() - 1;
-                            if (labels[i] < 0)
-                                throw new IllegalArgumentException("In current configuration I obtain a negative label ID value. Please check if this is a problem binary or multiclass " +
-                                        "and if the labels IDs are in form 0-based or 1-based");
-                        }
-                    } else {
-                        if (t.length > 1)
-                            throw new IllegalArgumentException("In binary problem you can only specify one label ID (+1 or -1) per document as valid label IDs");
-                        int label = new Double(Double.parseDouble(t[0])).intValue();
-                        if (label > 0) {
-                            labels = new int[]{0};
-                        }
-                    }
-                    ArrayList<Integer> indexes = new ArrayList<Integer>();
-                    ArrayList<Double> values = new ArrayList<Double>();
-                    for (int j = 1; j < fields.length; j++) {
-                        String data = fields[j];
-                        if (data.startsWith("#"))
-                            // Beginning of a comment. Skip it.
-                            break;
-                        String[] featInfo = data.split(":");
-                        // Transform feature ID value in 0-based.
-                        int featID = Integer.parseInt(featInfo[0]) - 1;
-                        double value = Double.parseDouble(featInfo[1]);
-                        indexes.add(featID);
-                        values.add(value);
-                    }
-
-                    points.add(new MultilabelPoint(docID, numFeatures, indexes.stream().mapToInt(i -> i).toArray(), values.stream().mapToDouble(i -> i).toArray(), labels));
-
-                    line = br.readLine();
-                    docID++;
-                }
-            } finally {
-                br.close();
-            }
-        } catch (Exception e) {
-            throw new RuntimeException("Reading input LibSVM data file", e);
-        }
-
-        return sc.parallelize(points);
+        return loadLibSvmFileFormatData(sc, dataFile, labels0Based, binaryProblem);
     }
 
     /**
-     * Load data file in LibSVm format. The documents IDs are assigned arbitrarily by Spark.
+     * Load data file in LibSVm format. The document IDs are dense, in the range [0, numPoints), and follow the
+     * order of the lines in the file, so they can be used to index per-document arrays sized with
+     * {@link #getNumDocuments(JavaRDD)}. Empty lines are skipped, i.e. the ID of a point is its index among the
+     * non-empty lines of the file.
+     * <br/><br/>
+     * The lines are parsed in parallel on the executors and the file is scanned only once: a first job parses and
+     * persists the points, using as temporary IDs the offsets of the lines inside their partitions, and collects
+     * the number of points and the maximum feature ID of each partition. The final IDs are then obtained by adding
+     * to the temporary IDs the prefix sum of the sizes of the previous partitions. The re-identified points are
+     * persisted and materialized before releasing the temporary ones, so the returned RDD is already persisted
+     * with {@link StorageLevel#MEMORY_AND_DISK()}: the caller owns it and should {@code unpersist()} it when it
+     * is no longer needed.
      *
      * @param sc       The spark context.
      * @param dataFile The data file.
-     * @return An RDD containing the read points.
+     * @return A persisted RDD containing the read points.
      */
     public static JavaRDD<MultilabelPoint> loadLibSvmFileFormatData(JavaSparkContext sc, String dataFile, boolean labels0Based, boolean binaryProblem) {
+        if (sc == null)
+            throw new NullPointerException("The Spark Context is 'null'");
+        return loadLibSvmFileFormatData(sc, dataFile, sc.defaultMinPartitions(), labels0Based, binaryProblem);
+    }
+
+    /**
+     * Load data file in LibSVm format, reading it in at least the specified number of partitions. See
+     * {@link #loadLibSvmFileFormatData(JavaSparkContext, String, boolean, boolean)}.
+     *
+     * @param sc            The spark context.
+     * @param dataFile      The data file.
+     * @param minPartitions The minimum number of partitions of the returned RDD.
+     * @return A persisted RDD containing the read points.
+     */
+    public static JavaRDD<MultilabelPoint> loadLibSvmFileFormatData(JavaSparkContext sc, String dataFile, int minPartitions, boolean labels0Based, boolean binaryProblem) {
         if (sc == null)
             throw new NullPointerException("The Spark Context is 'null'");
         if (dataFile == null || dataFile.isEmpty())
             throw new IllegalArgumentException("The dataFile is 'null'");
-        JavaRDD<String> lines = sc.textFile(dataFile).cache();
-        int localNumFeatures = computeNumFeaturesFromLibSvmFormat(lines);
-        Broadcast<Integer> distNumFeatures = sc.broadcast(localNumFeatures);
-        JavaRDD<MultilabelPoint> docs = lines.filter(line -> !line.isEmpty()).zipWithIndex().map(item -> {
-            int numFeatures = distNumFeatures.getValue();
-            String line = item._1();
-            long indexLong = item._2();
-            int index = (int) indexLong;
-            String[] fields = line.split("\\s+");
-            String[] t = fields[0].split(",");
-            int[] labels = new int[0];
-            if (!binaryProblem) {
-                labels = new int[t.length];
-                for (int i = 0; i < t.length; i++) {
-                    String label = t[i];
-                    // Labels should be already 0-based.
-                    if (labels0Based)
-                        labels[i] = new Double(Double.parseDouble(label)).intValue();
-                    else
-                        labels[i] = new Double(Double.parseDouble(label)).intValue() - 1;
-                    if (labels[i] < 0)
-                        throw new IllegalArgumentException("In current configuration I obtain a negative label ID value. Please check if this is a problem binary or multiclass " +
-                                "and if the labels IDs are in form 0-based or 1-based");
-                    assert (labels[i] >= 0);
+        Cond.require(minPartitions > 0, "The minimum number of partitions must be greater than 0");
+
+        JavaRDD<MultilabelPoint> parsed = sc.textFile(dataFile, minPartitions).filter(line -> !line.isEmpty()).mapPartitions(items -> {
+            // A single parser for each partition, so its buffers are reused by all the lines of the partition.
+            LibSvmLineParser parser = new LibSvmLineParser(labels0Based, binaryProblem);
+            return () -> new Iterator<MultilabelPoint>() {
+                private int offset = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return items.hasNext();
                 }
-            } else {
-                if (t.length > 1)
-                    throw new IllegalArgumentException("In binary problem you can only specify one label ID (+1 or -1) per document as valid label IDs");
-                int label = new Double(Double.parseDouble(t[0])).intValue();
-                if (label > 0) {
-                    labels = new int[]{0};
+
+                @Override
+                public MultilabelPoint next() {
+                    return parser.parse(items.next(), offset++, 0);
                 }
+            };
+        }, true).persist(StorageLevel.MEMORY_AND_DISK());
+
+        // For each partition, the partition index, the number of points and the maximum feature ID. This job
+        // materializes the parsed points and is the only scan of the file.
+        List<int[]> stats = parsed.mapPartitionsWithIndex((partitionIndex, points) -> {
+            int numPoints = 0;
+            int maxFeatureID = -1;
+            while (points.hasNext()) {
+                for (int featureID : points.next().getFeatures())
+                    maxFeatureID = Math.max(maxFeatureID, featureID);
+                numPoints++;
             }
-            ArrayList<Integer> indexes = new ArrayList<Integer>();
-            ArrayList<Double> values = new ArrayList<Double>();
-            for (int j = 1; j < fields.length; j++) {
-                String data = fields[j];
-                if (data.startsWith("#"))
-                    // Beginning of a comment. Skip it.
-                    break;
-                String[] featInfo = data.split(":");
-                // Transform feature ID value in 0-based.
-                int featID = Integer.parseInt(featInfo[0]) - 1;
-                double value = Double.parseDouble(featInfo[1]);
-                indexes.add(featID);
-                values.add(value);
-            }
-
-            return new MultilabelPoint(index, numFeatures, indexes.stream().mapToInt(i -> i).toArray(), values.stream().mapToDouble(i -> i).toArray(), labels);
-        });
+            return Collections.singletonList(new int[]{partitionIndex, numPoints, maxFeatureID}).iterator();
+        }, true).collect();
+
+        int[] sizes = new int[parsed.partitions().size()];
+        int maxFeatureID = -1;
+        for (int[] s : stats) {
+            sizes[s[0]] = s[1];
+            maxFeatureID = Math.max(maxFeatureID, s[2]);
+        }
+        int[] offsets = new int[sizes.length];
+        long numPoints = 0;
+        for (int i = 0; i < sizes.length; i++) {
+            offsets[i] = (int) numPoints;
+            numPoints += sizes[i];
+        }
+        Cond.require(numPoints <= Integer.MAX_VALUE, "The number of points " + numPoints + " exceeds the maximum number of IDs");
+        int numFeatures = maxFeatureID + 1;
+
+        Broadcast<int[]> bcOffsets = sc.broadcast(offsets);
+        JavaRDD<MultilabelPoint> result = parsed.mapPartitionsWithIndex((partitionIndex, points) -> {
+            int offset = bcOffsets.value()[partitionIndex];
+            return new Iterator<MultilabelPoint>() {
+                @Override
+                public boolean hasNext() {
+                    return points.hasNext();
+                }
 
-        return docs;
+                @Override
+                public MultilabelPoint next() {
+                    MultilabelPoint pt = points.next();
+                    return new MultilabelPoint(offset + pt.getPointID(), numFeatures, pt.getFeatures(), pt.getWeights(), pt.getLabels());
+                }
+            };
+        }, true).persist(StorageLevel.MEMORY_AND_DISK());
+
+        // Materialize the final points from the cached ones, then release the intermediate RDD and the offsets.
+        result.count();
+        parsed.unpersist(false);
+        bcOffsets.unpersist(false);
+        return result;
     }
 
     /**
@@ -242,18 +224,7 @@ public class DataUtils {
         int maxFeatureID = lines.map(line -> {
             if (line.isEmpty())
                 return -1;
-            String[] fields = line.split("\\s+");
-            int maximumFeatID = 0;
-            for (int j = 1; j < fields.length; j++) {
-                String data = fields[j];
-                if (data.startsWith("#"))
-                    // Beginning of a comment. Skip it.
-                    break;
-                String[] featInfo = data.split(":");
-                int featID = Integer.parseInt(featInfo[0]);
-                maximumFeatID = Math.max(featID, maximumFeatID);
-            }
-            return maximumFeatID;
+            return LibSvmLineParser.getMaxFeatureID(line);
         }).reduce((val1, val2) -> val1 < val2 ? val2 : val1);
 
         return maxFeatureID;
@@ -262,7 +233,8 @@ public class DataUtils {
 
     /**
      * Compute the number of distinct features used in the specified RDD. The data contained in
-     * column {@code fieldName} must be in the format as coded in {@link #multilabelPointDataType()}.
+     * column {@code fieldName} must be in the format as coded in {@link #multilabelPointDataType()} or
+     * {@link #multilabelPointVectorDataType()}.
      *
      * @param rows      The RDD to be analyzed.
      * @param fieldName The column containing the interesting data.
@@ -272,7 +244,9 @@ public class DataUtils {
     public static int computeNumFeaturesFromDataFrame(JavaRDD<Row> rows, String fieldName) {
         int maxFeatureID = rows.map(row -> {
             Row rowFeatures = row.getStruct(row.fieldIndex(fieldName));
-            List<Integer> features = rowFeatures.getList(rowFeatures.fieldIndex(FEATURES));
+            Object featuresValue = rowFeatures.get(rowFeatures.fieldIndex(FEATURES));
+            int[] features = featuresValue instanceof Vector ? ((Vector) featuresValue).toSparse().indices() :
+                    RowUtils.getIntArray(rowFeatures, FEATURES);
             int maximumFeatID = 0;
             for (int featureID : features) {
                 if (featureID > maximumFeatID)
@@ -389,6 +363,22 @@ public class DataUtils {
         return st;
     }
 
+    /**
+     * Get the DataFrame struct type of a {@link MultilabelPoint} class where the features and their weights are
+     * stored in a single MLlib vector column (see {@link VectorUDT}), as used by the other Spark ML stages. This
+     * struct type is accepted everywhere a struct of type {@link #multilabelPointDataType()} is accepted.
+     *
+     * @return The corresponding DataFrame struct type.
+     */
+    public static DataType multilabelPointVectorDataType() {
+        List<StructField> fields = new ArrayList<>();
+        fields.add(DataTypes.createStructField(POINT_ID, DataTypes.IntegerType, false));
+        fields.add(DataTypes.createStructField(FEATURES, new VectorUDT(), false));
+        fields.add(DataTypes.createStructField(LABELS, DataTypes.createArrayType(DataTypes.IntegerType, false), false));
+        StructType st = DataTypes.createStructType(fields);
+        return st;
+    }
+
 
     /**
      * Create a row starting from a multi label point.
@@ -401,6 +391,17 @@ public class DataUtils {
         return RowFactory.create(pt.getPointID(), pt.getFeatures(), pt.getWeights(), pt.getLabels());
     }
 
+    /**
+     * Create a row in the format of {@link #multilabelPointVectorDataType()} starting from a multi label point.
+     *
+     * @param pt The input point.
+     * @return A new row corresponding to the content of the specified point.
+     */
+    public static Row fromMultilabelPointAsVector(MultilabelPoint pt) {
+        Cond.requireNotNull(pt, "pt");
+        return RowFactory.create(pt.getPointID(), Vectors.sparse(pt.getNumFeatures(), pt.getFeatures(), pt.getWeights()), pt.getLabels());
+    }
+
 
     /**
      * Extract a multilabel point from the specified "row" by reading data contained in the sub-struct
@@ -408,7 +409,7 @@ public class DataUtils {
      *
      * @param row         The row data.
      * @param fieldName   The name of column containing multilabel point data.
-     * @param numFeatures The number of total features available in teh dataset.
+     * @param numFeatures The number of total features available in the dataset.
      * @return
      */
     public static MultilabelPoint toMultilabelPoint(Row row, String fieldName, int numFeatures) {
@@ -417,12 +418,34 @@ public class DataUtils {
         Cond.require(!fieldName.isEmpty(), "The field name is empty");
         int idx = row.fieldIndex(fieldName);
         Cond.require(idx >= 0, "The requested field name <" + fieldName + "> is not available");
-        Row inputPoint = row.getStruct(idx);
+        return toMultilabelPoint(row.getStruct(idx), numFeatures);
+    }
 
+    /**
+     * Extract a multilabel point from the specified struct value, in the format of
+     * {@link #multilabelPointDataType()} or {@link #multilabelPointVectorDataType()}.
+     *
+     * @param inputPoint  The struct value containing multilabel point data.
+     * @param numFeatures The number of total features available in the dataset.
+     * @return The multilabel point.
+     */
+    public static MultilabelPoint toMultilabelPoint(Row inputPoint, int numFeatures) {
+        Cond.requireNotNull(inputPoint, "inputPoint");
         int pointID = inputPoint.getInt(inputPoint.fieldIndex(POINT_ID));
-        int[] features = toIntArray(inputPoint.getList(inputPoint.fieldIndex(FEATURES)));
-        double[] weights = toDoubleArray(inputPoint.getList(inputPoint.fieldIndex(WEIGHTS)));
-        int[] labels = toIntArray(inputPoint.getList(inputPoint.fieldIndex(LABELS)));
+        int featuresIdx = inputPoint.fieldIndex(FEATURES);
+        Object featuresValue = inputPoint.get(featuresIdx);
+        int[] features;
+        double[] weights;
+        if (featuresValue instanceof Vector) {
+            // The arrays of a sparse vector are used directly, without copying them.
+            SparseVector v = ((Vector) featuresValue).toSparse();
+            features = v.indices();
+            weights = v.values();
+        } else {
+            features = RowUtils.getIntArray(inputPoint, featuresIdx);
+            weights = RowUtils.getDoubleArray(inputPoint, WEIGHTS);
+        }
+        int[] labels = RowUtils.getIntArray(inputPoint, LABELS);
         MultilabelPoint point = new MultilabelPoint(pointID, numFeatures, features, weights, labels);
         return point;
     }
@@ -444,7 +467,8 @@ public class DataUtils {
     }
 
     /**
-     * Check if the specified data type have a structure compatible with a multilabel point data type. If the
+     * Check if the specified data type have a structure compatible with a multilabel point data type, i.e.
+     * {@link #multilabelPointDataType()} or {@link #multilabelPointVectorDataType()}. If the
      * structure is not compatible, the method will raise an exception.
      *
      * @param dt The data type to be checked.
@@ -452,7 +476,8 @@ public class DataUtils {
     public static void checkMultilabelPointDataType(StructType dt) {
         Cond.require(dt.fieldIndex(POINT_ID) >= 0, "The field " + POINT_ID + " does not exist!");
         Cond.require(dt.fieldIndex(FEATURES) >= 0, "The field " + FEATURES + " does not exist!");
-        Cond.require(dt.fieldIndex(WEIGHTS) >= 0, "The field " + WEIGHTS + " does not exist!");
+        if (!(dt.apply(FEATURES).dataType() instanceof VectorUDT))
+            Cond.require(dt.fieldIndex(WEIGHTS) >= 0, "The field " + WEIGHTS + " does not exist!");
         Cond.require(dt.fieldIndex(LABELS) >= 0, "The field " + LABELS + " does not exist!");
     }
 
@@ -473,9 +498,9 @@ public class DataUtils {
         Cond.require(idx >= 0, "The requested field name <" + fieldName + "> is not available");
         Row clResults = row.getStruct(idx);
         int pointID = clResults.getInt(clResults.fieldIndex(DataUtils.POINT_ID));
-        int[] labels = DataUtils.toIntArray(clResults.getList(clResults.fieldIndex(DataUtils.LABELS)));
-        double[] scores = DataUtils.toDoubleArray(clResults.getList(clResults.fieldIndex(DataUtils.SCORES)));
-        double[] positiveThreshold = DataUtils.toDoubleArray(clResults.getList(clResults.fieldIndex(DataUtils.POSITIVE_THRESHOLDS)));
+        int[] labels = RowUtils.getIntArray(clResults, DataUtils.LABELS);
+        double[] scores = RowUtils.getDoubleArray(clResults, DataUtils.SCORES);
+        double[] positiveThreshold = RowUtils.getDoubleArray(clResults, DataUtils.POSITIVE_THRESHOLDS);
         return new PointClassificationResults(pointID, labels, scores, positiveThreshold);
     }
 
@@ -529,6 +554,23 @@ public class DataUtils {
             this.labelsField = labelsField;
         }
 
+        /**
+         * Create a mapping where the features and their weights are read from a single MLlib vector column.
+         *
+         * @param pointIDField The column containing the point ID.
+         * @param vectorField  The column containing the features vector.
+         * @param labelsField  The column containing the labels.
+         */
+        public MultilabelPointFieldMapping(String pointIDField, String vectorField, String labelsField) {
+            Cond.requireNotNull(pointIDField, "pointIDField");
+            Cond.requireNotNull(vectorField, "vectorField");
+            Cond.requireNotNull(labelsField, "labelsField");
+            this.pointIDField = pointIDField;
+            this.featuresField = vectorField;
+            this.weightsField = null;
+            this.labelsField = labelsField;
+        }
+
         public String getPointIDField() {
             return pointIDField;
         }
@@ -537,6 +579,11 @@ public class DataUtils {
             return featuresField;
         }
 
+        /**
+         * Get the column containing the weights of the features.
+         *
+         * @return The column containing the weights or {@code null} if the features are read from a vector column.
+         */
         public String getWeightsField() {
             return weightsField;
         }
@@ -579,7 +626,8 @@ public class DataUtils {
     /**
      * Append a column with multilabel point schema starting from a source data frame and a
      * mapping of the available fields in the source data frame with the semantic fields in class
-     * {@link MultilabelPoint}.
+     * {@link MultilabelPoint}. If the mapping reads the features from a vector column, the new column has
+     * type {@link #multilabelPointVectorDataType()} and the vectors are copied as they are.
      *
      * @param df The source data frame.
      * @param multilabelPointFieldName The name of new column to append to the end of source data frame.
@@ -599,10 +647,15 @@ public class DataUtils {
                 values[i] = row.get(i);
             }
             int pointID = row.getInt(row.fieldIndex(localFi.getPointIDField()));
-            int[] features = toIntArray(row.getList(row.fieldIndex(localFi.getFeaturesField())));
-            double[] weights = toDoubleArray(row.getList(row.fieldIndex(localFi.getWeightsField())));
-            int[] labels = toIntArray(row.getList(row.fieldIndex(localFi.getLabelsField())));
-            Row pt = RowFactory.create(pointID, features, weights, labels);
+            int[] labels = RowUtils.getIntArray(row, localFi.getLabelsField());
+            Row pt;
+            if (localFi.getWeightsField() == null)
+                pt = RowFactory.create(pointID, row.get(row.fieldIndex(localFi.getFeaturesField())), labels);
+            else {
+                int[] features = RowUtils.getIntArray(row, localFi.getFeaturesField());
+                double[] weights = RowUtils.getDoubleArray(row, localFi.getWeightsField());
+                pt = RowFactory.create(pointID, features, weights, labels);
+            }
             values[values.length-1] = pt;
             return RowFactory.create(values);
         });
@@ -613,7 +666,7 @@ public class DataUtils {
         for (int i = 0; i < oldSchema.fields().length; i++) {
             fields.add(oldSchema.fields()[i]);
         }
-        DataType outDataType = DataUtils.multilabelPointDataType();
+        DataType outDataType = fi.getWeightsField() == null ? DataUtils.multilabelPointVectorDataType() : DataUtils.multilabelPointDataType();
         fields.add(DataTypes.createStructField(multilabelPointFieldName, outDataType, false));
         StructType updatedSchema = DataTypes.createStructType(fields);
 
@@ -705,6 +758,4 @@ public class DataUtils {
             return labels;
         }
     }
-
-
 }
@@ -0,0 +1,309 @@
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+package it.cnr.isti.hlt.nlp4sparkml.data;
+
+import java.util.Arrays;
+
+/**
+ * A parser of single lines in LibSvm format, i.e. "label1,label2,... featID:value featID:value ... # comment".
+ * The line is scanned only once, without using regular expressions or temporary strings, and the parsed
+ * features, values and labels are accumulated in growable primitive buffers which are reused between
+ * consecutive lines. Integers and decimal numbers whose digits fit in a double mantissa are decoded directly;
+ * the other numbers are delegated to {@link Double#parseDouble(String)}, so the result is always the same
+ * as the one of the JDK parser.
+ * <br/><br/>
+ * The parser is not thread-safe: use a distinct instance for each thread (e.g. one for each Spark partition).
+ *
+ * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ */
+public class LibSvmLineParser {
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * The largest mantissa which is exactly representable as a double.
+     */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private final boolean labels0Based;
+    private final boolean binaryProblem;
+
+    private int[] features = new int[64];
+    private double[] values = new double[64];
+    private int[] labels = new int[4];
+    private int numFeatures;
+    private int numLabels;
+
+    /**
+     * Create a new parser.
+     *
+     * @param labels0Based  True if the labels IDs are 0-based, false if they are 1-based.
+     * @param binaryProblem True if the file describes a binary problem, i.e. each line has a single label equal
+     *                      to +1 or -1.
+     */
+    public LibSvmLineParser(boolean labels0Based, boolean binaryProblem) {
+        this.labels0Based = labels0Based;
+        this.binaryProblem = binaryProblem;
+    }
+
+    /**
+     * Parse the specified line. The features IDs are transformed in 0-based IDs.
+     *
+     * @param line        The line to parse.
+     * @param pointID     The ID to assign to the point.
+     * @param numFeatures The number of features of the point.
+     * @return The parsed point.
+     */
+    public MultilabelPoint parse(String line, int pointID, int numFeatures) {
+        parse(line);
+        return new MultilabelPoint(pointID, numFeatures, Arrays.copyOf(features, this.numFeatures),
+                Arrays.copyOf(values, this.numFeatures), Arrays.copyOf(labels, numLabels));
+    }
+
+    /**
+     * Get the maximum (1-based) feature ID used in the specified line.
+     *
+     * @param line The line to analyze.
+     * @return The maximum feature ID used in the line or 0 if the line does not contain features.
+     */
+    public static int getMaxFeatureID(String line) {
+        int len = line.length();
+        int pos = skipWhitespaces(line, nextWhitespace(line, skipWhitespaces(line, 0)));
+        int maxFeatureID = 0;
+        while (pos < len) {
+            int end = nextWhitespace(line, pos);
+            if (line.charAt(pos) == '#')
+                // Beginning of a comment. Skip it.
+                break;
+            int colon = indexOfColon(line, pos, end);
+            maxFeatureID = Math.max(maxFeatureID, parseInt(line, pos, colon));
+            pos = skipWhitespaces(line, end);
+        }
+        return maxFeatureID;
+    }
+
+    private void parse(String line) {
+        numFeatures = 0;
+        numLabels = 0;
+        int len = line.length();
+        int pos = skipWhitespaces(line, 0);
+        int end = nextWhitespace(line, pos);
+        parseLabels(line, pos, end);
+
+        pos = skipWhitespaces(line, end);
+        while (pos < len) {
+            end = nextWhitespace(line, pos);
+            if (line.charAt(pos) == '#')
+                // Beginning of a comment. Skip it.
+                break;
+            int colon = indexOfColon(line, pos, end);
+            if (numFeatures == features.length) {
+                features = Arrays.copyOf(features, numFeatures * 2);
+                values = Arrays.copyOf(values, numFeatures * 2);
+            }
+            // Transform feature ID value in 0-based.
+            features[numFeatures] = parseInt(line, pos, colon) - 1;
+            values[numFeatures] = parseDouble(line, colon + 1, end);
+            numFeatures++;
+            pos = skipWhitespaces(line, end);
+        }
+    }
+
+    private void parseLabels(String line, int start, int end) {
+        if (binaryProblem) {
+            for (int i = start; i < end; i++) {
+                if (line.charAt(i) == ',')
+                    throw new IllegalArgumentException("In binary problem you can only specify one label ID (+1 or -1) per document as valid label IDs");
+            }
+            int label = (int) parseDouble(line, start, end);
+            if (label > 0)
+                addLabel(0);
+            return;
+        }
+
+        int pos = start;
+        while (true) {
+            int labelEnd = pos;
+            while (labelEnd < end && line.charAt(labelEnd) != ',')
+                labelEnd++;
+            int label = (int) parseDouble(line, pos, labelEnd);
+            if (!labels0Based)
+                label--;
+            if (label < 0)
+                throw new IllegalArgumentException("In current configuration I obtain a negative label ID value. Please check if this is a problem binary or multiclass " +
+                        "and if the labels IDs are in form 0-based or 1-based");
+            addLabel(label);
+            if (labelEnd == end)
+                break;
+            pos = labelEnd + 1;
+        }
+    }
+
+    private void addLabel(int label) {
+        if (numLabels == labels.length)
+            labels = Arrays.copyOf(labels, numLabels * 2);
+        labels[numLabels++] = label;
+    }
+
+
+    private static boolean isWhitespace(char c) {
+        // The same characters matched by the "\s" regular expression class.
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static int skipWhitespaces(String line, int pos) {
+        int len = line.length();
+        while (pos < len && isWhitespace(line.charAt(pos)))
+            pos++;
+        return pos;
+    }
+
+    private static int nextWhitespace(String line, int pos) {
+        int len = line.length();
+        while (pos < len && !isWhitespace(line.charAt(pos)))
+            pos++;
+        return pos;
+    }
+
+    private static int indexOfColon(String line, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (line.charAt(i) == ':')
+                return i;
+        }
+        throw new IllegalArgumentException("The feature '" + line.substring(start, end) + "' is not in the form featID:value");
+    }
+
+    /**
+     * Parse the integer contained in line[start, end). The result is the same as {@link Integer#parseInt(String)}.
+     */
+    static int parseInt(String line, int start, int end) {
+        int pos = start;
+        boolean negative = false;
+        if (pos < end && (line.charAt(pos) == '-' || line.charAt(pos) == '+')) {
+            negative = line.charAt(pos) == '-';
+            pos++;
+        }
+        // Up to 9 digits can not overflow an int.
+        if (pos == end || end - pos > 9)
+            return Integer.parseInt(line.substring(start, end));
+        int value = 0;
+        for (; pos < end; pos++) {
+            int digit = line.charAt(pos) - '0';
+            if (digit < 0 || digit > 9)
+                return Integer.parseInt(line.substring(start, end));
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parse the decimal number contained in line[start, end). The result is the same as
+     * {@link Double#parseDouble(String)}: the number is decoded directly only when the mantissa and the power of ten
+     * are both exactly representable as doubles, so that a single correctly rounded multiplication or division gives
+     * the correctly rounded result.
+     */
+    static double parseDouble(String line, int start, int end) {
+        int pos = start;
+        boolean negative = false;
+        if (pos < end && (line.charAt(pos) == '-' || line.charAt(pos) == '+')) {
+            negative = line.charAt(pos) == '-';
+            pos++;
+        }
+
+        long mantissa = 0;
+        int exponent = 0;
+        int numDigits = 0;
+        for (; pos < end; pos++) {
+            int digit = line.charAt(pos) - '0';
+            if (digit < 0 || digit > 9)
+                break;
+            mantissa = mantissa * 10 + digit;
+            numDigits++;
+            if (mantissa > MAX_EXACT_MANTISSA)
+                return Double.parseDouble(line.substring(start, end));
+        }
+        if (pos < end && line.charAt(pos) == '.') {
+            pos++;
+            for (; pos < end; pos++) {
+                int digit = line.charAt(pos) - '0';
+                if (digit < 0 || digit > 9)
+                    break;
+                mantissa = mantissa * 10 + digit;
+                exponent--;
+                numDigits++;
+                if (mantissa > MAX_EXACT_MANTISSA)
+                    return Double.parseDouble(line.substring(start, end));
+            }
+        }
+        if (numDigits == 0)
+            return Double.parseDouble(line.substring(start, end));
+        if (pos < end && (line.charAt(pos) == 'e' || line.charAt(pos) == 'E')) {
+            pos++;
+            boolean negativeExponent = false;
+            if (pos < end && (line.charAt(pos) == '-' || line.charAt(pos) == '+')) {
+                negativeExponent = line.charAt(pos) == '-';
+                pos++;
+            }
+            int expStart = pos;
+            int exp = 0;
+            for (; pos < end; pos++) {
+                int digit = line.charAt(pos) - '0';
+                if (digit < 0 || digit > 9 || exp > 1000)
+                    return Double.parseDouble(line.substring(start, end));
+                exp = exp * 10 + digit;
+            }
+            if (pos == expStart)
+                return Double.parseDouble(line.substring(start, end));
+            exponent += negativeExponent ? -exp : exp;
+        }
+        if (pos != end || exponent < -22 || exponent > 22)
+            // Unusual format (e.g. hexadecimal, "NaN", "Infinity" or "1d") or inexact power of ten.
+            return Double.parseDouble(line.substring(start, end));
+
+        double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+        return negative ? -value : value;
+    }
+}
@@ -43,14 +43,17 @@
 package it.cnr.isti.hlt.nlp4sparkml.data;
 
 import it.cnr.isti.hlt.nlp4sparkml.utils.Cond;
+import it.cnr.isti.hlt.nlp4sparkml.utils.SortUtils;
 import org.apache.spark.mllib.linalg.SparseVector;
 import org.apache.spark.mllib.linalg.Vectors;
 
 import java.io.Serializable;
+import java.util.Arrays;
 
 /**
  * The representation of a point or document in a multiclass/binary
- * problem.
+ * problem. The features are kept sorted by ascending ID, so a feature can be looked up with a binary
+ * search (see {@link #hasFeature(int)}).
  *
  * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
  */
@@ -68,7 +71,7 @@ public class MultilabelPoint implements Serializable {
     private final int numFeatures;
 
     /**
-     * The set of features representing this point.
+     * The set of features representing this point, sorted by ascending ID.
      */
     private final int[] features;
 
@@ -86,11 +89,30 @@ public class MultilabelPoint implements Serializable {
         Cond.requireNotNull(features, "features");
         Cond.requireNotNull(weights, "weights");
         Cond.requireNotNull(labels, "labels");
+        Cond.require(features.length == weights.length, "The number of features and weights are different");
         this.pointID = pointID;
         this.numFeatures = numFeatures;
-        this.features = features;
-        this.weights = weights;
         this.labels = labels;
+        if (SortUtils.isSorted(features)) {
+            this.features = features;
+            this.weights = weights;
+        } else {
+            // Sort a copy, the caller arrays are left untouched.
+            this.features = features.clone();
+            this.weights = weights.clone();
+            SortUtils.sortByKey(this.features, this.weights);
+        }
+    }
+
+    /**
+     * Check if the specified feature is one of the features of this point. The lookup is a binary search
+     * over the sorted features IDs.
+     *
+     * @param featureID The feature ID.
+     * @return True if the point contains the feature, false otherwise.
+     */
+    public boolean hasFeature(int featureID) {
+        return Arrays.binarySearch(features, featureID) >= 0;
     }
 
     /**
@@ -115,7 +137,7 @@ public class MultilabelPoint implements Serializable {
     /**
      * Get the set of valid features for this point.
      *
-     * @return The set of valid features of this point.
+     * @return The set of valid features of this point, sorted by ascending ID.
      */
     public int[] getFeatures() {
         return features;
@@ -0,0 +1,347 @@
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+package it.cnr.isti.hlt.nlp4sparkml.data;
+
+import it.cnr.isti.hlt.nlp4sparkml.utils.Cond;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.api.java.JavaSparkContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+
+/**
+ * A native binary format to cache a set of {@link MultilabelPoint}s on disk. The points are saved in a directory
+ * containing one file for each partition of the saved RDD. Each file contains a header followed by the points in a
+ * columnar CSR layout, with all the values stored in little-endian order:
+ * <ul>
+ * <li>the header: magic number, format version, number of points, number of features, number of stored features
+ * (nnz) and number of stored labels, all as ints;</li>
+ * <li>the point IDs (numPoints ints);</li>
+ * <li>the features offsets (numPoints + 1 ints) followed by the features (nnz ints) and the weights (nnz doubles);</li>
+ * <li>the labels offsets (numPoints + 1 ints) followed by the labels.</li>
+ * </ul>
+ * When loading, every file is memory-mapped and the points are built by bulk copying the slices of the mapped
+ * arrays, without any per-element parsing. Each section of a file must be smaller than 2 GB.
+ * <br/><br/>
+ * Since the files are written and memory-mapped with java.nio, the format only supports local file systems: the
+ * paths must be plain local paths or 'file:' URIs (other schemes, e.g. 'hdfs:', are rejected), and the directory
+ * must be visible with the same path from the driver and all the executors (e.g. local mode or a file system
+ * mounted on every node). Each partition file is first written to a temporary file and then moved over its final
+ * name, so a task retried or run speculatively simply replaces the file with identical content.
+ *
+ * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ */
+public class MultilabelPointBinaryFormat {
+
+    private static final int MAGIC = 0x4D4C5031;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 6 * 4;
+    private static final String FILE_PREFIX = "part-";
+    private static final String FILE_SUFFIX = ".mlp";
+
+    /**
+     * Save the specified points in the given directory. The directory must not exist.
+     *
+     * @param points     The points to save. All the points of a partition must have the same number of features.
+     * @param outputPath The output directory, on a local file system.
+     * @return The number of saved points.
+     */
+    public static long save(JavaRDD<MultilabelPoint> points, String outputPath) {
+        Cond.requireNotNull(points, "points");
+        Cond.requireNotNull(outputPath, "outputPath");
+        Path dir = toLocalPath(outputPath);
+        Cond.require(!Files.exists(dir), "The output path " + outputPath + " already exists");
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new RuntimeException("Creating directory " + outputPath, e);
+        }
+
+        String dirName = dir.toAbsolutePath().toString();
+        return points.mapPartitionsWithIndex((partitionIndex, pts) -> {
+            Path file = Paths.get(dirName, String.format("%s%05d%s", FILE_PREFIX, partitionIndex, FILE_SUFFIX));
+            return Collections.singletonList(writePartition(file, pts)).iterator();
+        }, true).collect().stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * Load the points saved with {@link #save(JavaRDD, String)} in the specified directory. The returned RDD has one
+     * partition for each saved partition.
+     *
+     * @param sc        The Spark context.
+     * @param inputPath The directory containing the saved points, on a local file system.
+     * @return The loaded points.
+     */
+    public static JavaRDD<MultilabelPoint> load(JavaSparkContext sc, String inputPath) {
+        Cond.requireNotNull(sc, "sc");
+        Cond.requireNotNull(inputPath, "inputPath");
+        File[] files = toLocalPath(inputPath).toFile().listFiles((d, name) -> name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX));
+        Cond.require(files != null, "The input path " + inputPath + " is not a directory");
+        ArrayList<String> fileNames = new ArrayList<>();
+        for (File f : files)
+            fileNames.add(f.getAbsolutePath());
+        Collections.sort(fileNames);
+        if (fileNames.isEmpty())
+            return sc.emptyRDD();
+
+        return sc.parallelize(fileNames, fileNames.size()).flatMap(fileName -> () -> readPartition(Paths.get(fileName)));
+    }
+
+
+    /**
+     * Convert the specified path to a local path, rejecting the URIs of non-local file systems.
+     */
+    private static Path toLocalPath(String path) {
+        URI uri;
+        try {
+            uri = new URI(path);
+        } catch (URISyntaxException e) {
+            return Paths.get(path);
+        }
+        String scheme = uri.getScheme();
+        // A single letter scheme is a Windows drive.
+        if (scheme == null || scheme.length() == 1)
+            return Paths.get(path);
+        Cond.require(scheme.equals("file"), "The path " + path + " is not on a local file system");
+        return Paths.get(uri);
+    }
+
+    private static long writePartition(Path file, Iterator<MultilabelPoint> points) throws IOException {
+        // A temporary directory unique to this task attempt, hidden from load() and removed also when the attempt
+        // fails.
+        Path tmpDir = Files.createTempDirectory(file.getParent(), "." + file.getFileName().toString() + "-");
+        try {
+            Path tmpFile = tmpDir.resolve("data");
+            long numPoints = writePartitionFile(tmpDir, tmpFile, points);
+            // Another attempt of the same task may have already written the file: replace it, since the content
+            // is the same.
+            try {
+                Files.move(tmpFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return numPoints;
+        } finally {
+            try (DirectoryStream<Path> tmpFiles = Files.newDirectoryStream(tmpDir)) {
+                for (Path tmpFile : tmpFiles)
+                    Files.delete(tmpFile);
+            }
+            Files.delete(tmpDir);
+        }
+    }
+
+    private static long writePartitionFile(Path tmpDir, Path file, Iterator<MultilabelPoint> points) throws IOException {
+        SectionWriter ids = new SectionWriter(tmpDir.resolve("ids"));
+        SectionWriter featuresOffsets = new SectionWriter(tmpDir.resolve("featuresOffsets"));
+        SectionWriter features = new SectionWriter(tmpDir.resolve("features"));
+        SectionWriter weights = new SectionWriter(tmpDir.resolve("weights"));
+        SectionWriter labelsOffsets = new SectionWriter(tmpDir.resolve("labelsOffsets"));
+        SectionWriter labels = new SectionWriter(tmpDir.resolve("labels"));
+        SectionWriter[] sections = {ids, featuresOffsets, features, weights, labelsOffsets, labels};
+
+        int numPoints = 0;
+        int numFeatures = -1;
+        int nnz = 0;
+        int numLabels = 0;
+        try {
+            featuresOffsets.putInt(0);
+            labelsOffsets.putInt(0);
+            while (points.hasNext()) {
+                MultilabelPoint pt = points.next();
+                if (numFeatures == -1)
+                    numFeatures = pt.getNumFeatures();
+                Cond.require(pt.getNumFeatures() == numFeatures, "All the points of a partition must have the same number of features");
+                ids.putInt(pt.getPointID());
+                for (int featureID : pt.getFeatures())
+                    features.putInt(featureID);
+                for (double weight : pt.getWeights())
+                    weights.putDouble(weight);
+                for (int labelID : pt.getLabels())
+                    labels.putInt(labelID);
+                nnz = Math.addExact(nnz, pt.getFeatures().length);
+                numLabels = Math.addExact(numLabels, pt.getLabels().length);
+                featuresOffsets.putInt(nnz);
+                labelsOffsets.putInt(numLabels);
+                numPoints++;
+            }
+        } finally {
+            for (SectionWriter section : sections)
+                section.close();
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(numPoints).putInt(Math.max(numFeatures, 0)).putInt(nnz).putInt(numLabels);
+        header.flip();
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            while (header.hasRemaining())
+                out.write(header);
+            for (SectionWriter section : sections) {
+                try (FileChannel in = FileChannel.open(section.path, StandardOpenOption.READ)) {
+                    long position = 0;
+                    long size = in.size();
+                    while (position < size)
+                        position += in.transferTo(position, size - position, out);
+                }
+                Files.delete(section.path);
+            }
+        }
+        return numPoints;
+    }
+
+    private static Iterator<MultilabelPoint> readPartition(Path file) {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = map(ch, 0, HEADER_SIZE);
+            Cond.require(header.getInt() == MAGIC, "The file " + file + " is not a points binary file");
+            int version = header.getInt();
+            Cond.require(version == VERSION, "Unsupported format version " + version + " in file " + file);
+            int numPoints = header.getInt();
+            int numFeatures = header.getInt();
+            int nnz = header.getInt();
+            int numLabels = header.getInt();
+
+            long position = HEADER_SIZE;
+            IntBuffer ids = map(ch, position, numPoints * 4L).asIntBuffer();
+            position += numPoints * 4L;
+            IntBuffer featuresOffsets = map(ch, position, (numPoints + 1) * 4L).asIntBuffer();
+            position += (numPoints + 1) * 4L;
+            IntBuffer features = map(ch, position, nnz * 4L).asIntBuffer();
+            position += nnz * 4L;
+            DoubleBuffer weights = map(ch, position, nnz * 8L).asDoubleBuffer();
+            position += nnz * 8L;
+            IntBuffer labelsOffsets = map(ch, position, (numPoints + 1) * 4L).asIntBuffer();
+            position += (numPoints + 1) * 4L;
+            IntBuffer labels = map(ch, position, numLabels * 4L).asIntBuffer();
+
+            // The mappings stay valid after the channel is closed.
+            return new Iterator<MultilabelPoint>() {
+                private int index = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return index < numPoints;
+                }
+
+                @Override
+                public MultilabelPoint next() {
+                    int featuresStart = featuresOffsets.get(index);
+                    int[] pointFeatures = new int[featuresOffsets.get(index + 1) - featuresStart];
+                    double[] pointWeights = new double[pointFeatures.length];
+                    features.position(featuresStart);
+                    features.get(pointFeatures);
+                    weights.position(featuresStart);
+                    weights.get(pointWeights);
+                    int labelsStart = labelsOffsets.get(index);
+                    int[] pointLabels = new int[labelsOffsets.get(index + 1) - labelsStart];
+                    labels.position(labelsStart);
+                    labels.get(pointLabels);
+                    MultilabelPoint pt = new MultilabelPoint(ids.get(index), numFeatures, pointFeatures, pointWeights, pointLabels);
+                    index++;
+                    return pt;
+                }
+            };
+        } catch (IOException e) {
+            throw new RuntimeException("Reading points binary file " + file, e);
+        }
+    }
+
+    private static ByteBuffer map(FileChannel ch, long position, long size) throws IOException {
+        Cond.require(size <= Integer.MAX_VALUE, "A section of a points binary file is bigger than 2 GB");
+        return ch.map(FileChannel.MapMode.READ_ONLY, position, size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+
+    /**
+     * A buffered little-endian writer of a single file section.
+     */
+    private static class SectionWriter {
+        private final Path path;
+        private final FileChannel ch;
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+
+        SectionWriter(Path path) throws IOException {
+            this.path = path;
+            this.ch = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        }
+
+        void putInt(int value) throws IOException {
+            if (buffer.remaining() < 4)
+                flush();
+            buffer.putInt(value);
+        }
+
+        void putDouble(double value) throws IOException {
+            if (buffer.remaining() < 8)
+                flush();
+            buffer.putDouble(value);
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining())
+                ch.write(buffer);
+            buffer.clear();
+        }
+
+        void close() throws IOException {
+            flush();
+            ch.close();
+        }
+    }
+}
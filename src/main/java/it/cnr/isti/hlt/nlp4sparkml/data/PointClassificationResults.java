@@ -44,10 +44,12 @@ package it.cnr.isti.hlt.nlp4sparkml.data;
 
 import it.cnr.isti.hlt.nlp4sparkml.utils.Cond;
 
+import java.io.Serializable;
+
 /**
  * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
  */
-public class PointClassificationResults {
+public class PointClassificationResults implements Serializable {
     private final int pointID;
     private final int[] labels;
     private final double[] scores;
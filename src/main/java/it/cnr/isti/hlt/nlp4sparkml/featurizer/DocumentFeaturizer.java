@@ -0,0 +1,188 @@
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+package it.cnr.isti.hlt.nlp4sparkml.featurizer;
+
+import it.cnr.isti.hlt.nlp4sparkml.data.MultilabelPoint;
+import it.cnr.isti.hlt.nlp4sparkml.indexer.FeaturesDictionary;
+import it.cnr.isti.hlt.nlp4sparkml.indexer.IdentifierGeneratorModel;
+import it.cnr.isti.hlt.nlp4sparkml.indexer.OccurencesCounterHelper;
+import it.cnr.isti.hlt.nlp4sparkml.tokenizer.BaseUnaryTokenizer;
+import it.cnr.isti.hlt.nlp4sparkml.utils.Cond;
+import it.cnr.isti.hlt.nlp4sparkml.weighter.AbstractStandardWeighter;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * The fitted state of a text featurization chain (tokenizer, features dictionary and weighter) packed in a single
+ * serializable object. The featurizer transforms a single text into a weighted {@link MultilabelPoint} without
+ * using DataFrames, with the same results of the chain {@link BaseUnaryTokenizer} -&gt;
+ * {@link IdentifierGeneratorModel} -&gt; {@link it.cnr.isti.hlt.nlp4sparkml.indexer.OccurrencesCounter} -&gt;
+ * weighter. The tokens not available in the features dictionary are ignored.
+ * <br/><br/>
+ * The featurizer is thread-safe. The temporary data of a featurization can be kept in a {@link Buffer}, to be
+ * reused for many texts by the same thread.
+ *
+ * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ */
+public class DocumentFeaturizer implements Serializable {
+
+    private final BaseUnaryTokenizer tokenizer;
+    private final FeaturesDictionary dictionary;
+    private final AbstractStandardWeighter<?> weighter;
+    private final int numFeatures;
+
+    /**
+     * Create a new featurizer.
+     *
+     * @param tokenizer   The tokenizer.
+     * @param dictionary  The features dictionary.
+     * @param weighter    The fitted weighter.
+     * @param numFeatures The number of features of the generated points.
+     */
+    public DocumentFeaturizer(BaseUnaryTokenizer tokenizer, FeaturesDictionary dictionary, AbstractStandardWeighter<?> weighter, int numFeatures) {
+        Cond.requireNotNull(tokenizer, "tokenizer");
+        Cond.requireNotNull(dictionary, "dictionary");
+        Cond.requireNotNull(weighter, "weighter");
+        Cond.require(numFeatures > 0, "The number of features must be greater than 0");
+        this.tokenizer = tokenizer;
+        this.dictionary = dictionary;
+        this.weighter = weighter;
+        this.numFeatures = numFeatures;
+    }
+
+    /**
+     * Create a featurizer from the specified fitted components. The number of features of the generated points is
+     * the maximum ID of the indexer dictionary plus 1, which must be in the int range.
+     *
+     * @param tokenizer The tokenizer.
+     * @param indexer   The fitted features indexer.
+     * @param weighter  The fitted weighter.
+     * @return The featurizer.
+     */
+    public static DocumentFeaturizer create(BaseUnaryTokenizer tokenizer, IdentifierGeneratorModel indexer, AbstractStandardWeighter<?> weighter) {
+        Cond.requireNotNull(indexer, "indexer");
+        FeaturesDictionary dictionary = indexer.getDictionary();
+        long numFeatures = dictionary.getMaxID() + 1;
+        Cond.require(numFeatures <= Integer.MAX_VALUE, "The number of features " + numFeatures + " is out of the int range");
+        return new DocumentFeaturizer(tokenizer, dictionary, weighter, (int) numFeatures);
+    }
+
+    /**
+     * Get the number of features of the generated points.
+     *
+     * @return The number of features.
+     */
+    public int getNumFeatures() {
+        return numFeatures;
+    }
+
+    /**
+     * Get the features dictionary.
+     *
+     * @return The features dictionary.
+     */
+    public FeaturesDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Transform the specified text into a weighted point.
+     *
+     * @param pointID The ID of the point.
+     * @param text    The text.
+     * @param labels  The labels of the point.
+     * @return The weighted point.
+     */
+    public MultilabelPoint featurize(int pointID, String text, int[] labels) {
+        return featurize(pointID, text, labels, new Buffer());
+    }
+
+    /**
+     * Transform the specified text into a weighted point, using the given buffer for the temporary data. The
+     * IDs of the features must be lower than the number of features of the featurizer.
+     *
+     * @param pointID The ID of the point.
+     * @param text    The text.
+     * @param labels  The labels of the point.
+     * @param buffer  The buffer, which must not be used concurrently by other threads.
+     * @return The weighted point.
+     */
+    public MultilabelPoint featurize(int pointID, String text, int[] labels, Buffer buffer) {
+        Cond.requireNotNull(text, "text");
+        Cond.requireNotNull(labels, "labels");
+        Cond.requireNotNull(buffer, "buffer");
+        List<String> tokens = tokenizer.tokenize(text);
+        long[] ids = buffer.ensureCapacity(tokens.size());
+        int numIDs = 0;
+        for (String token : tokens) {
+            long featureID = dictionary.getID(token);
+            if (featureID >= 0)
+                ids[numIDs++] = featureID;
+        }
+        long[][] counted = OccurencesCounterHelper.countOccurrences(ids, numIDs);
+        long[] features = counted[0];
+        double[] weights = weighter.computeWeights(features, counted[1]);
+        int[] intFeatures = new int[features.length];
+        for (int i = 0; i < features.length; i++) {
+            long featureID = features[i];
+            Cond.require(featureID < numFeatures, "The feature ID " + featureID + " is out of the range [0, " + numFeatures + ")");
+            intFeatures[i] = (int) featureID;
+        }
+        return new MultilabelPoint(pointID, numFeatures, intFeatures, weights, labels);
+    }
+
+
+    /**
+     * A reusable buffer for the temporary data of a featurization.
+     */
+    public static class Buffer {
+        private long[] ids = new long[256];
+
+        long[] ensureCapacity(int capacity) {
+            if (ids.length < capacity)
+                ids = new long[Math.max(capacity, ids.length * 2)];
+            return ids;
+        }
+    }
+}
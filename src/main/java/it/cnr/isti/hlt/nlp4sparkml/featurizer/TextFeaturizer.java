@@ -0,0 +1,232 @@
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+package it.cnr.isti.hlt.nlp4sparkml.featurizer;
+
+import it.cnr.isti.hlt.nlp4sparkml.data.DataUtils;
+import it.cnr.isti.hlt.nlp4sparkml.data.MultilabelPoint;
+import it.cnr.isti.hlt.nlp4sparkml.indexer.IdentifierGeneratorModel;
+import it.cnr.isti.hlt.nlp4sparkml.tokenizer.BaseUnaryTokenizer;
+import it.cnr.isti.hlt.nlp4sparkml.utils.Cond;
+import it.cnr.isti.hlt.nlp4sparkml.utils.RowUtils;
+import it.cnr.isti.hlt.nlp4sparkml.utils.UnaryTransformer;
+import it.cnr.isti.hlt.nlp4sparkml.weighter.AbstractStandardWeighter;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.broadcast.Broadcast;
+import org.apache.spark.ml.param.Param;
+import org.apache.spark.ml.param.ParamMap;
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.DataFrame;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.api.java.UDF1;
+import org.apache.spark.sql.functions;
+import org.apache.spark.sql.types.DataType;
+import org.apache.spark.sql.types.StringType;
+
+/**
+ * A Spark ML transformer which fuses the chain {@link BaseUnaryTokenizer} -&gt; {@link IdentifierGeneratorModel}
+ * -&gt; {@link it.cnr.isti.hlt.nlp4sparkml.indexer.OccurrencesCounter} -&gt; weighter in a single stage. The input
+ * column contains the raw texts and the output column contains the corresponding weighted points, with the
+ * struct type {@link DataUtils#multilabelPointDataType()}. The {@link DocumentFeaturizer} built from the
+ * configured components is broadcast by each call of {@link #transform(DataFrame)}, so the transformer keeps no
+ * per-call state and can be used concurrently, and the rows are transformed in a single pass by a UDF, without
+ * shuffles and without materializing the intermediate columns.
+ * <br/><br/>
+ * The ID of each point is read from the {@link #getIdCol()} column (of any integral type, with values in the int
+ * range) and its labels from the optional {@link #getLabelsCol()} column (an array of ints).
+ *
+ * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ */
+public class TextFeaturizer extends UnaryTransformer {
+
+    private final Param<String> idCol;
+    private final Param<String> labelsCol;
+    private DocumentFeaturizer featurizer;
+
+    public TextFeaturizer() {
+        idCol = new Param<String>(this, "idCol", "The column containing the ID of each point");
+        setDefault(idCol, "id");
+        labelsCol = new Param<String>(this, "labelsCol", "The column containing the labels of each point or empty if the points have no labels");
+        setDefault(labelsCol, "");
+    }
+
+    public Param<String> idCol() {
+        return idCol;
+    }
+
+    public Param<String> labelsCol() {
+        return labelsCol;
+    }
+
+    /**
+     * Get the name of the column containing the ID of each point.
+     *
+     * @return The ID column name.
+     */
+    public String getIdCol() {
+        return getOrDefault(idCol);
+    }
+
+    public TextFeaturizer setIdCol(String idCol) {
+        Cond.requireNotNull(idCol, "idCol");
+        set(this.idCol, idCol);
+        return this;
+    }
+
+    /**
+     * Get the name of the column containing the labels of each point.
+     *
+     * @return The labels column name or an empty string if the points have no labels.
+     */
+    public String getLabelsCol() {
+        return getOrDefault(labelsCol);
+    }
+
+    public TextFeaturizer setLabelsCol(String labelsCol) {
+        Cond.requireNotNull(labelsCol, "labelsCol");
+        set(this.labelsCol, labelsCol);
+        return this;
+    }
+
+    @Override
+    public TextFeaturizer setInputCol(String inputCol) {
+        return (TextFeaturizer) super.setInputCol(inputCol);
+    }
+
+    @Override
+    public TextFeaturizer setOutputCol(String outputCol) {
+        return (TextFeaturizer) super.setOutputCol(outputCol);
+    }
+
+    /**
+     * Get the featurizer used to transform the texts.
+     *
+     * @return The featurizer or 'null' if it has not been set.
+     */
+    public DocumentFeaturizer getFeaturizer() {
+        return featurizer;
+    }
+
+    public TextFeaturizer setFeaturizer(DocumentFeaturizer featurizer) {
+        Cond.requireNotNull(featurizer, "featurizer");
+        this.featurizer = featurizer;
+        return this;
+    }
+
+    /**
+     * Set the fitted components used to transform the texts. See
+     * {@link DocumentFeaturizer#create(BaseUnaryTokenizer, IdentifierGeneratorModel, AbstractStandardWeighter)}.
+     *
+     * @param tokenizer The tokenizer.
+     * @param indexer   The fitted features indexer.
+     * @param weighter  The fitted weighter.
+     * @return This transformer.
+     */
+    public TextFeaturizer setComponents(BaseUnaryTokenizer tokenizer, IdentifierGeneratorModel indexer, AbstractStandardWeighter<?> weighter) {
+        return setFeaturizer(DocumentFeaturizer.create(tokenizer, indexer, weighter));
+    }
+
+
+    @Override
+    protected Column getInputColumn(DataFrame dataset) {
+        if (getLabelsCol().isEmpty())
+            return functions.struct(dataset.col(getIdCol()), dataset.col(getInputCol()));
+        return functions.struct(dataset.col(getIdCol()), dataset.col(getInputCol()), dataset.col(getLabelsCol()));
+    }
+
+    @Override
+    protected UDF1<Row, Row> createColumnFunction(DataFrame dataset) {
+        Cond.require(featurizer != null, "The featurization components have not been set");
+        JavaSparkContext sc = new JavaSparkContext(dataset.sqlContext().sparkContext());
+        return new FeaturizeFunction(sc.broadcast(featurizer));
+    }
+
+    @Override
+    public TextFeaturizer copy(ParamMap extra) {
+        TextFeaturizer t = (TextFeaturizer) super.copy(extra);
+        t.featurizer = featurizer;
+        return t;
+    }
+
+    @Override
+    protected DataType getOutputDataType() {
+        return DataUtils.multilabelPointDataType();
+    }
+
+    @Override
+    protected boolean isOutputDataTypeNullable() {
+        return false;
+    }
+
+    @Override
+    protected void validateInputType(DataType inputType) {
+        Cond.requireNotNull(inputType, "inputType");
+        Cond.require(inputType instanceof StringType, "The type of 'inputType' parameter must be 'StringType'");
+    }
+
+
+    /**
+     * The function featurizing the struct (ID, text[, labels]) of each row. The buffer is created on the
+     * workers and reused for all the rows processed by the same task.
+     */
+    private static class FeaturizeFunction implements UDF1<Row, Row> {
+        private static final int[] NO_LABELS = new int[0];
+
+        private final Broadcast<DocumentFeaturizer> bcFeaturizer;
+        private transient DocumentFeaturizer.Buffer buffer;
+
+        FeaturizeFunction(Broadcast<DocumentFeaturizer> bcFeaturizer) {
+            this.bcFeaturizer = bcFeaturizer;
+        }
+
+        @Override
+        public Row call(Row input) {
+            if (buffer == null)
+                buffer = new DocumentFeaturizer.Buffer();
+            long pointID = ((Number) input.get(0)).longValue();
+            Cond.require(pointID >= Integer.MIN_VALUE && pointID <= Integer.MAX_VALUE, "The point ID " + pointID + " is out of the int range");
+            int[] labels = input.size() > 2 ? RowUtils.getIntArray(input, 2) : NO_LABELS;
+            MultilabelPoint pt = bcFeaturizer.value().featurize((int) pointID, input.getString(1), labels, buffer);
+            return DataUtils.fromMultilabelPoint(pt);
+        }
+    }
+}
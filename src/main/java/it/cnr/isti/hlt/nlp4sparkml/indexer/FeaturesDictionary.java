@@ -0,0 +1,581 @@
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+package it.cnr.isti.hlt.nlp4sparkml.indexer;
+
+import it.cnr.isti.hlt.nlp4sparkml.utils.Cond;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * An immutable and memory-compact dictionary mapping features (strings) to IDs. The features are encoded in UTF-8,
+ * sorted by unsigned byte order and front-coded in buckets of {@link #DEFAULT_BUCKET_SIZE} features: the first
+ * feature of each bucket is stored in full, while each following feature is stored as the length of the prefix
+ * shared with the previous feature plus the remaining suffix. The IDs are stored in a primitive array in the same
+ * order as the features. A lookup binary searches the first features of the buckets, comparing at first only
+ * their first 8 bytes packed in a long, and then scans a single bucket, without decoding any string.
+ * <br/><br/>
+ * The whole dictionary is a single little-endian binary image, kept on the heap, off-heap
+ * (see {@link #offHeap()}) or memory-mapped from a file (see {@link #map(Path)}). The image has the following
+ * layout:
+ * <ul>
+ * <li>the header: magic number, format version, number of features, bucket size and number of buckets, all as
+ * ints;</li>
+ * <li>the offsets of the buckets in the data section (numBuckets ints);</li>
+ * <li>the first 8 bytes of the first feature of each bucket, in big-endian order and padded with zeros
+ * (numBuckets longs);</li>
+ * <li>the IDs (numFeatures longs);</li>
+ * <li>the data section, containing the front-coded features with all the lengths stored as variable-length
+ * ints.</li>
+ * </ul>
+ * The image must be smaller than 2 GB. The dictionary is thread-safe.
+ *
+ * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ */
+public class FeaturesDictionary implements Serializable {
+
+    /**
+     * The default number of features in each front-coded bucket.
+     */
+    public static final int DEFAULT_BUCKET_SIZE = 16;
+
+    private static final int MAGIC = 0x46444331;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 5 * 4;
+
+    private transient ByteBuffer image;
+    private transient int numFeatures;
+    private transient int bucketSize;
+    private transient int numBuckets;
+    private transient int[] bucketOffsets;
+    private transient long[] bucketPrefixes;
+    private transient int idsOffset;
+    private transient int dataOffset;
+
+    private FeaturesDictionary(ByteBuffer image) {
+        init(image);
+    }
+
+    private void init(ByteBuffer image) {
+        this.image = image.order(ByteOrder.LITTLE_ENDIAN);
+        Cond.require(image.capacity() >= HEADER_SIZE && image.getInt(0) == MAGIC, "The data is not a features dictionary");
+        int version = image.getInt(4);
+        Cond.require(version == VERSION, "Unsupported features dictionary version " + version);
+        this.numFeatures = image.getInt(8);
+        this.bucketSize = image.getInt(12);
+        this.numBuckets = image.getInt(16);
+        this.idsOffset = HEADER_SIZE + numBuckets * 12;
+        this.dataOffset = idsOffset + numFeatures * 8;
+        // The buckets index is small (12 bytes per bucket) and it is accessed by every lookup, so it is kept in
+        // primitive arrays on the heap.
+        this.bucketOffsets = new int[numBuckets];
+        this.bucketPrefixes = new long[numBuckets];
+        for (int i = 0; i < numBuckets; i++) {
+            bucketOffsets[i] = dataOffset + image.getInt(HEADER_SIZE + i * 4);
+            bucketPrefixes[i] = image.getLong(HEADER_SIZE + numBuckets * 4 + i * 8);
+        }
+    }
+
+    /**
+     * Build a dictionary containing the specified features.
+     *
+     * @param features The features. The features must be distinct.
+     * @param ids      The ID of each feature.
+     * @return The dictionary.
+     */
+    public static FeaturesDictionary build(String[] features, long[] ids) {
+        return build(features, ids, DEFAULT_BUCKET_SIZE);
+    }
+
+    /**
+     * Build a dictionary containing the specified features.
+     *
+     * @param features   The features. The features must be distinct.
+     * @param ids        The ID of each feature.
+     * @param bucketSize The number of features in each front-coded bucket. Bigger buckets give a more compact
+     *                   dictionary and slower lookups.
+     * @return The dictionary.
+     */
+    public static FeaturesDictionary build(String[] features, long[] ids, int bucketSize) {
+        Cond.requireNotNull(features, "features");
+        Cond.requireNotNull(ids, "ids");
+        Cond.require(features.length == ids.length, "The number of features and IDs must be the same");
+        Cond.require(bucketSize > 0, "The bucket size must be greater than 0");
+        Entry[] entries = new Entry[features.length];
+        for (int i = 0; i < features.length; i++) {
+            Cond.requireNotNull(features[i], "feature");
+            entries[i] = new Entry(utf8(features[i]), ids[i]);
+        }
+        Arrays.sort(entries, (e1, e2) -> compare(e1.bytes, e2.bytes));
+
+        int numBuckets = (entries.length + bucketSize - 1) / bucketSize;
+        int[] bucketOffsets = new int[numBuckets];
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        byte[] previous = null;
+        for (int i = 0; i < entries.length; i++) {
+            byte[] bytes = entries[i].bytes;
+            if (previous != null)
+                Cond.require(compare(previous, bytes) != 0, "The feature " + new String(bytes, StandardCharsets.UTF_8) + " is duplicated");
+            if (i % bucketSize == 0) {
+                bucketOffsets[i / bucketSize] = data.size();
+                writeVInt(data, bytes.length);
+                data.write(bytes, 0, bytes.length);
+            } else {
+                int prefix = commonPrefix(previous, bytes);
+                writeVInt(data, prefix);
+                writeVInt(data, bytes.length - prefix);
+                data.write(bytes, prefix, bytes.length - prefix);
+            }
+            previous = bytes;
+        }
+
+        long size = HEADER_SIZE + numBuckets * 12L + entries.length * 8L + data.size();
+        Cond.require(size <= Integer.MAX_VALUE, "The features dictionary is bigger than 2 GB");
+        ByteBuffer image = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        image.putInt(MAGIC).putInt(VERSION).putInt(entries.length).putInt(bucketSize).putInt(numBuckets);
+        for (int offset : bucketOffsets)
+            image.putInt(offset);
+        for (int i = 0; i < entries.length; i += bucketSize)
+            image.putLong(prefix(entries[i].bytes));
+        for (Entry entry : entries)
+            image.putLong(entry.id);
+        image.put(data.toByteArray());
+        image.clear();
+        return new FeaturesDictionary(image);
+    }
+
+    /**
+     * Memory-map a dictionary saved with {@link #writeTo(Path)}. The dictionary data is not loaded in the heap and
+     * the pages of the file are loaded on demand by the OS.
+     *
+     * @param file The file containing the dictionary.
+     * @return The memory-mapped dictionary.
+     * @throws IOException Raised if the file can not be mapped.
+     */
+    public static FeaturesDictionary map(Path file) throws IOException {
+        Cond.requireNotNull(file, "file");
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            Cond.require(ch.size() <= Integer.MAX_VALUE, "The features dictionary is bigger than 2 GB");
+            return new FeaturesDictionary(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()));
+        }
+    }
+
+    /**
+     * Read a dictionary written with {@link #write(DataOutput)}. The dictionary is loaded in the heap.
+     *
+     * @param is The input.
+     * @return The dictionary.
+     * @throws IOException Raised if some error occurs while reading the data.
+     */
+    public static FeaturesDictionary read(DataInput is) throws IOException {
+        Cond.requireNotNull(is, "is");
+        byte[] bytes = new byte[is.readInt()];
+        is.readFully(bytes);
+        return new FeaturesDictionary(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Write the dictionary to the specified output. The dictionary can be read back with {@link #read(DataInput)}.
+     *
+     * @param os The output.
+     * @throws IOException Raised if some error occurs while writing the data.
+     */
+    public void write(DataOutput os) throws IOException {
+        Cond.requireNotNull(os, "os");
+        byte[] bytes = toByteArray();
+        os.writeInt(bytes.length);
+        os.write(bytes);
+    }
+
+    /**
+     * Write the dictionary image to the specified file. The file can be memory-mapped with {@link #map(Path)}.
+     *
+     * @param file The file to write.
+     * @throws IOException Raised if some error occurs while writing the file.
+     */
+    public void writeTo(Path file) throws IOException {
+        Cond.requireNotNull(file, "file");
+        ByteBuffer data = image.duplicate();
+        data.clear();
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (data.hasRemaining())
+                ch.write(data);
+        }
+    }
+
+    /**
+     * Get a copy of this dictionary stored off-heap, i.e. in a direct buffer which is not scanned by the garbage
+     * collector.
+     *
+     * @return The off-heap dictionary.
+     */
+    public FeaturesDictionary offHeap() {
+        ByteBuffer data = image.duplicate();
+        data.clear();
+        ByteBuffer direct = ByteBuffer.allocateDirect(data.capacity());
+        direct.put(data);
+        direct.clear();
+        return new FeaturesDictionary(direct);
+    }
+
+    /**
+     * Get the number of features in the dictionary.
+     *
+     * @return The number of features in the dictionary.
+     */
+    public int size() {
+        return numFeatures;
+    }
+
+    /**
+     * Get the size of the dictionary image, in bytes.
+     *
+     * @return The size of the dictionary image.
+     */
+    public long sizeInBytes() {
+        return image.capacity();
+    }
+
+    /**
+     * Get the ID of the specified feature.
+     *
+     * @param feature The feature.
+     * @return The ID of the feature or -1 if the feature is not in the dictionary.
+     */
+    public long getID(String feature) {
+        Cond.requireNotNull(feature, "feature");
+        int index = indexOf(utf8(feature));
+        return index >= 0 ? image.getLong(idsOffset + index * 8) : -1;
+    }
+
+    /**
+     * Indicate if the dictionary contains the specified feature.
+     *
+     * @param feature The feature.
+     * @return True if the dictionary contains the feature, false otherwise.
+     */
+    public boolean contains(String feature) {
+        Cond.requireNotNull(feature, "feature");
+        return indexOf(utf8(feature)) >= 0;
+    }
+
+    /**
+     * Get the maximum ID stored in the dictionary.
+     *
+     * @return The maximum ID or -1 if the dictionary is empty.
+     */
+    public long getMaxID() {
+        long max = -1;
+        for (int i = 0; i < numFeatures; i++)
+            max = Math.max(max, image.getLong(idsOffset + i * 8));
+        return max;
+    }
+
+    /**
+     * Call the specified action on each feature of the dictionary and its ID, in the features sort order.
+     *
+     * @param action The action to perform.
+     */
+    public void forEach(ObjLongConsumer<String> action) {
+        Cond.requireNotNull(action, "action");
+        byte[] term = new byte[64];
+        for (int bucket = 0; bucket < numBuckets; bucket++) {
+            int pos = bucketOffsets[bucket];
+            int end = Math.min((bucket + 1) * bucketSize, numFeatures);
+            for (int index = bucket * bucketSize; index < end; index++) {
+                int prefix = 0;
+                if (index != bucket * bucketSize) {
+                    prefix = readVInt(pos);
+                    pos += vIntSize(prefix);
+                }
+                int suffix = readVInt(pos);
+                pos += vIntSize(suffix);
+                if (prefix + suffix > term.length)
+                    term = Arrays.copyOf(term, Math.max(prefix + suffix, term.length * 2));
+                for (int i = 0; i < suffix; i++)
+                    term[prefix + i] = image.get(pos + i);
+                pos += suffix;
+                action.accept(new String(term, 0, prefix + suffix, StandardCharsets.UTF_8), image.getLong(idsOffset + index * 8));
+            }
+        }
+    }
+
+
+    private int indexOf(byte[] key) {
+        // Find the last bucket whose first feature is less than or equal to the key.
+        long keyPrefix = prefix(key);
+        int lo = 0;
+        int hi = numBuckets - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = Long.compareUnsigned(bucketPrefixes[mid], keyPrefix);
+            if (cmp == 0) {
+                int pos = bucketOffsets[mid];
+                int len = readVInt(pos);
+                pos += vIntSize(len);
+                cmp = compare(pos, len, key, 0);
+            }
+            if (cmp == 0)
+                return mid * bucketSize;
+            if (cmp < 0)
+                lo = mid + 1;
+            else
+                hi = mid - 1;
+        }
+        if (hi < 0)
+            return -1;
+
+        // Scan the bucket, keeping track of the length of the prefix shared by the current feature and the key.
+        int bucket = hi;
+        int pos = bucketOffsets[bucket];
+        int len = readVInt(pos);
+        pos += vIntSize(len);
+        int matched = commonPrefix(pos, len, key, 0);
+        pos += len;
+        int end = Math.min((bucket + 1) * bucketSize, numFeatures);
+        for (int index = bucket * bucketSize + 1; index < end; index++) {
+            int prefix = readVInt(pos);
+            pos += vIntSize(prefix);
+            int suffix = readVInt(pos);
+            pos += vIntSize(suffix);
+            if (prefix < matched)
+                // The feature differs from the previous one before the matched part, so it is greater than the key.
+                return -1;
+            if (prefix == matched) {
+                int m = commonPrefix(pos, suffix, key, matched);
+                matched += m;
+                if (m == suffix) {
+                    if (matched == key.length)
+                        return index;
+                } else if (matched == key.length || (image.get(pos + m) & 0xff) > (key[matched] & 0xff))
+                    return -1;
+            }
+            // With prefix > matched the feature shares with the key the same prefix of the previous one, so it is
+            // still less than the key.
+            pos += suffix;
+        }
+        return -1;
+    }
+
+    private int commonPrefix(int pos, int len, byte[] key, int keyFrom) {
+        int max = Math.min(len, key.length - keyFrom);
+        int i = 0;
+        while (i < max && image.get(pos + i) == key[keyFrom + i])
+            i++;
+        return i;
+    }
+
+    private int compare(int pos, int len, byte[] key, int keyFrom) {
+        int m = commonPrefix(pos, len, key, keyFrom);
+        if (m == len)
+            return m == key.length - keyFrom ? 0 : -1;
+        if (m == key.length - keyFrom)
+            return 1;
+        return Integer.compare(image.get(pos + m) & 0xff, key[keyFrom + m] & 0xff);
+    }
+
+    private int readVInt(int pos) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = image.get(pos++);
+            value |= (b & 0x7f) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    private static int vIntSize(int value) {
+        int size = 1;
+        while ((value >>>= 7) != 0)
+            size++;
+        return size;
+    }
+
+    private static void writeVInt(ByteArrayOutputStream os, int value) {
+        while ((value & ~0x7f) != 0) {
+            os.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        os.write(value);
+    }
+
+    /**
+     * Encode the specified string in UTF-8. The result is the same as {@link String#getBytes(java.nio.charset.Charset)},
+     * but this method is much faster on short strings since it does not need a charset encoder.
+     */
+    static byte[] utf8(String s) {
+        int len = s.length();
+        int size = 0;
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80)
+                size++;
+            else if (c < 0x800)
+                size += 2;
+            else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+                size += 4;
+                i++;
+            } else if (Character.isSurrogate(c))
+                // Malformed surrogates are replaced by '?'.
+                size++;
+            else
+                size += 3;
+        }
+        byte[] bytes = new byte[size];
+        if (size == len) {
+            for (int i = 0; i < len; i++) {
+                char c = s.charAt(i);
+                bytes[i] = Character.isSurrogate(c) ? (byte) '?' : (byte) c;
+            }
+            return bytes;
+        }
+        int pos = 0;
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80)
+                bytes[pos++] = (byte) c;
+            else if (c < 0x800) {
+                bytes[pos++] = (byte) (0xc0 | (c >> 6));
+                bytes[pos++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                bytes[pos++] = (byte) (0xf0 | (cp >> 18));
+                bytes[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                bytes[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                bytes[pos++] = (byte) (0x80 | (cp & 0x3f));
+            } else if (Character.isSurrogate(c))
+                bytes[pos++] = (byte) '?';
+            else {
+                bytes[pos++] = (byte) (0xe0 | (c >> 12));
+                bytes[pos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                bytes[pos++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Pack the first 8 bytes of the specified feature in a long, so that the unsigned order of the longs is
+     * consistent with the order of the features.
+     */
+    private static long prefix(byte[] bytes) {
+        long prefix = 0;
+        for (int i = 0; i < 8; i++)
+            prefix = (prefix << 8) | (i < bytes.length ? bytes[i] & 0xff : 0);
+        return prefix;
+    }
+
+    private static int commonPrefix(byte[] b1, byte[] b2) {
+        int max = Math.min(b1.length, b2.length);
+        int i = 0;
+        while (i < max && b1[i] == b2[i])
+            i++;
+        return i;
+    }
+
+    private static int compare(byte[] b1, byte[] b2) {
+        int m = commonPrefix(b1, b2);
+        if (m == b1.length || m == b2.length)
+            return Integer.compare(b1.length, b2.length);
+        return Integer.compare(b1[m] & 0xff, b2[m] & 0xff);
+    }
+
+    /**
+     * Get the binary image of the dictionary. The returned array can be shared with the dictionary, so it must
+     * not be modified.
+     *
+     * @return The binary image of the dictionary.
+     */
+    public byte[] toByteArray() {
+        if (image.hasArray() && image.arrayOffset() == 0 && image.array().length == image.capacity())
+            return image.array();
+        ByteBuffer data = image.duplicate();
+        data.clear();
+        byte[] bytes = new byte[data.capacity()];
+        data.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Create a dictionary from a binary image obtained with {@link #toByteArray()}. The array is not copied.
+     *
+     * @param bytes The binary image of the dictionary.
+     * @return The dictionary.
+     */
+    public static FeaturesDictionary fromByteArray(byte[] bytes) {
+        Cond.requireNotNull(bytes, "bytes");
+        return new FeaturesDictionary(ByteBuffer.wrap(bytes));
+    }
+
+    private void writeObject(ObjectOutputStream os) throws IOException {
+        os.defaultWriteObject();
+        write(os);
+    }
+
+    private void readObject(ObjectInputStream is) throws IOException, ClassNotFoundException {
+        is.defaultReadObject();
+        byte[] bytes = new byte[is.readInt()];
+        is.readFully(bytes);
+        init(ByteBuffer.wrap(bytes));
+    }
+
+
+    private static class Entry {
+        private final byte[] bytes;
+        private final long id;
+
+        Entry(byte[] bytes, long id) {
+            this.bytes = bytes;
+            this.id = id;
+        }
+    }
+}
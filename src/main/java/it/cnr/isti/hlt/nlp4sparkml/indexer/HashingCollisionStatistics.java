@@ -0,0 +1,115 @@
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+package it.cnr.isti.hlt.nlp4sparkml.indexer;
+
+import java.io.Serializable;
+
+/**
+ * The collisions statistics of a {@link HashingIdentifierModel} computed on a sample of data.
+ *
+ * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ */
+public class HashingCollisionStatistics implements Serializable {
+
+    private final int numFeatures;
+    private final long numDistinctFeatures;
+    private final long numUsedIDs;
+
+    public HashingCollisionStatistics(int numFeatures, long numDistinctFeatures, long numUsedIDs) {
+        this.numFeatures = numFeatures;
+        this.numDistinctFeatures = numDistinctFeatures;
+        this.numUsedIDs = numUsedIDs;
+    }
+
+    /**
+     * Get the size of the hashing space.
+     *
+     * @return The size of the hashing space.
+     */
+    public int getNumFeatures() {
+        return numFeatures;
+    }
+
+    /**
+     * Get the number of distinct features found in the sample.
+     *
+     * @return The number of distinct features found in the sample.
+     */
+    public long getNumDistinctFeatures() {
+        return numDistinctFeatures;
+    }
+
+    /**
+     * Get the number of distinct IDs assigned to the features of the sample.
+     *
+     * @return The number of distinct IDs used.
+     */
+    public long getNumUsedIDs() {
+        return numUsedIDs;
+    }
+
+    /**
+     * Get the number of features which share their ID with another feature found before, i.e. the number of
+     * distinct features minus the number of used IDs.
+     *
+     * @return The number of colliding features.
+     */
+    public long getNumCollisions() {
+        return numDistinctFeatures - numUsedIDs;
+    }
+
+    /**
+     * Get the fraction of distinct features lost because of collisions.
+     *
+     * @return The collisions rate, in the range [0, 1).
+     */
+    public double getCollisionRate() {
+        return numDistinctFeatures > 0 ? getNumCollisions() / (double) numDistinctFeatures : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "Hashing space " + numFeatures + ": distinct features " + numDistinctFeatures + ", used IDs " + numUsedIDs +
+                ", collisions " + getNumCollisions() + ", collision rate " + getCollisionRate();
+    }
+}
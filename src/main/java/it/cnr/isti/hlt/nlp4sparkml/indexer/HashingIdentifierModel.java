@@ -0,0 +1,409 @@
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+package it.cnr.isti.hlt.nlp4sparkml.indexer;
+
+import it.cnr.isti.hlt.nlp4sparkml.utils.ColumnFunctions;
+import it.cnr.isti.hlt.nlp4sparkml.utils.Cond;
+import it.cnr.isti.hlt.nlp4sparkml.utils.JavaTransformer;
+import it.cnr.isti.hlt.nlp4sparkml.utils.RowUtils;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.ml.param.Param;
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.DataFrame;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.api.java.UDF1;
+import org.apache.spark.sql.functions;
+import org.apache.spark.sql.types.DataTypes;
+import org.apache.spark.sql.types.StructField;
+import org.apache.spark.sql.types.StructType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A Spark ML transformer which assigns an identifier to each input feature by using the hashing trick: the ID of a
+ * feature is the seeded 32 bits MurmurHash3 of the feature string taken modulo a fixed number of features. Unlike
+ * {@link IdentifierGenerator}, no fitting step is required and each row is indexed independently, so the
+ * transformation runs without any shuffle. The output column has the same type as the one produced by
+ * {@link IdentifierGeneratorModel} (an array of longs), so it can be used as input of {@link OccurrencesCounter}.
+ * <br/><br/>
+ * Distinct features can share the same ID (a collision). The collisions rate of a given features space can be
+ * estimated on a sample of the data with {@link #computeCollisionStatistics(DataFrame, double, long)}. If the
+ * signed hashing is enabled, a second column containing the sign (+1 or -1) of each feature is added to the output,
+ * computed with an independent hash: summing the signed values of colliding features gives an unbiased estimate of
+ * the original values. To apply the signs, give the signs column to {@link OccurrencesCounter#setSignsCol(String)},
+ * which produces signed counts understood by the weighters.
+ *
+ * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ */
+public class HashingIdentifierModel extends JavaTransformer {
+
+    /**
+     * The default number of features.
+     */
+    public static final int DEFAULT_NUM_FEATURES = 1 << 18;
+
+    private static final int SIGN_SEED_MASK = 0x5bd1e995;
+
+    private final Param<List<String>> inputCols;
+    private final Param<String> outputCol;
+    private final Param<Integer> numFeatures;
+    private final Param<Integer> seed;
+    private final Param<Boolean> signedHashing;
+    private final Param<String> signsCol;
+
+    public HashingIdentifierModel() {
+        this.inputCols = new Param<List<String>>(this, "inputColumns", "The set of input columns to be indexed");
+        ArrayList<String> feats = new ArrayList<>();
+        feats.add("features");
+        setDefault(this.inputCols, feats);
+        this.outputCol = new Param<String>(this, "outputCol", "The output column containing features indexed");
+        setDefault(this.outputCol, "featuresIndexed");
+        this.numFeatures = new Param<Integer>(this, "numFeatures", "The number of features, i.e. the size of the hashing space");
+        setDefault(this.numFeatures, DEFAULT_NUM_FEATURES);
+        this.seed = new Param<Integer>(this, "seed", "The seed of the hash function");
+        setDefault(this.seed, 42);
+        this.signedHashing = new Param<Boolean>(this, "signedHashing", "True if the sign of each feature must be computed, false otherwise");
+        setDefault(this.signedHashing, false);
+        this.signsCol = new Param<String>(this, "signsCol", "The output column containing the features signs when the signed hashing is enabled");
+        setDefault(this.signsCol, "featuresSigns");
+    }
+
+    public Param<List<String>> inputCol() {
+        return inputCols;
+    }
+
+    public Param<String> outputCol() {
+        return outputCol;
+    }
+
+    public Param<Integer> numFeatures() {
+        return numFeatures;
+    }
+
+    public Param<Integer> seed() {
+        return seed;
+    }
+
+    public Param<Boolean> signedHashing() {
+        return signedHashing;
+    }
+
+    public Param<String> signsCol() {
+        return signsCol;
+    }
+
+    /**
+     * Get set of input column names.
+     *
+     * @return The set of input column names.
+     */
+    public List<String> getInputCols() {
+        return getOrDefault(inputCols);
+    }
+
+    public HashingIdentifierModel setInputCol(List<String> inputCols) {
+        Cond.requireNotNull(inputCols, "inputCols");
+        Cond.require(inputCols.size() > 0, "The set of input columns must not be empty!");
+        set(this.inputCols, inputCols);
+        return this;
+    }
+
+    /**
+     * Get the output column name.
+     *
+     * @return The output column name.
+     */
+    public String getOutputCol() {
+        return getOrDefault(outputCol);
+    }
+
+    public HashingIdentifierModel setOutputCol(String outputCol) {
+        Cond.requireNotNull(outputCol, "outputCol");
+        set(this.outputCol, outputCol);
+        return this;
+    }
+
+    /**
+     * Get the number of features, i.e. the IDs are in the range [0, numFeatures).
+     *
+     * @return The number of features.
+     */
+    public int getNumFeatures() {
+        return getOrDefault(numFeatures);
+    }
+
+    public HashingIdentifierModel setNumFeatures(int numFeatures) {
+        Cond.require(numFeatures > 0, "The number of features must be greater than 0");
+        set(this.numFeatures, numFeatures);
+        return this;
+    }
+
+    /**
+     * Get the seed of the hash function.
+     *
+     * @return The seed of the hash function.
+     */
+    public int getSeed() {
+        return getOrDefault(seed);
+    }
+
+    public HashingIdentifierModel setSeed(int seed) {
+        set(this.seed, seed);
+        return this;
+    }
+
+    /**
+     * Indicate if the signed hashing is enabled.
+     *
+     * @return True if the signs of the features are added to the output, false otherwise.
+     */
+    public boolean getSignedHashing() {
+        return getOrDefault(signedHashing);
+    }
+
+    public HashingIdentifierModel setSignedHashing(boolean signedHashing) {
+        set(this.signedHashing, signedHashing);
+        return this;
+    }
+
+    /**
+     * Get the name of the output column containing the features signs, used only if the signed hashing is enabled.
+     *
+     * @return The signs column name.
+     */
+    public String getSignsCol() {
+        return getOrDefault(signsCol);
+    }
+
+    public HashingIdentifierModel setSignsCol(String signsCol) {
+        Cond.requireNotNull(signsCol, "signsCol");
+        set(this.signsCol, signsCol);
+        return this;
+    }
+
+
+    /**
+     * Get the ID assigned to the specified feature.
+     *
+     * @param feature The feature.
+     * @return The feature ID, in the range [0, numFeatures).
+     */
+    public long getFeatureID(String feature) {
+        Cond.requireNotNull(feature, "feature");
+        return featureID(feature, getSeed(), getNumFeatures());
+    }
+
+    /**
+     * Get the sign assigned to the specified feature by the signed hashing.
+     *
+     * @param feature The feature.
+     * @return +1 or -1.
+     */
+    public int getFeatureSign(String feature) {
+        Cond.requireNotNull(feature, "feature");
+        return featureSign(feature, getSeed());
+    }
+
+
+    /**
+     * Index the input columns of the specified dataset. The IDs (and the signs, if the signed hashing is enabled)
+     * are computed by UDFs applied to the struct of the input columns, so the other columns of each row are
+     * left untouched.
+     *
+     * @param dataset The dataset to index.
+     * @return The indexed dataset.
+     */
+    @Override
+    public DataFrame transform(DataFrame dataset) {
+        Cond.requireNotNull(dataset, "dataset");
+        transformSchema(dataset.schema());
+        Column input = inputStruct(dataset);
+        int seed = getSeed();
+        int numFeatures = getNumFeatures();
+        UDF1<Row, long[]> computeIDs = inputs -> {
+            String[] features = collectFeatures(inputs);
+            long[] ids = new long[features.length];
+            for (int i = 0; i < ids.length; i++)
+                ids[i] = featureID(features[i], seed, numFeatures);
+            return ids;
+        };
+        DataFrame indexed = ColumnFunctions.withColumn(dataset, uid(), input, getOutputCol(), computeIDs,
+                DataTypes.createArrayType(DataTypes.LongType));
+        if (!getSignedHashing())
+            return indexed;
+        UDF1<Row, int[]> computeSigns = inputs -> {
+            String[] features = collectFeatures(inputs);
+            int[] signs = new int[features.length];
+            for (int i = 0; i < signs.length; i++)
+                signs[i] = featureSign(features[i], seed);
+            return signs;
+        };
+        return ColumnFunctions.withColumn(indexed, uid() + "_signs", input, getSignsCol(), computeSigns,
+                DataTypes.createArrayType(DataTypes.IntegerType));
+    }
+
+    @Override
+    public StructType transformSchema(StructType schema) {
+        Cond.requireNotNull(schema, "schema");
+        List<String> names = Arrays.asList(schema.fieldNames());
+        for (String inputCol : getInputCols())
+            Cond.require(names.contains(inputCol), "The input column " + inputCol + " does not exist in this schema!");
+        Cond.require(!names.contains(getOutputCol()), "The output column " + getOutputCol() + " already exists in this schema!");
+        List<StructField> fields = new ArrayList<>(Arrays.asList(schema.fields()));
+        fields.add(DataTypes.createStructField(getOutputCol(), DataTypes.createArrayType(DataTypes.LongType), false));
+        if (getSignedHashing()) {
+            Cond.require(!names.contains(getSignsCol()), "The signs column " + getSignsCol() + " already exists in this schema!");
+            Cond.require(!getSignsCol().equals(getOutputCol()), "The signs column and the output column must be different");
+            fields.add(DataTypes.createStructField(getSignsCol(), DataTypes.createArrayType(DataTypes.IntegerType), false));
+        }
+        return DataTypes.createStructType(fields);
+    }
+
+
+    /**
+     * Estimate the collisions of the current hashing space on a sample of the specified dataset. This method needs
+     * to find the distinct features of the sample, so it is much more expensive than {@link #transform(DataFrame)}.
+     *
+     * @param dataset    The dataset containing the input columns.
+     * @param fraction   The fraction of rows to sample, in the range (0, 1].
+     * @param sampleSeed The seed used to sample the rows.
+     * @return The collisions statistics of the sample.
+     */
+    public HashingCollisionStatistics computeCollisionStatistics(DataFrame dataset, double fraction, long sampleSeed) {
+        Cond.requireNotNull(dataset, "dataset");
+        Cond.require(fraction > 0 && fraction <= 1, "The fraction must be in the range (0, 1]");
+        int seed = getSeed();
+        int numFeatures = getNumFeatures();
+        DataFrame sample = fraction < 1 ? dataset.sample(false, fraction, sampleSeed) : dataset;
+        JavaRDD<String> features = sample.select(inputStruct(sample)).toJavaRDD()
+                .flatMap(row -> Arrays.asList(collectFeatures(row.getStruct(0)))).distinct().cache();
+        try {
+            long numDistinctFeatures = features.count();
+            long numUsedIDs = features.map(feature -> featureID(feature, seed, numFeatures)).distinct().count();
+            return new HashingCollisionStatistics(numFeatures, numDistinctFeatures, numUsedIDs);
+        } finally {
+            features.unpersist();
+        }
+    }
+
+
+    /**
+     * Get the struct of the input columns given to the indexing functions.
+     */
+    private Column inputStruct(DataFrame dataset) {
+        List<String> inputCols = getInputCols();
+        Column[] cols = new Column[inputCols.size()];
+        for (int i = 0; i < cols.length; i++)
+            cols[i] = dataset.col(inputCols.get(i));
+        return functions.struct(cols);
+    }
+
+    /**
+     * Get the features of all the input columns contained in the specified struct, in the order of the columns.
+     */
+    private static String[] collectFeatures(Row inputs) {
+        String[][] columns = new String[inputs.size()][];
+        int numFeatures = 0;
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = inputs.isNullAt(i) ? null : RowUtils.getStringArray(inputs, i);
+            if (columns[i] != null)
+                numFeatures += columns[i].length;
+        }
+        if (columns.length == 1 && columns[0] != null)
+            return columns[0];
+        String[] features = new String[numFeatures];
+        int idx = 0;
+        for (String[] column : columns) {
+            if (column == null)
+                continue;
+            System.arraycopy(column, 0, features, idx, column.length);
+            idx += column.length;
+        }
+        return features;
+    }
+
+    static long featureID(String feature, int seed, int numFeatures) {
+        return Math.floorMod(murmurHash3(feature, seed), numFeatures);
+    }
+
+    static int featureSign(String feature, int seed) {
+        return murmurHash3(feature, seed ^ SIGN_SEED_MASK) >= 0 ? 1 : -1;
+    }
+
+    /**
+     * Compute the MurmurHash3 (x86, 32 bits) of the UTF-16 code units of the specified string, packed two by two
+     * in 32 bits blocks.
+     */
+    static int murmurHash3(String s, int seed) {
+        final int c1 = 0xcc9e2d51;
+        final int c2 = 0x1b873593;
+        int len = s.length();
+        int h = seed;
+        int i = 0;
+        for (; i + 1 < len; i += 2) {
+            int k = s.charAt(i) | (s.charAt(i + 1) << 16);
+            k *= c1;
+            k = Integer.rotateLeft(k, 15);
+            k *= c2;
+            h ^= k;
+            h = Integer.rotateLeft(h, 13);
+            h = h * 5 + 0xe6546b64;
+        }
+        if (i < len) {
+            int k = s.charAt(i);
+            k *= c1;
+            k = Integer.rotateLeft(k, 15);
+            k *= c2;
+            h ^= k;
+        }
+        h ^= len * 2;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
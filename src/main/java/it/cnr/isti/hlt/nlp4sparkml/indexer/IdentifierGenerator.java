@@ -45,6 +45,7 @@ package it.cnr.isti.hlt.nlp4sparkml.indexer;
 import it.cnr.isti.hlt.nlp4sparkml.utils.Cond;
 import it.cnr.isti.hlt.nlp4sparkml.utils.JavaEstimator;
 import it.cnr.isti.hlt.nlp4sparkml.utils.UID;
+import org.apache.spark.api.java.JavaPairRDD;
 import org.apache.spark.api.java.JavaRDD;
 import org.apache.spark.ml.param.Param;
 import org.apache.spark.sql.Column;
@@ -55,13 +56,23 @@ import org.apache.spark.sql.types.DataTypes;
 import org.apache.spark.sql.types.StructField;
 import org.apache.spark.sql.types.StructType;
 import org.apache.spark.storage.StorageLevel;
+import scala.Tuple2;
 
+import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 
 /**
- * A Spark ML estimator which computes unique identifiers for a set of input features.
+ * A Spark ML estimator which computes unique identifiers for a set of input features. The document frequency
+ * (DF) of each feature, i.e. the number of rows containing it, is computed while finding the distinct features.
+ * The features outside of the configured DF bounds are dropped and, among the remaining ones, only the
+ * {@link #getMaxNumFeatures()} most frequent are kept. The IDs are dense and assigned in descending DF order
+ * (ties are broken by feature), so the most frequent features get the smallest IDs.
+ * <br/><br/>
+ * Besides the distributed features mapping, the fitted model contains the same mapping as a compact
+ * {@link FeaturesDictionary}, built by collecting the mapping on the driver.
  *
  * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
  */
@@ -69,6 +80,9 @@ public class IdentifierGenerator extends JavaEstimator<IdentifierGeneratorModel>
 
     private final String uid;
     private final Param<List<String>> featuresFields;
+    private final Param<Long> minDocumentFrequency;
+    private final Param<Double> maxDocumentFrequencyRatio;
+    private final Param<Integer> maxNumFeatures;
 
     static final String ID_FEATURE = "idFeature";
     static final String FEATURE = "feature";
@@ -79,6 +93,12 @@ public class IdentifierGenerator extends JavaEstimator<IdentifierGeneratorModel>
         ArrayList<String> feats = new ArrayList<>();
         feats.add("features");
         setDefault(featuresFields, feats);
+        minDocumentFrequency = new Param<>(this, "minDocumentFrequency", "The minimum number of rows in which a feature must appear to be kept");
+        setDefault(minDocumentFrequency, 1L);
+        maxDocumentFrequencyRatio = new Param<>(this, "maxDocumentFrequencyRatio", "The maximum fraction of rows in which a feature can appear to be kept");
+        setDefault(maxDocumentFrequencyRatio, 1.0);
+        maxNumFeatures = new Param<>(this, "maxNumFeatures", "The maximum number of features kept, choosing the most frequent ones");
+        setDefault(maxNumFeatures, Integer.MAX_VALUE);
     }
 
     public Param<List<String>> featuresFields() {
@@ -89,6 +109,64 @@ public class IdentifierGenerator extends JavaEstimator<IdentifierGeneratorModel>
         return getOrDefault(featuresFields);
     }
 
+    public Param<Long> minDocumentFrequency() {
+        return minDocumentFrequency;
+    }
+
+    public Param<Double> maxDocumentFrequencyRatio() {
+        return maxDocumentFrequencyRatio;
+    }
+
+    public Param<Integer> maxNumFeatures() {
+        return maxNumFeatures;
+    }
+
+    /**
+     * Get the minimum number of rows in which a feature must appear to be kept.
+     *
+     * @return The minimum document frequency.
+     */
+    public long getMinDocumentFrequency() {
+        return getOrDefault(minDocumentFrequency);
+    }
+
+    public IdentifierGenerator setMinDocumentFrequency(long minDocumentFrequency) {
+        Cond.require(minDocumentFrequency >= 1, "The minimum document frequency must be greater equals than 1");
+        set(this.minDocumentFrequency, minDocumentFrequency);
+        return this;
+    }
+
+    /**
+     * Get the maximum fraction of rows in which a feature can appear to be kept.
+     *
+     * @return The maximum document frequency ratio, in the range (0, 1].
+     */
+    public double getMaxDocumentFrequencyRatio() {
+        return getOrDefault(maxDocumentFrequencyRatio);
+    }
+
+    public IdentifierGenerator setMaxDocumentFrequencyRatio(double maxDocumentFrequencyRatio) {
+        Cond.require(maxDocumentFrequencyRatio > 0 && maxDocumentFrequencyRatio <= 1, "The maximum document frequency ratio must be in the range (0, 1]");
+        set(this.maxDocumentFrequencyRatio, maxDocumentFrequencyRatio);
+        return this;
+    }
+
+    /**
+     * Get the maximum number of features kept. When more features satisfy the DF bounds, only the most frequent
+     * ones are kept.
+     *
+     * @return The maximum number of features.
+     */
+    public int getMaxNumFeatures() {
+        return getOrDefault(maxNumFeatures);
+    }
+
+    public IdentifierGenerator setMaxNumFeatures(int maxNumFeatures) {
+        Cond.require(maxNumFeatures > 0, "The maximum number of features must be greater than 0");
+        set(this.maxNumFeatures, maxNumFeatures);
+        return this;
+    }
+
     /**
      * Set the names of input columns containing the features that
      *
@@ -112,21 +190,27 @@ public class IdentifierGenerator extends JavaEstimator<IdentifierGeneratorModel>
         for (int i = 0; i < fields.size(); i++) {
             cols[i] = dataset.col(fields.get(i));
         }
-        JavaRDD<Row> identifiers = dataset.select(cols).toJavaRDD().flatMap(row -> {
-            HashMap<String, String> mapItems = new HashMap<>();
-            ArrayList<String> ret = new ArrayList<>();
+        long minDF = getMinDocumentFrequency();
+        double maxDFRatio = getMaxDocumentFrequencyRatio();
+        long maxDF = maxDFRatio < 1 ? (long) Math.floor(maxDFRatio * dataset.count()) : Long.MAX_VALUE;
+        int maxFeatures = getMaxNumFeatures();
+
+        // Compute the document frequency of each distinct feature, keep the features inside the bounds
+        // and assign the IDs in descending DF order.
+        JavaPairRDD<String, Long> documentFrequencies = dataset.select(cols).toJavaRDD().flatMap(row -> {
+            HashSet<String> items = new HashSet<>();
             for (int i = 0; i < row.length(); i++) {
-                List<String> items = row.getList(i);
-                for (String item : items) {
-                    if (!mapItems.containsKey(item)) {
-                        mapItems.put(item, item);
-                        ret.add(item);
-                    }
-                }
+                if (!row.isNullAt(i))
+                    items.addAll(row.<String>getList(i));
             }
-            return ret;
-        }).distinct().zipWithIndex().map(v -> {
-            return RowFactory.create(v._1(), v._2());
+            return items;
+        }).mapToPair(item -> new Tuple2<>(item, 1L)).reduceByKey((c1, c2) -> c1 + c2)
+                .filter(v -> v._2() >= minDF && v._2() <= maxDF).persist(StorageLevel.MEMORY_AND_DISK());
+        JavaPairRDD<Tuple2<Long, String>, Long> sorted = documentFrequencies
+                .mapToPair(v -> new Tuple2<>(new Tuple2<>(v._2(), v._1()), 0L))
+                .sortByKey(new DocumentFrequencyComparator());
+        JavaRDD<Row> identifiers = sorted.keys().zipWithIndex().filter(v -> v._2() < maxFeatures).map(v -> {
+            return RowFactory.create(v._1()._2(), v._2());
         });
 
         StructType schema = DataTypes.createStructType(new StructField[]{
@@ -134,7 +218,11 @@ public class IdentifierGenerator extends JavaEstimator<IdentifierGeneratorModel>
                 DataTypes.createStructField(ID_FEATURE, DataTypes.LongType, false)});
         DataFrame dfIndexed = dataset.sqlContext().createDataFrame(identifiers, schema)
                 .persist(StorageLevel.MEMORY_AND_DISK());
-        return new IdentifierGeneratorModel(dfIndexed, dfIndexed.count());
+        FeaturesDictionary dictionary = IdentifierGeneratorModel.buildDictionary(dfIndexed);
+        documentFrequencies.unpersist();
+        // The pruning params are carried into the model, to be applied also when the model is extended.
+        return new IdentifierGeneratorModel(dfIndexed, dictionary.size(), dictionary)
+                .setMinDocumentFrequency(minDF).setMaxDocumentFrequencyRatio(maxDFRatio).setMaxNumFeatures(maxFeatures);
     }
 
     @Override
@@ -142,6 +230,18 @@ public class IdentifierGenerator extends JavaEstimator<IdentifierGeneratorModel>
         return schema;
     }
 
+
+    /**
+     * Sort the (DF, feature) pairs by descending DF and then by feature.
+     */
+    static class DocumentFrequencyComparator implements Comparator<Tuple2<Long, String>>, Serializable {
+        @Override
+        public int compare(Tuple2<Long, String> o1, Tuple2<Long, String> o2) {
+            int cmp = Long.compare(o2._1(), o1._1());
+            return cmp != 0 ? cmp : o1._2().compareTo(o2._2());
+        }
+    }
+
     @Override
     public String uid() {
         return uid;
@@ -42,12 +42,19 @@
 
 package it.cnr.isti.hlt.nlp4sparkml.indexer;
 
+import it.cnr.isti.hlt.nlp4sparkml.data.DataUtils;
 import it.cnr.isti.hlt.nlp4sparkml.utils.Cond;
+import it.cnr.isti.hlt.nlp4sparkml.utils.JavaMLReader;
+import it.cnr.isti.hlt.nlp4sparkml.utils.JavaMLWriter;
 import it.cnr.isti.hlt.nlp4sparkml.utils.JavaModel;
 import org.apache.spark.api.java.JavaRDD;
 import org.apache.spark.api.java.JavaSparkContext;
 import org.apache.spark.broadcast.Broadcast;
 import org.apache.spark.ml.param.Param;
+import org.apache.spark.ml.param.ParamMap;
+import org.apache.spark.ml.util.MLReader;
+import org.apache.spark.ml.util.MLWritable;
+import org.apache.spark.ml.util.MLWriter;
 import org.apache.spark.sql.Column;
 import org.apache.spark.sql.DataFrame;
 import org.apache.spark.sql.Row;
@@ -59,12 +66,19 @@ import org.apache.spark.sql.types.StructType;
 import org.apache.spark.storage.StorageLevel;
 import scala.Tuple2;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.*;
 
 /**
  * Created by Tiziano on 11/07/2015.
  */
-public class IdentifierGeneratorModel extends JavaModel<IdentifierGeneratorModel> {
+public class IdentifierGeneratorModel extends JavaModel<IdentifierGeneratorModel> implements MLWritable {
+
+    private static final String DICTIONARY_DIR = JavaMLWriter.DATA_DIR + "/dictionary";
+    private static final String STATS_FILE = JavaMLWriter.DATA_DIR + "/stats.bin";
+    private static final String COMPACT_DICTIONARY_FILE = JavaMLWriter.DATA_DIR + "/dictionary.bin";
 
     private final DataFrame featuresMapping;
     private final long numDistinctFeatures;
@@ -72,8 +86,31 @@ public class IdentifierGeneratorModel extends JavaModel<IdentifierGeneratorModel
     private final Param<String> idCol;
     private final Param<List<String>> inputCols;
     private final Param<String> outputCol;
+    private final Param<Boolean> broadcastDictionary;
+    private final Param<Long> minDocumentFrequency;
+    private final Param<Double> maxDocumentFrequencyRatio;
+    private final Param<Integer> maxNumFeatures;
+
+    private FeaturesDictionary dictionary;
 
     public IdentifierGeneratorModel(DataFrame featuresMapping, long numDistinctFeatures) {
+        this(null, featuresMapping, numDistinctFeatures, null);
+    }
+
+    /**
+     * Create a new model.
+     *
+     * @param featuresMapping     The features mapping, i.e. the ID assigned to each feature.
+     * @param numDistinctFeatures The number of distinct features.
+     * @param dictionary          The compact dictionary built from the features mapping or 'null' to build it on
+     *                            demand.
+     */
+    public IdentifierGeneratorModel(DataFrame featuresMapping, long numDistinctFeatures, FeaturesDictionary dictionary) {
+        this(null, featuresMapping, numDistinctFeatures, dictionary);
+    }
+
+    private IdentifierGeneratorModel(String uid, DataFrame featuresMapping, long numDistinctFeatures, FeaturesDictionary dictionary) {
+        super(uid);
         Cond.requireNotNull(featuresMapping, "featuresMapping");
         Cond.require(numDistinctFeatures > 0, "The number of distinct features must be greater than 0");
         this.idCol = new Param<String>(this, "idCol", "The column which unique identifies a single row");
@@ -82,8 +119,17 @@ public class IdentifierGeneratorModel extends JavaModel<IdentifierGeneratorModel
         setDefault(this.inputCols, new ArrayList<String>());
         this.outputCol = new Param<String>(this, "outputCol", "The output column containing features indexed");
         setDefault(this.outputCol, "featuresIndexed");
+        this.broadcastDictionary = new Param<Boolean>(this, "broadcastDictionary", "True if the features dictionary must be broadcast and the rows indexed map-side, false to join the rows with the features mapping");
+        setDefault(this.broadcastDictionary, false);
+        this.minDocumentFrequency = new Param<Long>(this, "minDocumentFrequency", "The minimum number of new rows in which a new feature must appear to be added by extend()");
+        setDefault(this.minDocumentFrequency, 1L);
+        this.maxDocumentFrequencyRatio = new Param<Double>(this, "maxDocumentFrequencyRatio", "The maximum fraction of new rows in which a new feature can appear to be added by extend()");
+        setDefault(this.maxDocumentFrequencyRatio, 1.0);
+        this.maxNumFeatures = new Param<Integer>(this, "maxNumFeatures", "The maximum number of features of the dictionary extended by extend()");
+        setDefault(this.maxNumFeatures, Integer.MAX_VALUE);
         this.featuresMapping = featuresMapping;
         this.numDistinctFeatures = numDistinctFeatures;
+        this.dictionary = dictionary;
     }
 
     public long getNumDistinctFeatures() {
@@ -102,11 +148,72 @@ public class IdentifierGeneratorModel extends JavaModel<IdentifierGeneratorModel
         return outputCol;
     }
 
+    public Param<Boolean> broadcastDictionary() {
+        return broadcastDictionary;
+    }
+
+    public Param<Long> minDocumentFrequency() {
+        return minDocumentFrequency;
+    }
+
+    public Param<Double> maxDocumentFrequencyRatio() {
+        return maxDocumentFrequencyRatio;
+    }
+
+    public Param<Integer> maxNumFeatures() {
+        return maxNumFeatures;
+    }
+
 
     public DataFrame getInternalFeaturesMappinng() {
         return featuresMapping;
     }
 
+    /**
+     * Collect on the driver the whole features mapping, i.e. the ID assigned to each feature. Useful
+     * to index features outside of a DataFrame. See {@link #getDictionary()} for a much more compact
+     * version of the same mapping.
+     *
+     * @return The ID assigned to each feature.
+     */
+    public HashMap<String, Long> collectDictionary() {
+        HashMap<String, Long> dictionary = new HashMap<>();
+        Row[] rows = featuresMapping.select(IdentifierGenerator.FEATURE, IdentifierGenerator.ID_FEATURE).collect();
+        for (Row row : rows)
+            dictionary.put(row.getString(0), row.getLong(1));
+        return dictionary;
+    }
+
+    /**
+     * Get the features mapping as a {@link FeaturesDictionary}, which can be broadcast or used to index features
+     * outside of Spark. If the model has not been created with a dictionary, the dictionary is built (only once)
+     * by collecting the features mapping on the driver.
+     *
+     * @return The compact features dictionary.
+     */
+    public synchronized FeaturesDictionary getDictionary() {
+        if (dictionary == null)
+            dictionary = buildDictionary(featuresMapping);
+        return dictionary;
+    }
+
+    /**
+     * Build the compact dictionary of the specified features mapping, by collecting it on the driver.
+     *
+     * @param featuresMapping The features mapping.
+     * @return The compact dictionary.
+     */
+    static FeaturesDictionary buildDictionary(DataFrame featuresMapping) {
+        Row[] rows = featuresMapping.select(IdentifierGenerator.FEATURE, IdentifierGenerator.ID_FEATURE).collect();
+        String[] features = new String[rows.length];
+        long[] ids = new long[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            features[i] = rows[i].getString(0);
+            ids[i] = rows[i].getLong(1);
+        }
+        return FeaturesDictionary.build(features, ids);
+    }
+
     /**
      * Get the id column name.
      *
@@ -152,10 +259,163 @@ public class IdentifierGeneratorModel extends JavaModel<IdentifierGeneratorModel
         return this;
     }
 
+    /**
+     * Indicate if the rows are indexed map-side with a broadcast dictionary.
+     *
+     * @return True if the dictionary is broadcast, false if the rows are joined with the features mapping.
+     */
+    public boolean getBroadcastDictionary() {
+        return getOrDefault(broadcastDictionary);
+    }
+
+    /**
+     * Set the indexing strategy used by {@link #transform(DataFrame)}. When enabled, the compact features
+     * dictionary (see {@link #getDictionary()}) is broadcast to the executors, then each
+     * row is indexed in a single mapPartitions pass: no shuffle is needed, the {@link #getIdCol()} column is not
+     * used and the IDs are in the same order as the input features, duplicates included. The features not
+     * available in the dictionary are ignored. The dictionary must fit in the memory of the driver and of each
+     * executor.
+     * <br/><br/>
+     * When disabled (the default), the rows are indexed by joining the exploded features with the features mapping.
+     *
+     * @param broadcastDictionary True to broadcast the dictionary, false otherwise.
+     * @return This model.
+     */
+    public IdentifierGeneratorModel setBroadcastDictionary(boolean broadcastDictionary) {
+        set(this.broadcastDictionary, broadcastDictionary);
+        return this;
+    }
+
+
+    /**
+     * Get the minimum number of new documents in which an unseen feature must appear to be added by
+     * {@link #extend(DataFrame)}. The models fitted by {@link IdentifierGenerator} get the value used for fitting.
+     *
+     * @return The minimum document frequency.
+     */
+    public long getMinDocumentFrequency() {
+        return getOrDefault(minDocumentFrequency);
+    }
+
+    public IdentifierGeneratorModel setMinDocumentFrequency(long minDocumentFrequency) {
+        Cond.require(minDocumentFrequency >= 1, "The minimum document frequency must be greater equals than 1");
+        set(this.minDocumentFrequency, minDocumentFrequency);
+        return this;
+    }
+
+    /**
+     * Get the maximum fraction of new documents in which an unseen feature can appear to be added by
+     * {@link #extend(DataFrame)}. The models fitted by {@link IdentifierGenerator} get the value used for fitting.
+     *
+     * @return The maximum document frequency ratio, in the range (0, 1].
+     */
+    public double getMaxDocumentFrequencyRatio() {
+        return getOrDefault(maxDocumentFrequencyRatio);
+    }
+
+    public IdentifierGeneratorModel setMaxDocumentFrequencyRatio(double maxDocumentFrequencyRatio) {
+        Cond.require(maxDocumentFrequencyRatio > 0 && maxDocumentFrequencyRatio <= 1, "The maximum document frequency ratio must be in the range (0, 1]");
+        set(this.maxDocumentFrequencyRatio, maxDocumentFrequencyRatio);
+        return this;
+    }
+
+    /**
+     * Get the maximum number of features of a dictionary extended by {@link #extend(DataFrame)}. The models
+     * fitted by {@link IdentifierGenerator} get the value used for fitting.
+     *
+     * @return The maximum number of features.
+     */
+    public int getMaxNumFeatures() {
+        return getOrDefault(maxNumFeatures);
+    }
+
+    public IdentifierGeneratorModel setMaxNumFeatures(int maxNumFeatures) {
+        Cond.require(maxNumFeatures > 0, "The maximum number of features must be greater than 0");
+        set(this.maxNumFeatures, maxNumFeatures);
+        return this;
+    }
+
+
+    /**
+     * Extend the vocabulary of this model with the features of the specified new documents, read from the
+     * {@link #getInputCols()} columns. Only the new documents are scanned: the features not yet available in the
+     * dictionary get fresh IDs following the current maximum ID (in descending document frequency order), while
+     * all the existing IDs are left unchanged, so the data indexed and the classifiers trained with this model
+     * remain valid. This model is not modified.
+     * <br/><br/>
+     * The unseen features are pruned like in {@link IdentifierGenerator}: the features whose document frequency
+     * among the new documents is outside of [{@link #getMinDocumentFrequency()},
+     * {@link #getMaxDocumentFrequencyRatio()} * number of new documents] are dropped and, among the remaining
+     * ones, only the most frequent are added so that the dictionary has at most {@link #getMaxNumFeatures()}
+     * features.
+     *
+     * @param newDocs The new documents.
+     * @return The extended model, having the same uid and params of this model.
+     */
+    public IdentifierGeneratorModel extend(DataFrame newDocs) {
+        Cond.requireNotNull(newDocs, "newDocs");
+        List<String> inputCols = getInputCols();
+        Cond.require(inputCols.size() > 0, "The set of input columns must not be empty!");
+        Column[] cols = new Column[inputCols.size()];
+        for (int i = 0; i < cols.length; i++)
+            cols[i] = newDocs.col(inputCols.get(i));
+        FeaturesDictionary oldDictionary = getDictionary();
+        long firstID = oldDictionary.getMaxID() + 1;
+        long minDF = getMinDocumentFrequency();
+        double maxDFRatio = getMaxDocumentFrequencyRatio();
+        long maxDF = maxDFRatio < 1 ? (long) Math.floor(maxDFRatio * newDocs.count()) : Long.MAX_VALUE;
+        long maxNewFeatures = Math.max(0, (long) getMaxNumFeatures() - oldDictionary.size());
+        JavaSparkContext sc = new JavaSparkContext(newDocs.sqlContext().sparkContext());
+        Broadcast<FeaturesDictionary> bcDictionary = sc.broadcast(oldDictionary);
+
+        // Find the unseen features and their document frequency, filtering the known features before the shuffle.
+        JavaRDD<Row> newIdentifiers = newDocs.select(cols).toJavaRDD().flatMap(row -> {
+            FeaturesDictionary dict = bcDictionary.value();
+            HashSet<String> items = new HashSet<>();
+            for (int i = 0; i < row.length(); i++) {
+                if (row.isNullAt(i))
+                    continue;
+                for (String item : row.<String>getList(i)) {
+                    if (!dict.contains(item))
+                        items.add(item);
+                }
+            }
+            return items;
+        }).mapToPair(item -> new Tuple2<>(item, 1L)).reduceByKey((c1, c2) -> c1 + c2)
+                .filter(v -> v._2() >= minDF && v._2() <= maxDF)
+                .mapToPair(v -> new Tuple2<>(new Tuple2<>(v._2(), v._1()), 0L))
+                .sortByKey(new IdentifierGenerator.DocumentFrequencyComparator())
+                .keys().zipWithIndex().filter(v -> v._2() < maxNewFeatures)
+                .map(v -> RowFactory.create(v._1()._2(), firstID + v._2()));
+        DataFrame newMapping = newDocs.sqlContext().createDataFrame(newIdentifiers, featuresMapping.schema()).persist(StorageLevel.MEMORY_AND_DISK());
+        Row[] rows = newMapping.collect();
+
+        String[] features = new String[oldDictionary.size() + rows.length];
+        long[] ids = new long[features.length];
+        int[] index = {0};
+        oldDictionary.forEach((feature, id) -> {
+            features[index[0]] = feature;
+            ids[index[0]] = id;
+            index[0]++;
+        });
+        for (Row row : rows) {
+            features[index[0]] = row.getString(0);
+            ids[index[0]] = row.getLong(1);
+            index[0]++;
+        }
+        DataFrame mapping = featuresMapping.unionAll(newMapping).persist(StorageLevel.MEMORY_AND_DISK());
+        IdentifierGeneratorModel extended = new IdentifierGeneratorModel(uid(), mapping, numDistinctFeatures + rows.length,
+                FeaturesDictionary.build(features, ids));
+        return copyValues(extended, ParamMap.empty());
+    }
+
 
     @Override
     public DataFrame transform(DataFrame dataset) {
         Cond.requireNotNull(dataset, "dataset");
+        if (getBroadcastDictionary())
+            return transformWithBroadcastDictionary(dataset);
+
         ArrayList<String> fieldsToAnalyze = new ArrayList<>(getInputCols());
         JavaSparkContext sc = new JavaSparkContext(dataset.sqlContext().sparkContext());
         Broadcast<ArrayList<String>> inputFields = sc.broadcast(fieldsToAnalyze);
@@ -215,6 +475,48 @@ public class IdentifierGeneratorModel extends JavaModel<IdentifierGeneratorModel
         return res;
     }
 
+    private DataFrame transformWithBroadcastDictionary(DataFrame dataset) {
+        StructType newSchema = transformSchema(dataset.schema());
+        ArrayList<String> inputCols = new ArrayList<>(getInputCols());
+        Cond.require(inputCols.size() > 0, "The set of input columns must not be empty!");
+        JavaSparkContext sc = new JavaSparkContext(dataset.sqlContext().sparkContext());
+        Broadcast<FeaturesDictionary> bcDictionary = sc.broadcast(getDictionary());
+
+        JavaRDD<Row> indexedRows = dataset.toJavaRDD().mapPartitions(rows -> () -> new Iterator<Row>() {
+            private final FeaturesDictionary dict = bcDictionary.value();
+            private long[] buffer = new long[256];
+
+            @Override
+            public boolean hasNext() {
+                return rows.hasNext();
+            }
+
+            @Override
+            public Row next() {
+                Row row = rows.next();
+                int numFeatures = 0;
+                for (String inputCol : inputCols) {
+                    int index = row.fieldIndex(inputCol);
+                    if (row.isNullAt(index))
+                        continue;
+                    List<String> features = row.getList(index);
+                    for (String feature : features) {
+                        long featureID = dict.getID(feature);
+                        if (featureID < 0)
+                            continue;
+                        if (numFeatures == buffer.length)
+                            buffer = Arrays.copyOf(buffer, numFeatures * 2);
+                        buffer[numFeatures++] = featureID;
+                    }
+                }
+                Object[] fields = DataUtils.copyValuesFromRow(row, 1);
+                fields[fields.length - 1] = Arrays.copyOf(buffer, numFeatures);
+                return RowFactory.create(fields);
+            }
+        });
+        return dataset.sqlContext().createDataFrame(indexedRows, newSchema);
+    }
+
     @Override
     public StructType transformSchema(StructType schema) {
         Cond.requireNotNull(schema, "schema");
@@ -229,4 +531,65 @@ public class IdentifierGeneratorModel extends JavaModel<IdentifierGeneratorModel
         return DataTypes.createStructType(fields);
     }
 
+    @Override
+    public MLWriter write() {
+        return new IdentifierGeneratorModelWriter(this);
+    }
+
+    @Override
+    public void save(String path) throws IOException {
+        write().save(path);
+    }
+
+    public static MLReader<IdentifierGeneratorModel> read() {
+        return new IdentifierGeneratorModelReader();
+    }
+
+    public static IdentifierGeneratorModel load(String path) {
+        return read().load(path);
+    }
+
+
+    /**
+     * Save the features mapping as a Parquet file, the model statistics and the compact dictionary in binary files.
+     */
+    private static class IdentifierGeneratorModelWriter extends JavaMLWriter<IdentifierGeneratorModel> {
+
+        IdentifierGeneratorModelWriter(IdentifierGeneratorModel instance) {
+            super(instance);
+        }
+
+        @Override
+        protected void saveData(String path) throws IOException {
+            getInstance().featuresMapping.write().parquet(path + "/" + DICTIONARY_DIR);
+            try (DataOutputStream os = create(path, STATS_FILE)) {
+                os.writeLong(getInstance().numDistinctFeatures);
+            }
+            try (DataOutputStream os = create(path, COMPACT_DICTIONARY_FILE)) {
+                getInstance().getDictionary().write(os);
+            }
+        }
+    }
+
+    private static class IdentifierGeneratorModelReader extends JavaMLReader<IdentifierGeneratorModel> {
+
+        IdentifierGeneratorModelReader() {
+            super(IdentifierGeneratorModel.class);
+        }
+
+        @Override
+        protected IdentifierGeneratorModel loadData(String path, String uid) throws IOException {
+            long numDistinctFeatures;
+            try (DataInputStream is = open(path, STATS_FILE)) {
+                numDistinctFeatures = is.readLong();
+            }
+            FeaturesDictionary dictionary;
+            try (DataInputStream is = open(path, COMPACT_DICTIONARY_FILE)) {
+                dictionary = FeaturesDictionary.read(is);
+            }
+            DataFrame featuresMapping = sqlContext().read().parquet(path + "/" + DICTIONARY_DIR);
+            return new IdentifierGeneratorModel(uid, featuresMapping, numDistinctFeatures, dictionary);
+        }
+    }
+
 }
@@ -44,16 +44,16 @@ package it.cnr.isti.hlt.nlp4sparkml.indexer;
 
 import it.cnr.isti.hlt.nlp4sparkml.utils.BaseHelper;
 import it.cnr.isti.hlt.nlp4sparkml.utils.Cond;
+import it.cnr.isti.hlt.nlp4sparkml.utils.RowUtils;
 import org.apache.spark.sql.Row;
 import org.apache.spark.sql.RowFactory;
 import org.apache.spark.sql.types.ArrayType;
 import org.apache.spark.sql.types.DataType;
 import org.apache.spark.sql.types.StructType;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 /**
  * This is an helper class useful to work with features occurrences.
@@ -70,24 +70,117 @@ public class OccurencesCounterHelper extends BaseHelper {
 
     /**
      * Create a field value containing two fields. The field 0 is an array of long containing the set of
-     * features IDs considered, the the field 1 is an array of long containing the corresponding number of
-     * occurrences for each feature.
+     * features IDs considered, sorted in ascending order, the the field 1 is an array of long containing the
+     * corresponding number of occurrences for each feature.
      *
      * @param counter The map containing the association between a feature ID and its number of occurrences.
      * @return A complex field filled with features and occurrences.
      */
-    public static Row createOccurrencesField(HashMap<Long, Long> counter) {
-        ArrayList<Long> featsOut = new ArrayList<>();
-        ArrayList<Long> occurrencesOut = new ArrayList<Long>();
-        Iterator<Long> keys = counter.keySet().iterator();
-        while (keys.hasNext()) {
-            long feature = keys.next();
-            long numOccurrences = counter.get(feature);
-            featsOut.add(feature);
-            occurrencesOut.add(numOccurrences);
+    public static Row createOccurrencesField(Map<Long, Long> counter) {
+        Cond.requireNotNull(counter, "counter");
+        long[] features = new long[counter.size()];
+        int i = 0;
+        for (long feature : counter.keySet())
+            features[i++] = feature;
+        Arrays.sort(features);
+        long[] occurrences = new long[features.length];
+        for (i = 0; i < features.length; i++)
+            occurrences[i] = counter.get(features[i]);
+        return RowFactory.create(features, occurrences);
+    }
+
+    /**
+     * Create a field value with the same layout of {@link #createOccurrencesField(Map)}, counting the occurrences
+     * of the first numFeatures features IDs of the specified array. See {@link #countOccurrences(long[], int)}.
+     *
+     * @param features    The features IDs, possibly repeated. The first numFeatures values are sorted in place.
+     * @param numFeatures The number of valid values in features.
+     * @return A complex field filled with features and occurrences.
+     */
+    public static Row createOccurrencesField(long[] features, int numFeatures) {
+        long[][] counted = countOccurrences(features, numFeatures);
+        return RowFactory.create(counted[0], counted[1]);
+    }
+
+    /**
+     * Count the occurrences of the first numFeatures features IDs of the specified array. The values are sorted in
+     * place and then run-length encoded, so no boxing or hashing is needed: the caller can reuse the same array
+     * as a buffer for many rows.
+     *
+     * @param features    The features IDs, possibly repeated. The first numFeatures values are sorted in place.
+     * @param numFeatures The number of valid values in features.
+     * @return Two arrays of the same length: the distinct features IDs in ascending order and the number of
+     * occurrences of each of them.
+     */
+    public static long[][] countOccurrences(long[] features, int numFeatures) {
+        Cond.requireNotNull(features, "features");
+        Cond.require(numFeatures >= 0 && numFeatures <= features.length, "The number of features is not valid");
+        Arrays.sort(features, 0, numFeatures);
+        int numDistinct = 0;
+        for (int i = 0; i < numFeatures; i++) {
+            if (i == 0 || features[i] != features[i - 1])
+                numDistinct++;
+        }
+        long[] distinct = new long[numDistinct];
+        long[] occurrences = new long[numDistinct];
+        int j = -1;
+        for (int i = 0; i < numFeatures; i++) {
+            if (i == 0 || features[i] != features[i - 1])
+                distinct[++j] = features[i];
+            occurrences[j]++;
+        }
+        return new long[][]{distinct, occurrences};
+    }
+
+    /**
+     * Count the signed occurrences of the specified features IDs: each occurrence adds its sign (+1 or -1) to the
+     * count of its feature. The positive and the negative occurrences are counted separately with
+     * {@link #countOccurrences(long[], int)} and then merged, and the features whose signed count is 0 are
+     * omitted.
+     *
+     * @param features The features IDs, possibly repeated.
+     * @param signs    The sign of each occurrence.
+     * @return Two arrays of the same length: the features IDs in ascending order and the signed number of
+     * occurrences of each of them.
+     */
+    public static long[][] countSignedOccurrences(long[] features, int[] signs) {
+        Cond.requireNotNull(features, "features");
+        Cond.requireNotNull(signs, "signs");
+        Cond.require(features.length == signs.length, "The number of features and signs are different");
+        long[] positives = new long[features.length];
+        long[] negatives = new long[features.length];
+        int numPositives = 0, numNegatives = 0;
+        for (int i = 0; i < features.length; i++) {
+            if (signs[i] >= 0)
+                positives[numPositives++] = features[i];
+            else
+                negatives[numNegatives++] = features[i];
+        }
+        long[][] pos = countOccurrences(positives, numPositives);
+        long[][] neg = countOccurrences(negatives, numNegatives);
+
+        long[] distinct = new long[pos[0].length + neg[0].length];
+        long[] occurrences = new long[distinct.length];
+        int i = 0, j = 0, k = 0;
+        while (i < pos[0].length || j < neg[0].length) {
+            long count;
+            long featureID;
+            if (j == neg[0].length || (i < pos[0].length && pos[0][i] < neg[0][j])) {
+                featureID = pos[0][i];
+                count = pos[1][i++];
+            } else if (i == pos[0].length || neg[0][j] < pos[0][i]) {
+                featureID = neg[0][j];
+                count = -neg[1][j++];
+            } else {
+                featureID = pos[0][i];
+                count = pos[1][i++] - neg[1][j++];
+            }
+            if (count != 0) {
+                distinct[k] = featureID;
+                occurrences[k++] = count;
+            }
         }
-        Row r = RowFactory.create(featsOut.toArray(new Long[0]), occurrencesOut.toArray(new Long[0]));
-        return r;
+        return new long[][]{Arrays.copyOf(distinct, k), Arrays.copyOf(occurrences, k)};
     }
 
 
@@ -119,7 +212,8 @@ public class OccurencesCounterHelper extends BaseHelper {
     }
 
     /**
-     * Get the set of features IDs stored in the specified column of the given row.
+     * Get the set of features IDs stored in the specified column of the given row. Prefer
+     * {@link #getFeaturesArray()}, which does not box the values.
      *
      * @return The set of features IDs.
      */
@@ -139,4 +233,25 @@ public class OccurencesCounterHelper extends BaseHelper {
         Row occurrencesStruct = getRow().getStruct(getRow().fieldIndex(getFieldName()));
         return occurrencesStruct.getList(1);
     }
+
+    /**
+     * Get the set of features IDs stored in the specified column of the given row as a native array.
+     *
+     * @return The set of features IDs.
+     */
+    public long[] getFeaturesArray() {
+        Row occurrencesStruct = getRow().getStruct(getRow().fieldIndex(getFieldName()));
+        return RowUtils.getLongArray(occurrencesStruct, 0);
+    }
+
+    /**
+     * Get the set of occurrences for the features stored in the specified column of the given row as a native
+     * array. The set of occurrences corresponds to the set of features available with {@link #getFeaturesArray()}.
+     *
+     * @return The set of features occurrences.
+     */
+    public long[] getOccurrencesArray() {
+        Row occurrencesStruct = getRow().getStruct(getRow().fieldIndex(getFieldName()));
+        return RowUtils.getLongArray(occurrencesStruct, 1);
+    }
 }
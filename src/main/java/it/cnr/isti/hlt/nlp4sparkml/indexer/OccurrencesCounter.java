@@ -42,22 +42,26 @@
 
 package it.cnr.isti.hlt.nlp4sparkml.indexer;
 
-import it.cnr.isti.hlt.nlp4sparkml.data.DataUtils;
 import it.cnr.isti.hlt.nlp4sparkml.utils.Cond;
+import it.cnr.isti.hlt.nlp4sparkml.utils.RowUtils;
 import it.cnr.isti.hlt.nlp4sparkml.utils.UnaryTransformer;
-import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.ml.param.Param;
+import org.apache.spark.sql.Column;
 import org.apache.spark.sql.DataFrame;
 import org.apache.spark.sql.Row;
 import org.apache.spark.sql.RowFactory;
+import org.apache.spark.sql.api.java.UDF1;
+import org.apache.spark.sql.functions;
 import org.apache.spark.sql.types.*;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.List;
-
 /**
- * A Spark ML transformer which counts the number of occurrences of an input features set.
+ * A Spark ML transformer which counts the number of occurrences of an input features set. The output features
+ * IDs are sorted in ascending order.
+ * <br/><br/>
+ * If the optional {@link #getSignsCol()} column is set (e.g. the signs column produced by the signed hashing of
+ * {@link HashingIdentifierModel}), each occurrence is counted with its sign (+1 or -1), so the occurrences of
+ * colliding features partially cancel out. The features whose signed count is 0 are omitted from the output. The
+ * weighters use the absolute value of a signed count to compute the weight and then apply its sign.
  *
  * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
  */
@@ -66,6 +70,38 @@ public class OccurrencesCounter extends UnaryTransformer {
     public static final String FEATURES = "features";
     public static final String OCCURRENCES = "occurrences";
 
+    private final Param<String> signsCol;
+
+    public OccurrencesCounter() {
+        signsCol = new Param<String>(this, "signsCol", "The column containing the sign of each input feature or empty if the occurrences are not signed");
+        setDefault(signsCol, "");
+    }
+
+    public Param<String> signsCol() {
+        return signsCol;
+    }
+
+    /**
+     * Get the name of the column containing the sign of each input feature.
+     *
+     * @return The signs column name or an empty string if the occurrences are not signed.
+     */
+    public String getSignsCol() {
+        return getOrDefault(signsCol);
+    }
+
+    public OccurrencesCounter setSignsCol(String signsCol) {
+        Cond.requireNotNull(signsCol, "signsCol");
+        set(this.signsCol, signsCol);
+        return this;
+    }
+
+    @Override
+    protected Column getInputColumn(DataFrame dataset) {
+        if (getSignsCol().isEmpty())
+            return super.getInputColumn(dataset);
+        return functions.struct(dataset.col(getInputCol()), dataset.col(getSignsCol()));
+    }
 
     @Override
     protected DataType getOutputDataType() {
@@ -86,24 +122,19 @@ public class OccurrencesCounter extends UnaryTransformer {
     }
 
     @Override
-    public DataFrame transform(DataFrame dataset) {
-        String inputCol = getInputCol();
-        StructType newSchema = transformSchema(dataset.schema());
-        JavaRDD<Row> computed = dataset.toJavaRDD().map(row -> {
-            Object[] fields = DataUtils.copyValuesFromRow(row, 1);
-            List<Long> features = row.getList(row.fieldIndex(inputCol));
-            HashMap<Long, Long> counter = new HashMap<Long, Long>();
-            for (long feature : features) {
-                if (counter.containsKey(feature))
-                    counter.put(feature, counter.get(feature) + 1);
-                else
-                    counter.put(feature, 1l);
-            }
-            Row r = OccurencesCounterHelper.createOccurrencesField(counter);
-            fields[fields.length - 1] = r;
-            return RowFactory.create(fields);
-        });
-
-        return dataset.sqlContext().createDataFrame(computed, newSchema);
+    protected UDF1<Object, Row> createColumnFunction(DataFrame dataset) {
+        if (!getSignsCol().isEmpty()) {
+            return value -> {
+                Row input = (Row) value;
+                long[][] counted = OccurencesCounterHelper.countSignedOccurrences(RowUtils.getLongArray(input, 0),
+                        RowUtils.getIntArray(input, 1));
+                return RowFactory.create(counted[0], counted[1]);
+            };
+        }
+        return value -> {
+            // A copy of the column value, so it can be sorted in place.
+            long[] features = RowUtils.toLongArray(value);
+            return OccurencesCounterHelper.createOccurrencesField(features, features.length);
+        };
     }
 }
@@ -0,0 +1,116 @@
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+package it.cnr.isti.hlt.nlp4sparkml.streaming;
+
+import java.io.Serializable;
+
+/**
+ * The performance statistics of a single micro-batch scored by a {@link StreamingTextClassifier}.
+ *
+ * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ */
+public class BatchStatistics implements Serializable {
+
+    private final long batchTime;
+    private final long numDocuments;
+    private final long processingDelay;
+    private final long totalDelay;
+
+    public BatchStatistics(long batchTime, long numDocuments, long processingDelay, long totalDelay) {
+        this.batchTime = batchTime;
+        this.numDocuments = numDocuments;
+        this.processingDelay = processingDelay;
+        this.totalDelay = totalDelay;
+    }
+
+    /**
+     * Get the time of the batch, in milliseconds since epoch.
+     *
+     * @return The time of the batch.
+     */
+    public long getBatchTime() {
+        return batchTime;
+    }
+
+    /**
+     * Get the number of documents classified in the batch.
+     *
+     * @return The number of documents classified in the batch.
+     */
+    public long getNumDocuments() {
+        return numDocuments;
+    }
+
+    /**
+     * Get the time spent to process the batch, in milliseconds.
+     *
+     * @return The processing time of the batch.
+     */
+    public long getProcessingDelay() {
+        return processingDelay;
+    }
+
+    /**
+     * Get the latency of the batch, i.e. the scheduling delay plus the processing time, in milliseconds.
+     *
+     * @return The latency of the batch.
+     */
+    public long getTotalDelay() {
+        return totalDelay;
+    }
+
+    /**
+     * Get the number of documents classified per second while processing the batch.
+     *
+     * @return The throughput of the batch, in documents per second.
+     */
+    public double getThroughput() {
+        return processingDelay > 0 ? numDocuments * 1000.0 / processingDelay : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "Batch " + batchTime + ": documents " + numDocuments + ", processing time " + processingDelay +
+                " ms, latency " + totalDelay + " ms, throughput " + getThroughput() + " docs/s";
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+package it.cnr.isti.hlt.nlp4sparkml.streaming;
+
+import it.cnr.isti.hlt.nlp4sparkml.data.PointClassificationResults;
+import it.cnr.isti.hlt.nlp4sparkml.datasource.TextualDocument;
+import it.cnr.isti.hlt.nlp4sparkml.utils.Cond;
+import it.cnr.isti.hlt.nlp4sparkml.utils.Logging;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.broadcast.Broadcast;
+import org.apache.spark.streaming.StreamingContext;
+import org.apache.spark.streaming.api.java.JavaDStream;
+import org.apache.spark.streaming.api.java.JavaPairDStream;
+import org.apache.spark.streaming.scheduler.*;
+import scala.Tuple2;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A classifier of streams of textual documents. The fitted {@link TextClassificationPipeline} is
+ * broadcast only once, when the classification stream is defined, and stays resident on the executors
+ * for all the micro-batches. Each micro-batch is scored partition by partition with a single
+ * mapPartitions operation. The results are cached, so that they are computed only once for the counting of the
+ * batch documents and for the output operations defined on the returned stream.
+ * <br/><br/>
+ * The classifier registers a single streaming listener, the first time a stream is classified, which keeps the
+ * {@link BatchStatistics} (latency and throughput) of the last completed batches. All the streams classified by
+ * the same classifier must belong to the same streaming context, and the number of documents of a batch is the
+ * total over these streams. Since broadcast variables can not be
+ * restored from a checkpoint, the classifier does not support driver recovery from checkpoints.
+ *
+ * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ */
+public class StreamingTextClassifier {
+
+    /**
+     * The default number of batch statistics kept in memory.
+     */
+    public static final int DEFAULT_MAX_STATISTICS = 1000;
+
+    private final TextClassificationPipeline pipeline;
+    private final int maxStatistics;
+    private final ArrayDeque<BatchStatistics> statistics;
+
+    /**
+     * The number of documents of each batch, by batch time, until the batch is completed.
+     */
+    private final ConcurrentHashMap<Long, Long> batchDocuments;
+
+    /**
+     * The streaming context where the statistics listener has been registered, or 'null' if no stream has been
+     * classified yet.
+     */
+    private StreamingContext listenedContext;
+
+    public StreamingTextClassifier(TextClassificationPipeline pipeline) {
+        this(pipeline, DEFAULT_MAX_STATISTICS);
+    }
+
+    /**
+     * Create a new streaming classifier.
+     *
+     * @param pipeline      The fitted pipeline used to classify the documents.
+     * @param maxStatistics The maximum number of batch statistics kept in memory.
+     */
+    public StreamingTextClassifier(TextClassificationPipeline pipeline, int maxStatistics) {
+        Cond.requireNotNull(pipeline, "pipeline");
+        Cond.require(maxStatistics > 0, "The maximum number of statistics must be greater than 0");
+        this.pipeline = pipeline;
+        this.maxStatistics = maxStatistics;
+        this.statistics = new ArrayDeque<>();
+        this.batchDocuments = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Define the classification of the specified stream of documents. This method must be called before
+     * starting the streaming context, and can be called many times with streams of the same streaming context.
+     *
+     * @param documents The stream of documents to classify.
+     * @return The stream of the classification results, indexed by document ID.
+     */
+    public JavaPairDStream<Long, PointClassificationResults> classify(JavaDStream<TextualDocument> documents) {
+        Cond.requireNotNull(documents, "documents");
+        JavaSparkContext sc = new JavaSparkContext(documents.context().sparkContext());
+        registerListener(documents.context());
+        Broadcast<TextClassificationPipeline> bcPipeline = sc.broadcast(pipeline);
+        ConcurrentHashMap<Long, Long> batchDocuments = this.batchDocuments;
+
+        JavaPairDStream<Long, PointClassificationResults> results = documents.mapPartitionsToPair(docs -> {
+            TextClassificationPipeline p = bcPipeline.value();
+            ArrayList<Tuple2<Long, PointClassificationResults>> res = new ArrayList<>();
+            while (docs.hasNext()) {
+                TextualDocument doc = docs.next();
+                res.add(new Tuple2<>(doc.getDocID(), p.classify(doc)));
+            }
+            return res;
+        }).cache();
+        // The batch size is counted by an output operation on the cached results, which are then reused by the
+        // output operations of the caller.
+        results.foreachRDD((rdd, time) -> {
+            batchDocuments.merge(time.milliseconds(), rdd.count(), Long::sum);
+        });
+        return results;
+    }
+
+    private synchronized void registerListener(StreamingContext ssc) {
+        if (listenedContext == null) {
+            ssc.addStreamingListener(new StatisticsListener());
+            listenedContext = ssc;
+        } else
+            Cond.require(listenedContext == ssc, "The classified streams must belong to the same streaming context");
+    }
+
+    /**
+     * Get the statistics of the last completed batches, from the oldest to the newest.
+     *
+     * @return The statistics of the last completed batches.
+     */
+    public List<BatchStatistics> getStatistics() {
+        synchronized (statistics) {
+            return new ArrayList<>(statistics);
+        }
+    }
+
+    private void addStatistics(BatchStatistics stats) {
+        synchronized (statistics) {
+            if (statistics.size() == maxStatistics)
+                statistics.removeFirst();
+            statistics.addLast(stats);
+        }
+        Logging.l().info(stats.toString());
+    }
+
+
+    /**
+     * A streaming listener computing the statistics of each completed batch. The number of documents of a
+     * batch is the one counted on the batch results.
+     */
+    private class StatisticsListener implements StreamingListener {
+
+        @Override
+        public void onBatchCompleted(StreamingListenerBatchCompleted batchCompleted) {
+            BatchInfo info = batchCompleted.batchInfo();
+            Long numDocuments = batchDocuments.remove(info.batchTime().milliseconds());
+            long processingDelay = info.processingDelay().isDefined() ? (Long) info.processingDelay().get() : 0;
+            long totalDelay = info.totalDelay().isDefined() ? (Long) info.totalDelay().get() : 0;
+            addStatistics(new BatchStatistics(info.batchTime().milliseconds(), numDocuments != null ? numDocuments : 0,
+                    processingDelay, totalDelay));
+        }
+
+        @Override
+        public void onReceiverStarted(StreamingListenerReceiverStarted receiverStarted) {
+        }
+
+        @Override
+        public void onReceiverError(StreamingListenerReceiverError receiverError) {
+        }
+
+        @Override
+        public void onReceiverStopped(StreamingListenerReceiverStopped receiverStopped) {
+        }
+
+        @Override
+        public void onBatchSubmitted(StreamingListenerBatchSubmitted batchSubmitted) {
+        }
+
+        @Override
+        public void onBatchStarted(StreamingListenerBatchStarted batchStarted) {
+        }
+
+        @Override
+        public void onOutputOperationStarted(StreamingListenerOutputOperationStarted outputOperationStarted) {
+        }
+
+        @Override
+        public void onOutputOperationCompleted(StreamingListenerOutputOperationCompleted outputOperationCompleted) {
+        }
+    }
+}
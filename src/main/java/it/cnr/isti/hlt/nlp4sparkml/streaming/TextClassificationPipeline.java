@@ -0,0 +1,145 @@
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+package it.cnr.isti.hlt.nlp4sparkml.streaming;
+
+import it.cnr.isti.hlt.nlp4sparkml.classifier.boosting.BoostClassifier;
+import it.cnr.isti.hlt.nlp4sparkml.classifier.boosting.BoostClassifierModel;
+import it.cnr.isti.hlt.nlp4sparkml.classifier.boosting.QuantizedBoostClassifier;
+import it.cnr.isti.hlt.nlp4sparkml.data.MultilabelPoint;
+import it.cnr.isti.hlt.nlp4sparkml.data.PointClassificationResults;
+import it.cnr.isti.hlt.nlp4sparkml.datasource.TextualDocument;
+import it.cnr.isti.hlt.nlp4sparkml.featurizer.DocumentFeaturizer;
+import it.cnr.isti.hlt.nlp4sparkml.indexer.IdentifierGeneratorModel;
+import it.cnr.isti.hlt.nlp4sparkml.tokenizer.BaseUnaryTokenizer;
+import it.cnr.isti.hlt.nlp4sparkml.utils.Cond;
+import it.cnr.isti.hlt.nlp4sparkml.weighter.AbstractStandardWeighter;
+
+import java.io.Serializable;
+
+/**
+ * The fitted state of a text classification pipeline (tokenizer, features dictionary, weighter and
+ * boosting classifier) packed in a single serializable object. The pipeline classifies one
+ * {@link TextualDocument} at a time without using DataFrames, so it can be broadcast once and used
+ * inside any Spark operation, e.g. to score the micro-batches of a stream.
+ * <br/><br/>
+ * The tokens not available in the features dictionary are ignored.
+ *
+ * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ */
+public class TextClassificationPipeline implements Serializable {
+
+    private static final int[] NO_LABELS = new int[0];
+
+    private final DocumentFeaturizer featurizer;
+    private final BoostClassifier classifier;
+    private final QuantizedBoostClassifier quantizedClassifier;
+
+    private TextClassificationPipeline(DocumentFeaturizer featurizer, BoostClassifier classifier, QuantizedBoostClassifier quantizedClassifier) {
+        this.featurizer = featurizer;
+        this.classifier = classifier;
+        this.quantizedClassifier = quantizedClassifier;
+    }
+
+    /**
+     * Build a pipeline from the specified fitted components. The pipeline uses the compact features
+     * dictionary of the indexer, and the number of features of the generated points is given by its IDs (see
+     * {@link DocumentFeaturizer#create(BaseUnaryTokenizer, IdentifierGeneratorModel, AbstractStandardWeighter)}).
+     * If the quantization is enabled on the classifier model, the pipeline uses the quantized
+     * classifier.
+     *
+     * @param tokenizer The tokenizer.
+     * @param indexer   The fitted features indexer.
+     * @param weighter  The fitted weighter.
+     * @param model     The fitted classifier.
+     * @return The pipeline.
+     */
+    public static TextClassificationPipeline create(BaseUnaryTokenizer tokenizer, IdentifierGeneratorModel indexer,
+                                                    AbstractStandardWeighter<?> weighter, BoostClassifierModel model) {
+        Cond.requireNotNull(tokenizer, "tokenizer");
+        Cond.requireNotNull(indexer, "indexer");
+        Cond.requireNotNull(weighter, "weighter");
+        Cond.requireNotNull(model, "model");
+        DocumentFeaturizer featurizer = DocumentFeaturizer.create(tokenizer, indexer, weighter);
+        int bits = model.getQuantizationBits();
+        if (bits == 0)
+            return new TextClassificationPipeline(featurizer, model.getClassifier(), null);
+        else
+            return new TextClassificationPipeline(featurizer, null, QuantizedBoostClassifier.quantize(model.getClassifier(), bits));
+    }
+
+    /**
+     * Get the number of features in the dictionary.
+     *
+     * @return The number of features in the dictionary.
+     */
+    public int getDictionarySize() {
+        return featurizer.getDictionary().size();
+    }
+
+    /**
+     * Transform the specified document into a weighted point. The point ID is the document ID, which must be in
+     * the int range.
+     *
+     * @param doc The document.
+     * @return The corresponding weighted point, without labels.
+     */
+    public MultilabelPoint featurize(TextualDocument doc) {
+        Cond.requireNotNull(doc, "doc");
+        long docID = doc.getDocID();
+        Cond.require(docID >= Integer.MIN_VALUE && docID <= Integer.MAX_VALUE, "The document ID " + docID + " is out of the int range");
+        return featurizer.featurize((int) docID, doc.getContent(), NO_LABELS);
+    }
+
+    /**
+     * Classify the specified document.
+     *
+     * @param doc The document to classify.
+     * @return The classification results.
+     */
+    public PointClassificationResults classify(TextualDocument doc) {
+        MultilabelPoint pt = featurize(doc);
+        if (quantizedClassifier != null)
+            return quantizedClassifier.classify(pt);
+        return classifier.classify(pt);
+    }
+}
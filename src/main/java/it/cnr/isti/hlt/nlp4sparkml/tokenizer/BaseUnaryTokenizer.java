@@ -44,13 +44,9 @@ package it.cnr.isti.hlt.nlp4sparkml.tokenizer;
 
 import it.cnr.isti.hlt.nlp4sparkml.utils.Cond;
 import it.cnr.isti.hlt.nlp4sparkml.utils.UnaryTransformer;
-import org.apache.spark.api.java.JavaRDD;
-import org.apache.spark.ml.Transformer;
 import org.apache.spark.ml.param.Param;
-import org.apache.spark.ml.param.ParamMap;
 import org.apache.spark.sql.DataFrame;
-import org.apache.spark.sql.Row;
-import org.apache.spark.sql.RowFactory;
+import org.apache.spark.sql.api.java.UDF1;
 import org.apache.spark.sql.types.*;
 
 import java.util.List;
@@ -109,26 +105,9 @@ public abstract class BaseUnaryTokenizer extends UnaryTransformer {
 
 
     @Override
-    public DataFrame transform(DataFrame dataFrame) {
+    protected UDF1<String, String[]> createColumnFunction(DataFrame dataset) {
         String tokenPrefix = getTokenPrefix();
-        String inputCol = getInputCol();
-        String outputCol = getOutputCol();
-        Cond.requireNotNull(dataFrame, "dataFrame");
-        StructType updatedSchema = transformSchema(dataFrame.schema());
-        JavaRDD<Row> rows = dataFrame.javaRDD();
-        JavaRDD<Row> updatedRows = rows.map(row -> {
-            int inIndex = row.fieldIndex(inputCol);
-            String text = row.getString(inIndex);
-            List<String> tokens = extractTokens(tokenPrefix, text);
-            Object[] values = new Object[row.size() + 1];
-            for (int i = 0; i < row.length(); i++) {
-                values[i] = row.get(i);
-            }
-            values[values.length - 1] = tokens.toArray(new String[0]);
-
-            return RowFactory.create(values);
-        });
-        return dataFrame.sqlContext().createDataFrame(updatedRows, updatedSchema);
+        return text -> extractTokens(tokenPrefix, text).toArray(new String[0]);
     }
 
 
@@ -139,6 +118,19 @@ public abstract class BaseUnaryTokenizer extends UnaryTransformer {
     }
 
 
+    /**
+     * Extract the tokens from the specified text, adding the configured token prefix to each token. This is the
+     * same operation done on each row by {@link #transform(DataFrame)}.
+     *
+     * @param text The text to be analyzed.
+     * @return The set of tokens extracted. The set can be empty.
+     */
+    public List<String> tokenize(String text) {
+        Cond.requireNotNull(text, "text");
+        return extractTokens(getTokenPrefix(), text);
+    }
+
+
     /**
      * Extract the tokens from the specified text.
      *
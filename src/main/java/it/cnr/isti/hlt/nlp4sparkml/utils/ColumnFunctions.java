@@ -0,0 +1,88 @@
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+package it.cnr.isti.hlt.nlp4sparkml.utils;
+
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.DataFrame;
+import org.apache.spark.sql.api.java.UDF1;
+import org.apache.spark.sql.functions;
+import org.apache.spark.sql.types.DataType;
+
+/**
+ * Utility methods to compute a new DataFrame column with a Java UDF. Differently from a transformation done
+ * on the underlying RDD of rows, the UDF is part of the query plan: only the input column is read, so Catalyst
+ * can prune the unused columns, and the other columns are never copied out of the Tungsten binary rows.
+ *
+ * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ */
+public class ColumnFunctions {
+
+    /**
+     * Append to the specified DataFrame a new column computed by applying the given function to the input
+     * column value of each row. The function receives the input value in the external Spark SQL format
+     * (e.g. a {@link org.apache.spark.sql.Row} for a struct, a Scala sequence for an array) and can return
+     * native Java arrays for array types.
+     *
+     * @param dataset    The input DataFrame.
+     * @param name       The name used to register the function, unique for the calling stage (e.g. its uid).
+     * @param input      The input column.
+     * @param outputCol  The name of the output column.
+     * @param function   The function to apply.
+     * @param outputType The data type returned by the function.
+     * @return The DataFrame with the new column appended at the end.
+     */
+    public static DataFrame withColumn(DataFrame dataset, String name, Column input, String outputCol,
+                                       UDF1<?, ?> function, DataType outputType) {
+        Cond.requireNotNull(dataset, "dataset");
+        Cond.requireNotNull(name, "name");
+        Cond.requireNotNull(input, "input");
+        Cond.requireNotNull(outputCol, "outputCol");
+        Cond.requireNotNull(function, "function");
+        Cond.requireNotNull(outputType, "outputType");
+        // The DataFrames are analyzed eagerly, so the function is bound to the plan before any later
+        // registration with the same name.
+        String udfName = "nlp4sparkml_" + name;
+        dataset.sqlContext().udf().register(udfName, function, outputType);
+        return dataset.withColumn(outputCol, functions.callUDF(udfName, input));
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+package it.cnr.isti.hlt.nlp4sparkml.utils;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.spark.ml.util.MLReader;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Base class for a Spark ML reader of a {@link JavaModel} saved with a {@link JavaMLWriter}. The
+ * reader restores the uid and the params values of the model, while the data specific to the model
+ * are read by subclasses in {@link #loadData(String, String)}.
+ *
+ * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ */
+public abstract class JavaMLReader<T extends JavaModel<T>> extends MLReader<T> {
+
+    private final Class<T> modelClass;
+
+    public JavaMLReader(Class<T> modelClass) {
+        Cond.requireNotNull(modelClass, "modelClass");
+        this.modelClass = modelClass;
+    }
+
+    @Override
+    public T load(String path) {
+        Cond.requireNotNull(path, "path");
+        try {
+            String className;
+            String uid;
+            HashMap<String, Object> params = new HashMap<>();
+            try (ObjectInputStream is = new ObjectInputStream(open(path, JavaMLWriter.METADATA_FILE))) {
+                className = is.readUTF();
+                uid = is.readUTF();
+                Object values = is.readObject();
+                Cond.require(values instanceof Map, "The params saved in " + path + " are not valid");
+                for (Map.Entry<?, ?> value : ((Map<?, ?>) values).entrySet())
+                    params.put((String) value.getKey(), value.getValue());
+            }
+            Cond.require(modelClass.getName().equals(className), "The model saved in " + path + " is a " + className +
+                    ", expected " + modelClass.getName());
+            T instance = loadData(path, uid);
+            for (Map.Entry<String, Object> param : params.entrySet())
+                instance.setParamValue(param.getKey(), param.getValue());
+            return instance;
+        } catch (IOException | ClassNotFoundException e) {
+            throw new RuntimeException("Loading model from " + path, e);
+        }
+    }
+
+    /**
+     * Create a new model instance by reading the data saved in the {@link JavaMLWriter#DATA_DIR} directory
+     * of the specified path. The params of the new instance are restored after this call.
+     *
+     * @param path The path where the model has been saved.
+     * @param uid  The uid of the saved model, to be assigned to the new instance.
+     * @return The new model instance.
+     * @throws IOException Raised if some error occurs while reading data.
+     */
+    protected abstract T loadData(String path, String uid) throws IOException;
+
+    /**
+     * Open a binary file available in the specified path.
+     *
+     * @param path The base path.
+     * @param name The name of the file relative to the base path.
+     * @return The input stream on the file.
+     * @throws IOException Raised if the file can not be opened.
+     */
+    protected DataInputStream open(String path, String name) throws IOException {
+        Path p = new Path(path, name);
+        FileSystem fs = p.getFileSystem(sc().hadoopConfiguration());
+        return new DataInputStream(new BufferedInputStream(fs.open(p)));
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+package it.cnr.isti.hlt.nlp4sparkml.utils;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.spark.ml.util.MLWriter;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+
+/**
+ * Base class for a Spark ML writer of a {@link JavaModel}. The writer saves in the
+ * {@link #METADATA_FILE} file the class name, the uid and the values of all the params of the model,
+ * while the data specific to the model are saved by subclasses in {@link #saveData(String)}.
+ *
+ * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ */
+public abstract class JavaMLWriter<T extends JavaModel<T>> extends MLWriter {
+
+    /**
+     * The name of the file containing the model metadata.
+     */
+    public static final String METADATA_FILE = "metadata";
+
+    /**
+     * The name of the directory containing the model data.
+     */
+    public static final String DATA_DIR = "data";
+
+    private final T instance;
+
+    public JavaMLWriter(T instance) {
+        Cond.requireNotNull(instance, "instance");
+        this.instance = instance;
+    }
+
+    /**
+     * Get the model to be saved.
+     *
+     * @return The model to be saved.
+     */
+    protected T getInstance() {
+        return instance;
+    }
+
+    @Override
+    public void saveImpl(String path) {
+        try {
+            saveMetadata(path);
+            saveData(path);
+        } catch (IOException e) {
+            throw new RuntimeException("Saving model " + instance.uid() + " to " + path, e);
+        }
+    }
+
+    private void saveMetadata(String path) throws IOException {
+        try (ObjectOutputStream os = new ObjectOutputStream(create(path, METADATA_FILE))) {
+            os.writeUTF(instance.getClass().getName());
+            os.writeUTF(instance.uid());
+            os.writeObject(instance.getParamValues());
+        }
+    }
+
+    /**
+     * Save the data specific to the model. The data should be saved inside the {@link #DATA_DIR}
+     * directory of the specified path.
+     *
+     * @param path The path where the model is saved.
+     * @throws IOException Raised if some error occurs while writing data.
+     */
+    protected abstract void saveData(String path) throws IOException;
+
+    /**
+     * Create a new binary file in the specified path. The file is created on the filesystem
+     * associated with the path, e.g. local filesystem or HDFS.
+     *
+     * @param path The base path.
+     * @param name The name of the file relative to the base path.
+     * @return The output stream on the new file.
+     * @throws IOException Raised if the file can not be created.
+     */
+    protected DataOutputStream create(String path, String name) throws IOException {
+        Path p = new Path(path, name);
+        FileSystem fs = p.getFileSystem(sc().hadoopConfiguration());
+        return new DataOutputStream(new BufferedOutputStream(fs.create(p)));
+    }
+}
@@ -48,6 +48,7 @@ import org.apache.spark.ml.param.ParamMap;
 import org.apache.spark.ml.param.ParamPair;
 import scala.collection.JavaConversions;
 
+import java.util.HashMap;
 import java.util.List;
 
 /**
@@ -59,7 +60,16 @@ abstract public class JavaModel<T extends JavaModel<T>> extends Model<T> {
     private String uid;
 
     public JavaModel() {
-        this.uid = UID.generateUID(getClass());
+        this(null);
+    }
+
+    /**
+     * Create a model having the specified uid, e.g. a model loaded from disk.
+     *
+     * @param uid The uid of the model or 'null' to generate a new one.
+     */
+    protected JavaModel(String uid) {
+        this.uid = uid != null ? uid : UID.generateUID(getClass());
     }
 
     @Override
@@ -77,6 +87,32 @@ abstract public class JavaModel<T extends JavaModel<T>> extends Model<T> {
     }
 
 
+    /**
+     * Get the values of all the params defined on this model, indexed by param name.
+     *
+     * @return The values of all the params defined on this model.
+     */
+    HashMap<String, Object> getParamValues() {
+        HashMap<String, Object> values = new HashMap<>();
+        for (Param<?> p : params()) {
+            if (isDefined(p))
+                values.put(p.name(), getOrDefault(p));
+        }
+        return values;
+    }
+
+    /**
+     * Set the value of the param having the specified name. Unknown param names are ignored.
+     *
+     * @param name  The name of the param.
+     * @param value The value to assign.
+     */
+    void setParamValue(String name, Object value) {
+        if (hasParam(name))
+            set(getParam(name), value);
+    }
+
+
     @Override
     public T copy(ParamMap extra) {
         try {
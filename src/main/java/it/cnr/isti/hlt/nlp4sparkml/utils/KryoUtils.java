@@ -0,0 +1,169 @@
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+package it.cnr.isti.hlt.nlp4sparkml.utils;
+
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import org.apache.spark.SparkConf;
+import org.apache.spark.serializer.KryoSerializer;
+
+/**
+ * Utility methods used to serialize the nlp4sparkml classes with Kryo. A primitive array is written as its length
+ * followed by the fixed-width values, directly in the Kryo buffer and without temporary copies; a {@code null} array
+ * is coded with length -1.
+ *
+ * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ */
+public class KryoUtils {
+
+    /**
+     * Configure the specified Spark configuration to use Kryo serialization with the
+     * {@link NLP4SparkMLKryoRegistrator}. The serializer is used for shuffles, serialized persisted RDDs,
+     * broadcast variables and task results.
+     *
+     * @param conf The Spark configuration.
+     * @return The same configuration.
+     */
+    public static SparkConf enableKryo(SparkConf conf) {
+        Cond.requireNotNull(conf, "conf");
+        conf.set("spark.serializer", KryoSerializer.class.getName());
+        conf.set("spark.kryo.registrator", NLP4SparkMLKryoRegistrator.class.getName());
+        return conf;
+    }
+
+    public static void writeInts(Output output, int[] values) {
+        if (values == null) {
+            output.writeInt(0, true);
+            return;
+        }
+        output.writeInt(values.length + 1, true);
+        for (int v : values)
+            output.writeInt(v);
+    }
+
+    public static int[] readInts(Input input) {
+        int length = input.readInt(true) - 1;
+        if (length == -1)
+            return null;
+        int[] values = new int[length];
+        for (int i = 0; i < length; i++)
+            values[i] = input.readInt();
+        return values;
+    }
+
+    public static void writeDoubles(Output output, double[] values) {
+        if (values == null) {
+            output.writeInt(0, true);
+            return;
+        }
+        output.writeInt(values.length + 1, true);
+        for (double v : values)
+            output.writeDouble(v);
+    }
+
+    public static double[] readDoubles(Input input) {
+        int length = input.readInt(true) - 1;
+        if (length == -1)
+            return null;
+        double[] values = new double[length];
+        for (int i = 0; i < length; i++)
+            values[i] = input.readDouble();
+        return values;
+    }
+
+    public static void writeBytes(Output output, byte[] values) {
+        if (values == null) {
+            output.writeInt(0, true);
+            return;
+        }
+        output.writeInt(values.length + 1, true);
+        output.writeBytes(values);
+    }
+
+    public static byte[] readBytes(Input input) {
+        int length = input.readInt(true) - 1;
+        if (length == -1)
+            return null;
+        return input.readBytes(length);
+    }
+
+    public static void writeShorts(Output output, short[] values) {
+        if (values == null) {
+            output.writeInt(0, true);
+            return;
+        }
+        output.writeInt(values.length + 1, true);
+        for (short v : values)
+            output.writeShort(v);
+    }
+
+    public static short[] readShorts(Input input) {
+        int length = input.readInt(true) - 1;
+        if (length == -1)
+            return null;
+        short[] values = new short[length];
+        for (int i = 0; i < length; i++)
+            values[i] = input.readShort();
+        return values;
+    }
+
+    public static void writeLongs(Output output, long[] values) {
+        if (values == null) {
+            output.writeInt(0, true);
+            return;
+        }
+        output.writeInt(values.length + 1, true);
+        for (long v : values)
+            output.writeLong(v);
+    }
+
+    public static long[] readLongs(Input input) {
+        int length = input.readInt(true) - 1;
+        if (length == -1)
+            return null;
+        long[] values = new long[length];
+        for (int i = 0; i < length; i++)
+            values[i] = input.readLong();
+        return values;
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+package it.cnr.isti.hlt.nlp4sparkml.utils;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import it.cnr.isti.hlt.nlp4sparkml.classifier.boosting.BoostingKryoSerializers;
+import it.cnr.isti.hlt.nlp4sparkml.data.ContingencyTable;
+import it.cnr.isti.hlt.nlp4sparkml.data.DataUtils;
+import it.cnr.isti.hlt.nlp4sparkml.data.MultilabelPoint;
+import it.cnr.isti.hlt.nlp4sparkml.data.PointClassificationResults;
+import it.cnr.isti.hlt.nlp4sparkml.datasource.LabeledTextualDocument;
+import it.cnr.isti.hlt.nlp4sparkml.datasource.TextualDocument;
+import it.cnr.isti.hlt.nlp4sparkml.indexer.FeaturesDictionary;
+import it.cnr.isti.hlt.nlp4sparkml.weighter.DocumentFrequencies;
+import org.apache.spark.serializer.KryoRegistrator;
+
+/**
+ * A Kryo registrator for all the nlp4sparkml classes which are shuffled, persisted in serialized form or
+ * broadcast. The classes holding primitive arrays use hand-written serializers writing the arrays in bulk
+ * (see {@link KryoUtils}). Use {@link KryoUtils#enableKryo(org.apache.spark.SparkConf)} to enable it.
+ *
+ * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ */
+public class NLP4SparkMLKryoRegistrator implements KryoRegistrator {
+
+    @Override
+    public void registerClasses(Kryo kryo) {
+        kryo.register(int[].class);
+        kryo.register(long[].class);
+        kryo.register(double[].class);
+        kryo.register(int[][].class);
+        kryo.register(MultilabelPoint.class, new MultilabelPointSerializer());
+        kryo.register(DataUtils.LabelDocuments.class, new LabelDocumentsSerializer());
+        kryo.register(DataUtils.FeatureDocuments.class, new FeatureDocumentsSerializer());
+        kryo.register(PointClassificationResults.class, new PointClassificationResultsSerializer());
+        kryo.register(ContingencyTable.class, new ContingencyTableSerializer());
+        kryo.register(TextualDocument.class);
+        kryo.register(LabeledTextualDocument.class);
+        kryo.register(FeaturesDictionary.class, new FeaturesDictionarySerializer());
+        kryo.register(DocumentFrequencies.class, new DocumentFrequenciesSerializer());
+        BoostingKryoSerializers.register(kryo);
+    }
+
+
+    private static class MultilabelPointSerializer extends Serializer<MultilabelPoint> {
+        @Override
+        public void write(Kryo kryo, Output output, MultilabelPoint pt) {
+            output.writeInt(pt.getPointID());
+            output.writeInt(pt.getNumFeatures(), true);
+            KryoUtils.writeInts(output, pt.getFeatures());
+            KryoUtils.writeDoubles(output, pt.getWeights());
+            KryoUtils.writeInts(output, pt.getLabels());
+        }
+
+        @Override
+        public MultilabelPoint read(Kryo kryo, Input input, Class<MultilabelPoint> type) {
+            int pointID = input.readInt();
+            int numFeatures = input.readInt(true);
+            int[] features = KryoUtils.readInts(input);
+            double[] weights = KryoUtils.readDoubles(input);
+            int[] labels = KryoUtils.readInts(input);
+            return new MultilabelPoint(pointID, numFeatures, features, weights, labels);
+        }
+    }
+
+    private static class LabelDocumentsSerializer extends Serializer<DataUtils.LabelDocuments> {
+        @Override
+        public void write(Kryo kryo, Output output, DataUtils.LabelDocuments ld) {
+            output.writeInt(ld.getLabelID(), true);
+            KryoUtils.writeInts(output, ld.getDocuments());
+        }
+
+        @Override
+        public DataUtils.LabelDocuments read(Kryo kryo, Input input, Class<DataUtils.LabelDocuments> type) {
+            int labelID = input.readInt(true);
+            return new DataUtils.LabelDocuments(labelID, KryoUtils.readInts(input));
+        }
+    }
+
+    private static class FeatureDocumentsSerializer extends Serializer<DataUtils.FeatureDocuments> {
+        @Override
+        public void write(Kryo kryo, Output output, DataUtils.FeatureDocuments fd) {
+            output.writeInt(fd.getFeatureID(), true);
+            KryoUtils.writeInts(output, fd.getDocuments());
+            int[][] labels = fd.getLabels();
+            output.writeInt(labels.length, true);
+            for (int[] docLabels : labels)
+                KryoUtils.writeInts(output, docLabels);
+        }
+
+        @Override
+        public DataUtils.FeatureDocuments read(Kryo kryo, Input input, Class<DataUtils.FeatureDocuments> type) {
+            int featureID = input.readInt(true);
+            int[] documents = KryoUtils.readInts(input);
+            int[][] labels = new int[input.readInt(true)][];
+            for (int i = 0; i < labels.length; i++)
+                labels[i] = KryoUtils.readInts(input);
+            return new DataUtils.FeatureDocuments(featureID, documents, labels);
+        }
+    }
+
+    private static class PointClassificationResultsSerializer extends Serializer<PointClassificationResults> {
+        @Override
+        public void write(Kryo kryo, Output output, PointClassificationResults res) {
+            output.writeInt(res.getPointID());
+            KryoUtils.writeInts(output, res.getLabels());
+            KryoUtils.writeDoubles(output, res.getScores());
+            KryoUtils.writeDoubles(output, res.getPositiveThresholds());
+        }
+
+        @Override
+        public PointClassificationResults read(Kryo kryo, Input input, Class<PointClassificationResults> type) {
+            int pointID = input.readInt();
+            int[] labels = KryoUtils.readInts(input);
+            double[] scores = KryoUtils.readDoubles(input);
+            double[] thresholds = KryoUtils.readDoubles(input);
+            return new PointClassificationResults(pointID, labels, scores, thresholds);
+        }
+    }
+
+    private static class ContingencyTableSerializer extends Serializer<ContingencyTable> {
+        @Override
+        public void write(Kryo kryo, Output output, ContingencyTable ct) {
+            output.writeLong(ct.tp(), true);
+            output.writeLong(ct.tn(), true);
+            output.writeLong(ct.fp(), true);
+            output.writeLong(ct.fn(), true);
+        }
+
+        @Override
+        public ContingencyTable read(Kryo kryo, Input input, Class<ContingencyTable> type) {
+            return new ContingencyTable(input.readLong(true), input.readLong(true), input.readLong(true), input.readLong(true));
+        }
+    }
+
+    private static class FeaturesDictionarySerializer extends Serializer<FeaturesDictionary> {
+        @Override
+        public void write(Kryo kryo, Output output, FeaturesDictionary dictionary) {
+            byte[] bytes = dictionary.toByteArray();
+            output.writeInt(bytes.length, true);
+            output.writeBytes(bytes);
+        }
+
+        @Override
+        public FeaturesDictionary read(Kryo kryo, Input input, Class<FeaturesDictionary> type) {
+            return FeaturesDictionary.fromByteArray(input.readBytes(input.readInt(true)));
+        }
+    }
+
+    private static class DocumentFrequenciesSerializer extends Serializer<DocumentFrequencies> {
+        @Override
+        public void write(Kryo kryo, Output output, DocumentFrequencies frequencies) {
+            KryoUtils.writeLongs(output, frequencies.getFeatures());
+            KryoUtils.writeLongs(output, frequencies.getFrequencies());
+        }
+
+        @Override
+        public DocumentFrequencies read(Kryo kryo, Input input, Class<DocumentFrequencies> type) {
+            long[] features = KryoUtils.readLongs(input);
+            return DocumentFrequencies.create(features, KryoUtils.readLongs(input));
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+package it.cnr.isti.hlt.nlp4sparkml.utils;
+
+import org.apache.spark.sql.Row;
+import scala.collection.Iterator;
+import scala.collection.Seq;
+import scala.collection.mutable.WrappedArray;
+
+import java.util.List;
+
+/**
+ * Utility methods to read the array columns of a {@link Row} as native arrays. Differently from
+ * {@link Row#getList(int)}, the values are read directly from the array backing the column value (a Scala
+ * {@link WrappedArray} for the rows produced by a DataFrame, or a native array for the rows created with
+ * {@link org.apache.spark.sql.RowFactory}), without building a Java list view and without boxing when the column
+ * already stores primitive values. Generic Scala sequences and Java lists are also supported.
+ * <br/><br/>
+ * A {@code null} column value is returned as a {@code null} array.
+ *
+ * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ */
+public class RowUtils {
+
+    public static int[] getIntArray(Row row, String fieldName) {
+        return getIntArray(row, row.fieldIndex(fieldName));
+    }
+
+    /**
+     * Get the value of the specified array column as an array of ints.
+     *
+     * @param row The row.
+     * @param i   The index of the column.
+     * @return The column value as a native array.
+     */
+    public static int[] getIntArray(Row row, int i) {
+        Object value = unwrap(row.get(i));
+        if (value == null)
+            return null;
+        if (value instanceof int[])
+            return ((int[]) value).clone();
+        if (value instanceof Object[]) {
+            Object[] values = (Object[]) value;
+            int[] ret = new int[values.length];
+            for (int j = 0; j < values.length; j++)
+                ret[j] = ((Number) values[j]).intValue();
+            return ret;
+        }
+        if (value instanceof long[]) {
+            long[] values = (long[]) value;
+            int[] ret = new int[values.length];
+            for (int j = 0; j < values.length; j++)
+                ret[j] = (int) values[j];
+            return ret;
+        }
+        Object[] values = toObjectArray(value);
+        int[] ret = new int[values.length];
+        for (int j = 0; j < values.length; j++)
+            ret[j] = ((Number) values[j]).intValue();
+        return ret;
+    }
+
+    public static long[] getLongArray(Row row, String fieldName) {
+        return getLongArray(row, row.fieldIndex(fieldName));
+    }
+
+    /**
+     * Get the value of the specified array column as an array of longs.
+     *
+     * @param row The row.
+     * @param i   The index of the column.
+     * @return The column value as a native array.
+     */
+    public static long[] getLongArray(Row row, int i) {
+        return toLongArray(row.get(i));
+    }
+
+    /**
+     * Get the specified array column value, e.g. the value given to a UDF, as an array of longs.
+     *
+     * @param columnValue The column value.
+     * @return The column value as a native array.
+     */
+    public static long[] toLongArray(Object columnValue) {
+        Object value = unwrap(columnValue);
+        if (value == null)
+            return null;
+        if (value instanceof long[])
+            return ((long[]) value).clone();
+        if (value instanceof int[]) {
+            int[] values = (int[]) value;
+            long[] ret = new long[values.length];
+            for (int j = 0; j < values.length; j++)
+                ret[j] = values[j];
+            return ret;
+        }
+        Object[] values = value instanceof Object[] ? (Object[]) value : toObjectArray(value);
+        long[] ret = new long[values.length];
+        for (int j = 0; j < values.length; j++)
+            ret[j] = ((Number) values[j]).longValue();
+        return ret;
+    }
+
+    public static double[] getDoubleArray(Row row, String fieldName) {
+        return getDoubleArray(row, row.fieldIndex(fieldName));
+    }
+
+    /**
+     * Get the value of the specified array column as an array of doubles.
+     *
+     * @param row The row.
+     * @param i   The index of the column.
+     * @return The column value as a native array.
+     */
+    public static double[] getDoubleArray(Row row, int i) {
+        Object value = unwrap(row.get(i));
+        if (value == null)
+            return null;
+        if (value instanceof double[])
+            return ((double[]) value).clone();
+        Object[] values = value instanceof Object[] ? (Object[]) value : toObjectArray(value);
+        double[] ret = new double[values.length];
+        for (int j = 0; j < values.length; j++)
+            ret[j] = ((Number) values[j]).doubleValue();
+        return ret;
+    }
+
+    /**
+     * Get the value of the specified array column as an array of strings.
+     *
+     * @param row The row.
+     * @param i   The index of the column.
+     * @return The column value as a native array.
+     */
+    public static String[] getStringArray(Row row, int i) {
+        Object value = unwrap(row.get(i));
+        if (value == null)
+            return null;
+        Object[] values = value instanceof Object[] ? (Object[]) value : toObjectArray(value);
+        String[] ret = new String[values.length];
+        for (int j = 0; j < values.length; j++)
+            ret[j] = (String) values[j];
+        return ret;
+    }
+
+
+    private static Object unwrap(Object value) {
+        if (value instanceof WrappedArray)
+            return ((WrappedArray<?>) value).array();
+        return value;
+    }
+
+    private static Object[] toObjectArray(Object value) {
+        if (value instanceof List)
+            return ((List<?>) value).toArray();
+        if (value instanceof Seq) {
+            Seq<?> seq = (Seq<?>) value;
+            Object[] ret = new Object[seq.length()];
+            Iterator<?> it = seq.iterator();
+            for (int j = 0; j < ret.length; j++)
+                ret[j] = it.next();
+            return ret;
+        }
+        throw new IllegalArgumentException("The value of type " + value.getClass().getName() + " is not an array");
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+package it.cnr.isti.hlt.nlp4sparkml.utils;
+
+/**
+ * Utility methods to sort parallel primitive arrays (e.g. features IDs and their weights) by ascending key. The
+ * sort is a stable merge sort of an index permutation stored in an int array, so neither the keys nor the
+ * indexes are boxed. The arrays already sorted are detected with a linear scan and left untouched.
+ *
+ * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ */
+public class SortUtils {
+
+    /**
+     * Sort in place the specified parallel arrays by ascending key. The values having equal keys keep their
+     * relative order.
+     *
+     * @param keys   The keys.
+     * @param values The value associated to each key.
+     */
+    public static void sortByKey(long[] keys, long[] values) {
+        Cond.requireNotNull(keys, "keys");
+        Cond.requireNotNull(values, "values");
+        Cond.require(keys.length == values.length, "The number of keys and values are different");
+        if (isSorted(keys))
+            return;
+        int[] order = sortedOrder(keys.length, (i1, i2) -> Long.compare(keys[i1], keys[i2]));
+        long[] origKeys = keys.clone();
+        long[] origValues = values.clone();
+        for (int i = 0; i < order.length; i++) {
+            keys[i] = origKeys[order[i]];
+            values[i] = origValues[order[i]];
+        }
+    }
+
+    /**
+     * Sort in place the specified parallel arrays by ascending key. The values having equal keys keep their
+     * relative order.
+     *
+     * @param keys   The keys.
+     * @param values The value associated to each key.
+     */
+    public static void sortByKey(int[] keys, double[] values) {
+        Cond.requireNotNull(keys, "keys");
+        Cond.requireNotNull(values, "values");
+        Cond.require(keys.length == values.length, "The number of keys and values are different");
+        if (isSorted(keys))
+            return;
+        int[] order = sortedOrder(keys.length, (i1, i2) -> Integer.compare(keys[i1], keys[i2]));
+        int[] origKeys = keys.clone();
+        double[] origValues = values.clone();
+        for (int i = 0; i < order.length; i++) {
+            keys[i] = origKeys[order[i]];
+            values[i] = origValues[order[i]];
+        }
+    }
+
+    public static boolean isSorted(long[] keys) {
+        for (int i = 1; i < keys.length; i++) {
+            if (keys[i - 1] > keys[i])
+                return false;
+        }
+        return true;
+    }
+
+    public static boolean isSorted(int[] keys) {
+        for (int i = 1; i < keys.length; i++) {
+            if (keys[i - 1] > keys[i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Compare the keys at two indexes, without boxing the indexes.
+     */
+    @FunctionalInterface
+    private interface IndexComparator {
+        int compare(int i1, int i2);
+    }
+
+    private static int[] sortedOrder(int size, IndexComparator comparator) {
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++)
+            order[i] = i;
+        mergeSort(order, order.clone(), 0, size, comparator);
+        return order;
+    }
+
+    /**
+     * Sort the range [from, to) of 'dst', using 'src' (a copy of the same range) as temporary storage.
+     */
+    private static void mergeSort(int[] dst, int[] src, int from, int to, IndexComparator comparator) {
+        if (to - from < 8) {
+            // Insertion sort of the small ranges.
+            for (int i = from + 1; i < to; i++) {
+                int idx = dst[i];
+                int j = i - 1;
+                while (j >= from && comparator.compare(dst[j], idx) > 0) {
+                    dst[j + 1] = dst[j];
+                    j--;
+                }
+                dst[j + 1] = idx;
+            }
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        // Sort the two halves in 'src' and merge them in 'dst'.
+        mergeSort(src, dst, from, mid, comparator);
+        mergeSort(src, dst, mid, to, comparator);
+        int i = from, j = mid;
+        for (int k = from; k < to; k++) {
+            if (j >= to || (i < mid && comparator.compare(src[i], src[j]) <= 0))
+                dst[k] = src[i++];
+            else
+                dst[k] = src[j++];
+        }
+    }
+}
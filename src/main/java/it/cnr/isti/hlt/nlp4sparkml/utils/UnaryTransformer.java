@@ -46,6 +46,9 @@ import org.apache.spark.ml.Transformer;
 import org.apache.spark.ml.param.Param;
 import org.apache.spark.ml.param.ParamMap;
 import org.apache.spark.ml.param.ParamPair;
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.DataFrame;
+import org.apache.spark.sql.api.java.UDF1;
 import org.apache.spark.sql.types.*;
 import scala.collection.JavaConversions;
 
@@ -60,6 +63,10 @@ import java.util.List;
  * transformation into an output column. The output schema
  * will be the same as the input schema with the addition at the
  * end of fields of a given output column.
+ * <br/><br/>
+ * The output column is computed with the function returned by {@link #createColumnFunction(DataFrame)}, applied
+ * as a UDF with {@link DataFrame#withColumn(String, Column)}: only the input column of each row is read and the
+ * other columns are left to Spark SQL.
  * column
  *
  * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
@@ -148,6 +155,48 @@ public abstract class UnaryTransformer extends JavaTransformer {
     }
 
 
+    @Override
+    public DataFrame transform(DataFrame dataset) {
+        Cond.requireNotNull(dataset, "dataset");
+        return transformColumn(dataset, createColumnFunction(dataset));
+    }
+
+    /**
+     * Append the output column to the specified DataFrame, computing it with the given function.
+     *
+     * @param dataset  The input DataFrame.
+     * @param function The function applied to the value of {@link #getInputColumn(DataFrame)} of each row.
+     * @return The transformed DataFrame.
+     */
+    protected DataFrame transformColumn(DataFrame dataset, UDF1<?, ?> function) {
+        transformSchema(dataset.schema());
+        return ColumnFunctions.withColumn(dataset, uid(), getInputColumn(dataset), getOutputCol(), function, getOutputDataType());
+    }
+
+    /**
+     * Get the column given as input to the function returned by {@link #createColumnFunction(DataFrame)}. By
+     * default it is the input column.
+     *
+     * @param dataset The input DataFrame.
+     * @return The column given as input to the function.
+     */
+    protected Column getInputColumn(DataFrame dataset) {
+        return dataset.col(getInputCol());
+    }
+
+    /**
+     * Create the function computing the output value from the input value of a single row. The function is
+     * serialized and executed on the workers, and the returned value must be in the format declared by
+     * {@link #getOutputDataType()}. The function is created by each call of {@link #transform(DataFrame)}, so the
+     * data it needs (e.g. a broadcast variable created from the context of the given DataFrame) can be captured
+     * by the function itself instead of being kept in this object.
+     *
+     * @param dataset The DataFrame being transformed.
+     * @return The function computing the output value.
+     */
+    protected abstract UDF1<?, ?> createColumnFunction(DataFrame dataset);
+
+
     /**
      * Return the output data type to be included in the resulting schema.
      *
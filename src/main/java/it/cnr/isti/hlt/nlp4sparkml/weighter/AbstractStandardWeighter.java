@@ -43,11 +43,19 @@
 package it.cnr.isti.hlt.nlp4sparkml.weighter;
 
 import it.cnr.isti.hlt.nlp4sparkml.indexer.OccurencesCounterHelper;
+import it.cnr.isti.hlt.nlp4sparkml.utils.RowUtils;
+import it.cnr.isti.hlt.nlp4sparkml.utils.SortUtils;
 import it.cnr.isti.hlt.nlp4sparkml.utils.UnaryModel;
+import org.apache.spark.sql.DataFrame;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.RowFactory;
+import org.apache.spark.sql.api.java.UDF1;
 import org.apache.spark.sql.types.DataType;
 import org.apache.spark.sql.types.DataTypes;
 import org.apache.spark.sql.types.StructField;
 
+import java.io.Serializable;
+
 /**
  * A skeleton abstract class for a standard weighter.
  * <p>
@@ -61,8 +69,8 @@ import org.apache.spark.sql.types.StructField;
  * <br/>
  * The weighter outputs a dataframe column (specified with {@link #setOutputCol(String)}) which is a struct
  * containing two fields. The field
- * 0 is an array of types "long" (representing the feature index) and
- * the field 1 is an array of types "double" (representing the weights for each specific
+ * 0 is an array of types "long" (representing the feature index, sorted in ascending order) and
+ * the field 1 is an array of types "double" (representing the L2 normalized weights for each specific
  * feature).
  *
  * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
@@ -72,6 +80,19 @@ public abstract class AbstractStandardWeighter<T extends AbstractStandardWeighte
     public static final String FEATURES = "features";
     public static final String WEIGHTS = "weights";
 
+    public AbstractStandardWeighter() {
+        this(null);
+    }
+
+    /**
+     * Create a weighter having the specified uid.
+     *
+     * @param uid The uid of the weighter or 'null' to generate a new one.
+     */
+    protected AbstractStandardWeighter(String uid) {
+        super(uid);
+    }
+
     @Override
     protected DataType getOutputDataType() {
         return DataTypes.createStructType(new StructField[]{
@@ -101,4 +122,81 @@ public abstract class AbstractStandardWeighter<T extends AbstractStandardWeighte
     public AbstractStandardWeighter setInputCol(String inputCol) {
         return (AbstractStandardWeighter) super.setInputCol(inputCol);
     }
+
+
+    /**
+     * Create the function computing the output value of each row with {@link #computeWeights(long[], long[])}.
+     * The output features are sorted by ascending ID.
+     *
+     * @param dataset The DataFrame being transformed.
+     * @return The function computing the output value.
+     */
+    @Override
+    protected UDF1<Row, Row> createColumnFunction(DataFrame dataset) {
+        return createWeightsFunction(this::computeWeights);
+    }
+
+    /**
+     * Create a function computing the output value of each row with the specified weights computer. The
+     * subclasses can use it to build a function which does not capture the whole weighter, e.g. a function
+     * reading the statistics from a broadcast variable.
+     *
+     * @param computer The weights computer.
+     * @return The function computing the output value.
+     */
+    protected static UDF1<Row, Row> createWeightsFunction(WeightsComputer computer) {
+        return occurrencesField -> {
+            long[] features = RowUtils.getLongArray(occurrencesField, 0);
+            long[] occurrences = RowUtils.getLongArray(occurrencesField, 1);
+            sortByFeature(features, occurrences);
+            return RowFactory.create(features, computer.computeWeights(features, occurrences));
+        };
+    }
+
+    /**
+     * Sort in place the specified parallel arrays by ascending feature ID. The arrays produced by
+     * {@link it.cnr.isti.hlt.nlp4sparkml.indexer.OccurrencesCounter} are already sorted and are left untouched.
+     *
+     * @param features    The features IDs.
+     * @param occurrences The number of occurrences of each feature.
+     */
+    protected static void sortByFeature(long[] features, long[] occurrences) {
+        SortUtils.sortByKey(features, occurrences);
+    }
+
+    /**
+     * A serializable function computing the weights of the features of a single document. See
+     * {@link #computeWeights(long[], long[])}.
+     */
+    @FunctionalInterface
+    protected interface WeightsComputer extends Serializable {
+        double[] computeWeights(long[] features, long[] occurrences);
+    }
+
+    /**
+     * Compute the L2 normalized weights of the features of a single document, using the statistics computed
+     * when the weighter has been fitted. The features without statistics get a weight equals to 0.
+     *
+     * @param features    The IDs of the features of the document.
+     * @param occurrences The number of occurrences of each feature in the document.
+     * @return The weight of each feature, in the same order of the features IDs.
+     */
+    public abstract double[] computeWeights(long[] features, long[] occurrences);
+
+    /**
+     * Normalize in place the specified weights to unit L2 norm. The weights are left untouched if
+     * their norm is 0.
+     *
+     * @param weights The weights to normalize.
+     */
+    protected static void normalizeWeights(double[] weights) {
+        double normalization = 0;
+        for (double w : weights)
+            normalization += w * w;
+        normalization = Math.sqrt(normalization);
+        if (normalization == 0)
+            return;
+        for (int i = 0; i < weights.length; i++)
+            weights[i] /= normalization;
+    }
 }
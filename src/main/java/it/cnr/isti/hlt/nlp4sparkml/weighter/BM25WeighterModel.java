@@ -42,19 +42,23 @@
 
 package it.cnr.isti.hlt.nlp4sparkml.weighter;
 
-import it.cnr.isti.hlt.nlp4sparkml.data.DataUtils;
-import it.cnr.isti.hlt.nlp4sparkml.indexer.OccurencesCounterHelper;
 import it.cnr.isti.hlt.nlp4sparkml.utils.Cond;
-import org.apache.spark.api.java.JavaRDD;
+import it.cnr.isti.hlt.nlp4sparkml.utils.JavaMLReader;
+import it.cnr.isti.hlt.nlp4sparkml.utils.JavaMLWriter;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.broadcast.Broadcast;
 import org.apache.spark.ml.param.Param;
+import org.apache.spark.ml.util.MLReader;
+import org.apache.spark.ml.util.MLWritable;
+import org.apache.spark.ml.util.MLWriter;
 import org.apache.spark.sql.DataFrame;
 import org.apache.spark.sql.Row;
-import org.apache.spark.sql.RowFactory;
-import org.apache.spark.sql.types.StructType;
-import org.apache.spark.storage.StorageLevel;
-import scala.Tuple2;
+import org.apache.spark.sql.api.java.UDF1;
 
-import java.util.*;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Map;
 
 /**
  * A transformer computing BM25 weights for document features.
@@ -66,21 +70,38 @@ import java.util.*;
  *
  * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
  */
-public class BM25WeighterModel extends AbstractStandardWeighter<BM25WeighterModel> {
+public class BM25WeighterModel extends AbstractStandardWeighter<BM25WeighterModel> implements MLWritable {
+
+    private static final String STATS_FILE = JavaMLWriter.DATA_DIR + "/stats.bin";
 
     private final long numDocuments;
-    private final HashMap<Long, Long> featuresDictintDocuments;
+    private final DocumentFrequencies documentFrequencies;
     private final double avgDocLength;
     private final Param<Double> k1Param;
     private final Param<Double> bParam;
 
     public BM25WeighterModel(long numDocuments, Map<Long, Long> featuresDictintDocuments, double avgDocLength) {
+        this(numDocuments, DocumentFrequencies.create(featuresDictintDocuments), avgDocLength);
+    }
+
+    /**
+     * Create a model with the specified statistics.
+     *
+     * @param numDocuments        The number of documents used to fit the model.
+     * @param documentFrequencies The number of distinct documents where each feature appears.
+     * @param avgDocLength        The average number of features occurrences of a document.
+     */
+    public BM25WeighterModel(long numDocuments, DocumentFrequencies documentFrequencies, double avgDocLength) {
+        this(null, numDocuments, documentFrequencies, avgDocLength);
+    }
+
+    private BM25WeighterModel(String uid, long numDocuments, DocumentFrequencies documentFrequencies, double avgDocLength) {
+        super(uid);
         Cond.require(numDocuments > 0, "The number of documents must be greater than 0");
-        Cond.requireNotNull(featuresDictintDocuments, "featuresDictintDocuments");
+        Cond.requireNotNull(documentFrequencies, "documentFrequencies");
         Cond.require(avgDocLength > 0, "The average document length must be greater than 0");
         this.numDocuments = numDocuments;
-        this.featuresDictintDocuments = new HashMap<>();
-        this.featuresDictintDocuments.putAll(featuresDictintDocuments);
+        this.documentFrequencies = documentFrequencies;
         this.avgDocLength = avgDocLength;
         k1Param = new Param<Double>(this, "k1Param", "The k1 parameter");
         setDefault(k1Param, 1.2d);
@@ -130,84 +151,51 @@ public class BM25WeighterModel extends AbstractStandardWeighter<BM25WeighterMode
     }
 
     @Override
-    public DataFrame transform(DataFrame dataset) {
-        String inputCol = getInputCol();
-        StructType newSchema = transformSchema(dataset.schema());
-        JavaRDD<Row> ds = dataset.toJavaRDD().persist(StorageLevel.MEMORY_AND_DISK());
-        long numDocuments = ds.count();
-        Map<Long, Long> featuresDictintDocuments = computeDistinctDocuments(ds, inputCol);
-        JavaRDD<Row> computed = ds.map(row -> {
-            Object[] fields = DataUtils.copyValuesFromRow(row, 1);
-            OccurencesCounterHelper helper = OccurencesCounterHelper.getHelper(row, inputCol);
-            List<Long> features = helper.getFeatures();
-            List<Long> occurrences = helper.getOccurrences();
-            double normalization = 0;
-            HashMap<Long, Double> weights = new HashMap<Long, Double>();
-            long docLength = 0;
-            for (int i = 0; i < features.size(); i++) {
-                long numOcc = occurrences.get(i);
-                docLength += numOcc;
-            }
-            for (int i = 0; i < features.size(); i++) {
-                long featureID = features.get(i);
-                long numOcc = occurrences.get(i);
-                long featureNumDistinctDocs = featuresDictintDocuments.get(featureID);
-                double score = computeBM25(numOcc, numDocuments, featureNumDistinctDocs, docLength, avgDocLength);
-                normalization += (score * score);
-                weights.put(featureID, score);
-            }
-            normalization = Math.sqrt(normalization);
-            for (int i = 0; i < features.size(); i++) {
-                long featureID = features.get(i);
-                double score = weights.get(featureID);
-                weights.put(featureID, score / normalization);
-            }
+    protected UDF1<Row, Row> createColumnFunction(DataFrame dataset) {
+        // Only the statistics computed at fit time are used, sent once to each executor.
+        JavaSparkContext sc = new JavaSparkContext(dataset.sqlContext().sparkContext());
+        Broadcast<DocumentFrequencies> bcFrequencies = sc.broadcast(documentFrequencies);
+        long numDocuments = this.numDocuments;
+        double avgDocLength = this.avgDocLength;
+        double k1 = getK1();
+        double b = getB();
+        return createWeightsFunction((features, occurrences) ->
+                computeWeights(features, occurrences, numDocuments, bcFrequencies.value(), avgDocLength, k1, b));
+    }
 
 
-            ArrayList<Long> featsOut = new ArrayList<>();
-            ArrayList<Double> weightsOut = new ArrayList<Double>();
-            Iterator<Long> keys = weights.keySet().iterator();
-            while (keys.hasNext()) {
-                long feature = keys.next();
-                double weight = weights.get(feature);
-                featsOut.add(feature);
-                weightsOut.add(weight);
-            }
-            Row r = RowFactory.create(featsOut.toArray(new Long[0]), weightsOut.toArray(new Double[0]));
-            fields[fields.length - 1] = r;
-            return RowFactory.create(fields);
-        });
-
-        return dataset.sqlContext().createDataFrame(computed, newSchema);
-    }
-
-    private Map<Long, Long> computeDistinctDocuments(JavaRDD<Row> ds, String inputCol) {
-        return ds.flatMapToPair(row -> {
-            List<Long> features = OccurencesCounterHelper.getHelper(row, inputCol).getFeatures();
-            HashMap<Long, Long> distinctFeats = new HashMap<Long, Long>();
-            for (long featID : features) {
-                if (distinctFeats.containsKey(featID))
-                    continue;
-                distinctFeats.put(featID, featID);
-            }
-            ArrayList<Tuple2<Long, Long>> ret = new ArrayList<Tuple2<Long, Long>>();
-            Iterator<Long> keys = distinctFeats.keySet().iterator();
-            while (keys.hasNext()) {
-                ret.add(new Tuple2<Long, Long>(keys.next(), 1l));
-            }
-            return ret;
-        }).reduceByKey((v1, v2) -> v1 + v2).collectAsMap();
+    @Override
+    public double[] computeWeights(long[] features, long[] occurrences) {
+        return computeWeights(features, occurrences, numDocuments, documentFrequencies, avgDocLength, getK1(), getB());
+    }
+
+    private static double[] computeWeights(long[] features, long[] occurrences, long numDocuments, DocumentFrequencies documentFrequencies,
+                                           double avgDocLength, double k1, double b) {
+        Cond.requireNotNull(features, "features");
+        Cond.requireNotNull(occurrences, "occurrences");
+        Cond.require(features.length == occurrences.length, "The number of features and occurrences are different");
+        // A signed count (see OccurrencesCounter#getSignsCol()) contributes its absolute value to the document
+        // length and gives its sign to the weight.
+        long docLength = 0;
+        for (long numOcc : occurrences)
+            docLength += Math.abs(numOcc);
+        double[] weights = new double[features.length];
+        for (int i = 0; i < features.length; i++) {
+            long featureNumDistinctDocs = documentFrequencies.get(features[i]);
+            if (featureNumDistinctDocs != 0)
+                weights[i] = Long.signum(occurrences[i]) * computeBM25(Math.abs(occurrences[i]), numDocuments, featureNumDistinctDocs, docLength, avgDocLength, k1, b);
+        }
+        normalizeWeights(weights);
+        return weights;
     }
 
 
-    protected final double computeBM25(double tf, double numberOfDocuments,
-                                       double documentFrequency, long docLength, double avgDocLength) {
+    protected static double computeBM25(double tf, double numberOfDocuments, double documentFrequency,
+                                        long docLength, double avgDocLength, double k1, double b) {
 
         if (documentFrequency == 0)
             return 0;
 
-        double k1 = getK1();
-        double b = getB();
         double rsj = Math.log(numberOfDocuments / documentFrequency);
         double K = k1 * ((1 - b) + (b * docLength / avgDocLength));
         double f = ((k1 + 1) * tf) / (K + tf);
@@ -216,4 +204,55 @@ public class BM25WeighterModel extends AbstractStandardWeighter<BM25WeighterMode
         return weight;
     }
 
+    @Override
+    public MLWriter write() {
+        return new BM25WeighterModelWriter(this);
+    }
+
+    @Override
+    public void save(String path) throws IOException {
+        write().save(path);
+    }
+
+    public static MLReader<BM25WeighterModel> read() {
+        return new BM25WeighterModelReader();
+    }
+
+    public static BM25WeighterModel load(String path) {
+        return read().load(path);
+    }
+
+
+    private static class BM25WeighterModelWriter extends JavaMLWriter<BM25WeighterModel> {
+
+        BM25WeighterModelWriter(BM25WeighterModel instance) {
+            super(instance);
+        }
+
+        @Override
+        protected void saveData(String path) throws IOException {
+            try (DataOutputStream os = create(path, STATS_FILE)) {
+                os.writeLong(getInstance().numDocuments);
+                os.writeDouble(getInstance().avgDocLength);
+                getInstance().documentFrequencies.write(os);
+            }
+        }
+    }
+
+    private static class BM25WeighterModelReader extends JavaMLReader<BM25WeighterModel> {
+
+        BM25WeighterModelReader() {
+            super(BM25WeighterModel.class);
+        }
+
+        @Override
+        protected BM25WeighterModel loadData(String path, String uid) throws IOException {
+            try (DataInputStream is = open(path, STATS_FILE)) {
+                long numDocuments = is.readLong();
+                double avgDocLength = is.readDouble();
+                return new BM25WeighterModel(uid, numDocuments, DocumentFrequencies.read(is), avgDocLength);
+            }
+        }
+    }
+
 }
@@ -0,0 +1,225 @@
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+package it.cnr.isti.hlt.nlp4sparkml.weighter;
+
+import it.cnr.isti.hlt.nlp4sparkml.utils.Cond;
+import it.cnr.isti.hlt.nlp4sparkml.utils.RowUtils;
+import org.apache.spark.sql.DataFrame;
+import org.apache.spark.sql.Row;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * The statistics of a set of documents needed by the weighters: the number of documents, the total number of
+ * features occurrences and the number of distinct documents where each feature appears. The statistics are
+ * computed with a single aggregation over the input column. The document frequencies are accumulated sparsely,
+ * so their size depends on the number of distinct features and not on the range of the IDs (e.g. the IDs of
+ * {@link it.cnr.isti.hlt.nlp4sparkml.indexer.HashingIdentifierModel}): the features of the added documents are
+ * appended to a buffer which, when full, is sorted and merged into two parallel arrays sorted by feature ID.
+ *
+ * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ */
+class CorpusStatistics implements Serializable {
+
+    /**
+     * The minimum capacity of the buffer of the pending features.
+     */
+    private static final int MIN_PENDING_CAPACITY = 4096;
+
+    private static final long[] EMPTY = new long[0];
+
+    private long numDocuments;
+    private long totalLength;
+
+    /**
+     * The features IDs, sorted and without duplicates, and the number of distinct documents of each feature.
+     */
+    private long[] features = EMPTY;
+    private long[] featuresDictintDocuments = EMPTY;
+
+    /**
+     * The features of the added documents not yet merged in the sorted arrays, each one once per document.
+     */
+    private long[] pending = EMPTY;
+    private int numPending;
+
+    /**
+     * Compute the statistics of the documents contained in the specified DataFrame.
+     *
+     * @param dataset  The dataset.
+     * @param inputCol The column containing the features occurrences, in the format of
+     *                 {@link it.cnr.isti.hlt.nlp4sparkml.indexer.OccurrencesCounter}.
+     * @return The statistics.
+     */
+    static CorpusStatistics compute(DataFrame dataset, String inputCol) {
+        Cond.requireNotNull(dataset, "dataset");
+        Cond.requireNotNull(inputCol, "inputCol");
+        return dataset.select(inputCol).toJavaRDD().mapPartitions(rows -> {
+            CorpusStatistics stats = new CorpusStatistics();
+            while (rows.hasNext()) {
+                Row occurrencesField = rows.next().getStruct(0);
+                stats.add(RowUtils.getLongArray(occurrencesField, 0), RowUtils.getLongArray(occurrencesField, 1));
+            }
+            // Only the sorted arrays are sent to the driver.
+            stats.flush();
+            return Collections.singletonList(stats);
+        }).treeReduce(CorpusStatistics::merge);
+    }
+
+    /**
+     * Add a document to the statistics.
+     *
+     * @param features    The features of the document. The array is sorted in place.
+     * @param occurrences The number of occurrences of each feature.
+     * @return This object.
+     */
+    CorpusStatistics add(long[] features, long[] occurrences) {
+        numDocuments++;
+        for (long numOcc : occurrences)
+            totalLength += Math.abs(numOcc);
+        Arrays.sort(features);
+        for (int i = 0; i < features.length; i++) {
+            if (i > 0 && features[i] == features[i - 1])
+                continue;
+            Cond.require(features[i] >= 0, "The feature ID " + features[i] + " is negative");
+            if (numPending == pending.length) {
+                if (numPending >= Math.max(MIN_PENDING_CAPACITY, this.features.length))
+                    compact();
+                else
+                    pending = Arrays.copyOf(pending, Math.max(MIN_PENDING_CAPACITY, Math.min(pending.length * 2, Integer.MAX_VALUE - 8)));
+            }
+            pending[numPending++] = features[i];
+        }
+        return this;
+    }
+
+    /**
+     * Merge the specified statistics with these statistics.
+     *
+     * @param other The other statistics.
+     * @return The merged statistics (this object).
+     */
+    CorpusStatistics merge(CorpusStatistics other) {
+        flush();
+        other.flush();
+        numDocuments += other.numDocuments;
+        totalLength += other.totalLength;
+        mergeSorted(other.features, other.featuresDictintDocuments, other.features.length);
+        return this;
+    }
+
+    /**
+     * Merge the pending features in the sorted arrays and release the buffer.
+     */
+    private void flush() {
+        compact();
+        pending = EMPTY;
+    }
+
+    /**
+     * Merge the pending features in the sorted arrays, keeping the buffer.
+     */
+    private void compact() {
+        if (numPending == 0)
+            return;
+        Arrays.sort(pending, 0, numPending);
+        // Count in place the runs of equal IDs of the sorted buffer.
+        long[] runCounts = new long[numPending];
+        int numRuns = 0;
+        for (int i = 0; i < numPending; i++) {
+            if (numRuns > 0 && pending[numRuns - 1] == pending[i]) {
+                runCounts[numRuns - 1]++;
+            } else {
+                pending[numRuns] = pending[i];
+                runCounts[numRuns++] = 1;
+            }
+        }
+        numPending = 0;
+        mergeSorted(pending, runCounts, numRuns);
+    }
+
+    /**
+     * Merge the specified sorted features and counts in the sorted arrays.
+     *
+     * @param otherFeatures The features IDs, sorted and without duplicates.
+     * @param otherCounts   The number of distinct documents of each feature.
+     * @param size          The number of features to merge.
+     */
+    private void mergeSorted(long[] otherFeatures, long[] otherCounts, int size) {
+        if (size == 0)
+            return;
+        int n1 = features.length;
+        long[] mergedFeatures = new long[n1 + size];
+        long[] mergedCounts = new long[n1 + size];
+        int i = 0, j = 0, k = 0;
+        while (i < n1 || j < size) {
+            if (j == size || (i < n1 && features[i] < otherFeatures[j])) {
+                mergedFeatures[k] = features[i];
+                mergedCounts[k++] = featuresDictintDocuments[i++];
+            } else if (i == n1 || otherFeatures[j] < features[i]) {
+                mergedFeatures[k] = otherFeatures[j];
+                mergedCounts[k++] = otherCounts[j++];
+            } else {
+                mergedFeatures[k] = features[i];
+                mergedCounts[k++] = featuresDictintDocuments[i++] + otherCounts[j++];
+            }
+        }
+        features = k == mergedFeatures.length ? mergedFeatures : Arrays.copyOf(mergedFeatures, k);
+        featuresDictintDocuments = k == mergedCounts.length ? mergedCounts : Arrays.copyOf(mergedCounts, k);
+    }
+
+    long getNumDocuments() {
+        return numDocuments;
+    }
+
+    double getAvgDocLength() {
+        return numDocuments == 0 ? 0 : totalLength / (double) numDocuments;
+    }
+
+    DocumentFrequencies getDocumentFrequencies() {
+        compact();
+        return DocumentFrequencies.create(features, featuresDictintDocuments);
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+package it.cnr.isti.hlt.nlp4sparkml.weighter;
+
+import it.cnr.isti.hlt.nlp4sparkml.utils.Cond;
+import it.cnr.isti.hlt.nlp4sparkml.utils.SortUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * The number of distinct documents where each feature appears, stored in primitive arrays. When the features
+ * IDs are dense (the usual case for the IDs assigned by {@link it.cnr.isti.hlt.nlp4sparkml.indexer.IdentifierGenerator})
+ * the frequencies are kept in an array indexed by feature ID, otherwise in two parallel arrays sorted by feature
+ * ID and looked up with a binary search. In both cases a lookup does not box the feature ID.
+ * <br/><br/>
+ * The object is immutable and thread-safe.
+ *
+ * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ */
+public class DocumentFrequencies implements Serializable {
+
+    /**
+     * The maximum ratio between the size of the dense array and the number of features for which the
+     * dense layout is used.
+     */
+    private static final int MAX_DENSE_RATIO = 4;
+
+    private final int size;
+    private final long[] dense;
+    private final long[] sortedFeatures;
+    private final long[] sortedFrequencies;
+
+    private DocumentFrequencies(int size, long[] dense, long[] sortedFeatures, long[] sortedFrequencies) {
+        this.size = size;
+        this.dense = dense;
+        this.sortedFeatures = sortedFeatures;
+        this.sortedFrequencies = sortedFrequencies;
+    }
+
+    /**
+     * Create the document frequencies from the specified parallel arrays.
+     *
+     * @param features    The features IDs, without duplicates. Each ID must be greater than or equal to 0.
+     * @param frequencies The number of distinct documents of each feature, greater than 0.
+     * @return The document frequencies.
+     */
+    public static DocumentFrequencies create(long[] features, long[] frequencies) {
+        Cond.requireNotNull(features, "features");
+        Cond.requireNotNull(frequencies, "frequencies");
+        Cond.require(features.length == frequencies.length, "The number of features and frequencies are different");
+        long maxID = -1;
+        for (int i = 0; i < features.length; i++) {
+            Cond.require(features[i] >= 0, "The feature ID " + features[i] + " is negative");
+            Cond.require(frequencies[i] > 0, "The frequency of feature " + features[i] + " is not greater than 0");
+            maxID = Math.max(maxID, features[i]);
+        }
+        if (maxID < (long) MAX_DENSE_RATIO * Math.max(features.length, 16) && maxID < Integer.MAX_VALUE - 8) {
+            long[] dense = new long[(int) (maxID + 1)];
+            for (int i = 0; i < features.length; i++) {
+                Cond.require(dense[(int) features[i]] == 0, "The feature ID " + features[i] + " is duplicated");
+                dense[(int) features[i]] = frequencies[i];
+            }
+            return new DocumentFrequencies(features.length, dense, null, null);
+        }
+
+        long[] sortedFeatures = features.clone();
+        long[] sortedFrequencies = frequencies.clone();
+        SortUtils.sortByKey(sortedFeatures, sortedFrequencies);
+        for (int i = 1; i < sortedFeatures.length; i++)
+            Cond.require(sortedFeatures[i - 1] != sortedFeatures[i], "The feature ID " + sortedFeatures[i] + " is duplicated");
+        return new DocumentFrequencies(features.length, null, sortedFeatures, sortedFrequencies);
+    }
+
+    /**
+     * Create the document frequencies from the specified map.
+     *
+     * @param featuresDictintDocuments The number of distinct documents of each feature.
+     * @return The document frequencies.
+     */
+    public static DocumentFrequencies create(Map<Long, Long> featuresDictintDocuments) {
+        Cond.requireNotNull(featuresDictintDocuments, "featuresDictintDocuments");
+        long[] features = new long[featuresDictintDocuments.size()];
+        long[] frequencies = new long[features.length];
+        int i = 0;
+        for (Map.Entry<Long, Long> entry : featuresDictintDocuments.entrySet()) {
+            features[i] = entry.getKey();
+            frequencies[i] = entry.getValue();
+            i++;
+        }
+        return create(features, frequencies);
+    }
+
+    /**
+     * Get the number of features having a document frequency.
+     *
+     * @return The number of features.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the number of distinct documents where the specified feature appears.
+     *
+     * @param featureID The feature ID.
+     * @return The number of distinct documents or 0 if the feature is unknown.
+     */
+    public long get(long featureID) {
+        if (dense != null)
+            return featureID >= 0 && featureID < dense.length ? dense[(int) featureID] : 0;
+        int idx = Arrays.binarySearch(sortedFeatures, featureID);
+        return idx >= 0 ? sortedFrequencies[idx] : 0;
+    }
+
+    /**
+     * Get the IDs of the features having a document frequency, sorted by ascending ID.
+     *
+     * @return The features IDs, in a new array.
+     */
+    public long[] getFeatures() {
+        if (dense == null)
+            return sortedFeatures.clone();
+        long[] features = new long[size];
+        int idx = 0;
+        for (int i = 0; i < dense.length; i++) {
+            if (dense[i] != 0)
+                features[idx++] = i;
+        }
+        return features;
+    }
+
+    /**
+     * Get the document frequencies of the features, in the same order of {@link #getFeatures()}.
+     *
+     * @return The document frequencies, in a new array.
+     */
+    public long[] getFrequencies() {
+        if (dense == null)
+            return sortedFrequencies.clone();
+        long[] frequencies = new long[size];
+        int idx = 0;
+        for (long df : dense) {
+            if (df != 0)
+                frequencies[idx++] = df;
+        }
+        return frequencies;
+    }
+
+    /**
+     * Write the document frequencies in a compact binary format: the number of features followed by the pairs
+     * (feature ID, number of documents).
+     *
+     * @param out The output where to write the data.
+     * @throws IOException Raised if some error occurs while writing.
+     */
+    public void write(DataOutput out) throws IOException {
+        Cond.requireNotNull(out, "out");
+        out.writeInt(size);
+        if (dense != null) {
+            for (int i = 0; i < dense.length; i++) {
+                if (dense[i] == 0)
+                    continue;
+                out.writeLong(i);
+                out.writeLong(dense[i]);
+            }
+        } else {
+            for (int i = 0; i < sortedFeatures.length; i++) {
+                out.writeLong(sortedFeatures[i]);
+                out.writeLong(sortedFrequencies[i]);
+            }
+        }
+    }
+
+    /**
+     * Read the document frequencies written with {@link #write(DataOutput)}.
+     *
+     * @param in The input from where to read the data.
+     * @return The document frequencies.
+     * @throws IOException Raised if some error occurs while reading.
+     */
+    public static DocumentFrequencies read(DataInput in) throws IOException {
+        Cond.requireNotNull(in, "in");
+        int size = in.readInt();
+        long[] features = new long[size];
+        long[] frequencies = new long[size];
+        for (int i = 0; i < size; i++) {
+            features[i] = in.readLong();
+            frequencies[i] = in.readLong();
+        }
+        return create(features, frequencies);
+    }
+}
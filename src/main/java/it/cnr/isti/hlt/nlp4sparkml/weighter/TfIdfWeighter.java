@@ -42,16 +42,9 @@
 
 package it.cnr.isti.hlt.nlp4sparkml.weighter;
 
-import it.cnr.isti.hlt.nlp4sparkml.indexer.OccurencesCounterHelper;
 import it.cnr.isti.hlt.nlp4sparkml.utils.UnaryEstimator;
-import org.apache.spark.api.java.JavaRDD;
 import org.apache.spark.sql.DataFrame;
-import org.apache.spark.sql.Row;
 import org.apache.spark.sql.types.StructType;
-import org.apache.spark.storage.StorageLevel;
-import scala.Tuple2;
-
-import java.util.*;
 
 /**
  * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
@@ -60,29 +53,8 @@ public class TfIdfWeighter extends UnaryEstimator<TfIdfWeighterModel> {
 
     @Override
     public TfIdfWeighterModel fit(DataFrame dataset) {
-        String inputCol = getInputCol();
-        JavaRDD<Row> ds = dataset.toJavaRDD().persist(StorageLevel.MEMORY_AND_DISK());
-        long numDocuments = ds.count();
-        Map<Long, Long> featuresDictintDocuments = computeDistinctDocuments(ds, inputCol);
-        return new TfIdfWeighterModel(numDocuments, featuresDictintDocuments);
-    }
-
-    private Map<Long, Long> computeDistinctDocuments(JavaRDD<Row> ds, String inputCol) {
-        return ds.flatMapToPair(row -> {
-            List<Long> features = OccurencesCounterHelper.getHelper(row, inputCol).getFeatures();
-            HashMap<Long, Long> distinctFeats = new HashMap<Long, Long>();
-            for (long featID : features) {
-                if (distinctFeats.containsKey(featID))
-                    continue;
-                distinctFeats.put(featID, featID);
-            }
-            ArrayList<Tuple2<Long, Long>> ret = new ArrayList<Tuple2<Long, Long>>();
-            Iterator<Long> keys = distinctFeats.keySet().iterator();
-            while (keys.hasNext()) {
-                ret.add(new Tuple2<Long, Long>(keys.next(), 1l));
-            }
-            return ret;
-        }).reduceByKey((v1, v2) -> v1 + v2).collectAsMap();
+        CorpusStatistics stats = CorpusStatistics.compute(dataset, getInputCol());
+        return new TfIdfWeighterModel(stats.getNumDocuments(), stats.getDocumentFrequencies());
     }
 
     @Override
@@ -42,18 +42,22 @@
 
 package it.cnr.isti.hlt.nlp4sparkml.weighter;
 
-import it.cnr.isti.hlt.nlp4sparkml.data.DataUtils;
-import it.cnr.isti.hlt.nlp4sparkml.indexer.OccurencesCounterHelper;
 import it.cnr.isti.hlt.nlp4sparkml.utils.Cond;
-import org.apache.spark.api.java.JavaRDD;
+import it.cnr.isti.hlt.nlp4sparkml.utils.JavaMLReader;
+import it.cnr.isti.hlt.nlp4sparkml.utils.JavaMLWriter;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.broadcast.Broadcast;
+import org.apache.spark.ml.util.MLReader;
+import org.apache.spark.ml.util.MLWritable;
+import org.apache.spark.ml.util.MLWriter;
 import org.apache.spark.sql.DataFrame;
 import org.apache.spark.sql.Row;
-import org.apache.spark.sql.RowFactory;
-import org.apache.spark.sql.types.StructType;
-import org.apache.spark.storage.StorageLevel;
-import scala.Tuple2;
+import org.apache.spark.sql.api.java.UDF1;
 
-import java.util.*;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Map;
 
 /**
  * A transformer computing TF-IDF weights for document features.
@@ -65,68 +69,69 @@ import java.util.*;
  *
  * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
  */
-public class TfIdfWeighterModel extends AbstractStandardWeighter<TfIdfWeighterModel> {
+public class TfIdfWeighterModel extends AbstractStandardWeighter<TfIdfWeighterModel> implements MLWritable {
+
+    private static final String STATS_FILE = JavaMLWriter.DATA_DIR + "/stats.bin";
 
     private final long numDocuments;
-    private final HashMap<Long, Long> featuresDictintDocuments;
+    private final DocumentFrequencies documentFrequencies;
 
     public TfIdfWeighterModel(long numDocuments, Map<Long, Long> featuresDictintDocuments) {
+        this(numDocuments, DocumentFrequencies.create(featuresDictintDocuments));
+    }
+
+    /**
+     * Create a model with the specified statistics.
+     *
+     * @param numDocuments        The number of documents used to fit the model.
+     * @param documentFrequencies The number of distinct documents where each feature appears.
+     */
+    public TfIdfWeighterModel(long numDocuments, DocumentFrequencies documentFrequencies) {
+        this(null, numDocuments, documentFrequencies);
+    }
+
+    private TfIdfWeighterModel(String uid, long numDocuments, DocumentFrequencies documentFrequencies) {
+        super(uid);
         Cond.require(numDocuments > 0, "The number of documents must be greater than 0");
-        Cond.requireNotNull(featuresDictintDocuments, "featuresDictintDocuments");
+        Cond.requireNotNull(documentFrequencies, "documentFrequencies");
         this.numDocuments = numDocuments;
-        this.featuresDictintDocuments = new HashMap<>();
-        this.featuresDictintDocuments.putAll(featuresDictintDocuments);
+        this.documentFrequencies = documentFrequencies;
     }
 
 
     @Override
-    public DataFrame transform(DataFrame dataset) {
-        String inputCol = getInputCol();
-        StructType newSchema = transformSchema(dataset.schema());
-        JavaRDD<Row> ds = dataset.toJavaRDD().persist(StorageLevel.MEMORY_AND_DISK());
-        JavaRDD<Row> computed = ds.map(row -> {
-            Object[] fields = DataUtils.copyValuesFromRow(row, 1);
-            OccurencesCounterHelper helper = OccurencesCounterHelper.getHelper(row, inputCol);
-            List<Long> features = helper.getFeatures();
-            List<Long> occurrences = helper.getOccurrences();
-            double normalization = 0;
-            HashMap<Long, Double> weights = new HashMap<Long, Double>();
-            for (int i = 0; i < features.size(); i++) {
-                long featureID = features.get(i);
-                long numOcc = occurrences.get(i);
-                long featureNumDistinctDocs = featuresDictintDocuments.get(featureID);
-                double score = computeTfIdf(numOcc, numDocuments, featureNumDistinctDocs);
-                normalization += (score * score);
-                weights.put(featureID, score);
-            }
-            normalization = Math.sqrt(normalization);
-            for (int i = 0; i < features.size(); i++) {
-                long featureID = features.get(i);
-                double score = weights.get(featureID);
-                weights.put(featureID, score / normalization);
-            }
+    protected UDF1<Row, Row> createColumnFunction(DataFrame dataset) {
+        // The statistics are sent once to each executor instead of with every task.
+        JavaSparkContext sc = new JavaSparkContext(dataset.sqlContext().sparkContext());
+        Broadcast<DocumentFrequencies> bcFrequencies = sc.broadcast(documentFrequencies);
+        long numDocuments = this.numDocuments;
+        return createWeightsFunction((features, occurrences) ->
+                computeWeights(features, occurrences, numDocuments, bcFrequencies.value()));
+    }
 
 
-            ArrayList<Long> featsOut = new ArrayList<>();
-            ArrayList<Double> weightsOut = new ArrayList<Double>();
-            Iterator<Long> keys = weights.keySet().iterator();
-            while (keys.hasNext()) {
-                long feature = keys.next();
-                double weight = weights.get(feature);
-                featsOut.add(feature);
-                weightsOut.add(weight);
-            }
-            Row r = RowFactory.create(featsOut.toArray(new Long[0]), weightsOut.toArray(new Double[0]));
-            fields[fields.length - 1] = r;
-            return RowFactory.create(fields);
-        });
-
-        return dataset.sqlContext().createDataFrame(computed, newSchema);
+    @Override
+    public double[] computeWeights(long[] features, long[] occurrences) {
+        return computeWeights(features, occurrences, numDocuments, documentFrequencies);
     }
 
+    private static double[] computeWeights(long[] features, long[] occurrences, long numDocuments, DocumentFrequencies documentFrequencies) {
+        Cond.requireNotNull(features, "features");
+        Cond.requireNotNull(occurrences, "occurrences");
+        Cond.require(features.length == occurrences.length, "The number of features and occurrences are different");
+        double[] weights = new double[features.length];
+        for (int i = 0; i < features.length; i++) {
+            long featureNumDistinctDocs = documentFrequencies.get(features[i]);
+            // A signed count (see OccurrencesCounter#getSignsCol()) gives its sign to the weight.
+            if (featureNumDistinctDocs != 0 && occurrences[i] != 0)
+                weights[i] = Long.signum(occurrences[i]) * computeTfIdf(Math.abs(occurrences[i]), numDocuments, featureNumDistinctDocs);
+        }
+        normalizeWeights(weights);
+        return weights;
+    }
 
-    protected double computeTfIdf(long numOccurrencesInsideDoc,
-                                  long numTotalDocuments, long featureFrequency) {
+    protected static double computeTfIdf(long numOccurrencesInsideDoc,
+                                         long numTotalDocuments, long featureFrequency) {
         double tfidf = 0;
 
         double tmp1 = ((double) numTotalDocuments)
@@ -137,4 +142,53 @@ public class TfIdfWeighterModel extends AbstractStandardWeighter<TfIdfWeighterMo
         return tfidf;
     }
 
+    @Override
+    public MLWriter write() {
+        return new TfIdfWeighterModelWriter(this);
+    }
+
+    @Override
+    public void save(String path) throws IOException {
+        write().save(path);
+    }
+
+    public static MLReader<TfIdfWeighterModel> read() {
+        return new TfIdfWeighterModelReader();
+    }
+
+    public static TfIdfWeighterModel load(String path) {
+        return read().load(path);
+    }
+
+
+    private static class TfIdfWeighterModelWriter extends JavaMLWriter<TfIdfWeighterModel> {
+
+        TfIdfWeighterModelWriter(TfIdfWeighterModel instance) {
+            super(instance);
+        }
+
+        @Override
+        protected void saveData(String path) throws IOException {
+            try (DataOutputStream os = create(path, STATS_FILE)) {
+                os.writeLong(getInstance().numDocuments);
+                getInstance().documentFrequencies.write(os);
+            }
+        }
+    }
+
+    private static class TfIdfWeighterModelReader extends JavaMLReader<TfIdfWeighterModel> {
+
+        TfIdfWeighterModelReader() {
+            super(TfIdfWeighterModel.class);
+        }
+
+        @Override
+        protected TfIdfWeighterModel loadData(String path, String uid) throws IOException {
+            try (DataInputStream is = open(path, STATS_FILE)) {
+                long numDocuments = is.readLong();
+                return new TfIdfWeighterModel(uid, numDocuments, DocumentFrequencies.read(is));
+            }
+        }
+    }
+
 }
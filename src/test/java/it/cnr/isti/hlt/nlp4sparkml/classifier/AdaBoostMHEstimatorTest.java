@@ -43,6 +43,36 @@
 package it.cnr.isti.hlt.nlp4sparkml.classifier;
 
 import it.cnr.isti.hlt.nlp4sparkml.classifier.boosting.AdaBoostMHEstimator;
+import it.cnr.isti.hlt.nlp4sparkml.classifier.boosting.BoostClassifier;
+import it.cnr.isti.hlt.nlp4sparkml.classifier.boosting.BoostClassifierModel;
+import it.cnr.isti.hlt.nlp4sparkml.classifier.boosting.PrefixModelEvaluator;
+import it.cnr.isti.hlt.nlp4sparkml.classifier.boosting.QuantizationReport;
+import it.cnr.isti.hlt.nlp4sparkml.classifier.boosting.QuantizedBoostClassifier;
+import it.cnr.isti.hlt.nlp4sparkml.classifier.boosting.ThresholdTuner;
+import it.cnr.isti.hlt.nlp4sparkml.classifier.boosting.WeakHypothesis;
+import it.cnr.isti.hlt.nlp4sparkml.data.ContingencyTable;
+import it.cnr.isti.hlt.nlp4sparkml.data.DataUtils;
+import it.cnr.isti.hlt.nlp4sparkml.data.MultilabelPoint;
+import it.cnr.isti.hlt.nlp4sparkml.data.PointClassificationResults;
+import it.cnr.isti.hlt.nlp4sparkml.utils.KryoUtils;
+import it.cnr.isti.hlt.nlp4sparkml.utils.Logging;
+import junit.framework.Assert;
+import org.apache.spark.SparkConf;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.serializer.KryoSerializer;
+import org.apache.spark.serializer.SerializerInstance;
+import org.apache.spark.sql.DataFrame;
+import org.apache.spark.sql.Row;
+import org.junit.Test;
+import scala.reflect.ClassTag$;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
 
 /**
  * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
@@ -54,4 +84,280 @@ public class AdaBoostMHEstimatorTest extends MultilabelClassifierTest {
         estimator.setNumIterations(5);
         return estimator;
     }
+
+    @Test
+    public void saveLoadTest() throws IOException {
+        Logging.disableSparkLogging();
+        Logging.disableNLP4SparkMLLogging();
+
+        SparkConf conf = new SparkConf();
+        JavaSparkContext sc = new JavaSparkContext("local", "test", conf);
+
+        try {
+            DataFrame df = loadInitialData(sc);
+            AdaBoostMHEstimator estimator = (AdaBoostMHEstimator) createMultilabelEstimator();
+            estimator.setInputCol("trainingData");
+            BoostClassifierModel model = estimator.fit(df);
+            model.setInputCol("trainingData").setOutputCol("results");
+            String modelPath = Files.createTempDirectory("nlp4sparkml").resolve("model").toString();
+            model.save(modelPath);
+
+            BoostClassifierModel loadedModel = BoostClassifierModel.load(modelPath);
+            Assert.assertEquals(model.uid(), loadedModel.uid());
+            Assert.assertEquals(model.getNumFeatures(), loadedModel.getNumFeatures());
+            Assert.assertEquals("trainingData", loadedModel.getInputCol());
+            Row[] expected = model.transform(df).select("results").collect();
+            Row[] loaded = loadedModel.transform(df).select("results").collect();
+            Assert.assertEquals(expected.length, loaded.length);
+            for (int i = 0; i < expected.length; i++) {
+                PointClassificationResults r1 = DataUtils.toPointClassificationResults(expected[i], "results");
+                PointClassificationResults r2 = DataUtils.toPointClassificationResults(loaded[i], "results");
+                Assert.assertEquals(r1.getPointID(), r2.getPointID());
+                Assert.assertTrue(Arrays.equals(r1.getScores(), r2.getScores()));
+            }
+        } finally {
+            if (sc != null)
+                sc.stop();
+        }
+    }
+
+    @Test
+    public void quantizationTest() {
+        Logging.disableSparkLogging();
+        Logging.disableNLP4SparkMLLogging();
+
+        SparkConf conf = new SparkConf();
+        JavaSparkContext sc = new JavaSparkContext("local", "test", conf);
+
+        try {
+            DataFrame df = loadInitialData(sc);
+            AdaBoostMHEstimator estimator = (AdaBoostMHEstimator) createMultilabelEstimator();
+            estimator.setInputCol("trainingData");
+            BoostClassifierModel model = estimator.fit(df);
+            model.setInputCol("trainingData").setOutputCol("results");
+            DataFrame fullPrecision = model.transform(df);
+            Row[] expected = fullPrecision.select("results").collect();
+
+            for (int bits : new int[]{8, 16}) {
+                model.setQuantizationBits(bits);
+                QuantizedBoostClassifier qbc = QuantizedBoostClassifier.quantize(model.getClassifier(), bits);
+                double maxScale = 0;
+                for (int labelID = 0; labelID < qbc.getNumLabels(); labelID++)
+                    maxScale = Math.max(maxScale, qbc.getScale(labelID));
+                double maxAllowedDeviation = model.getClassifier().getWeakHypotheses().length * maxScale / 2 + 1e-9;
+
+                QuantizationReport report = model.evaluateQuantization(df);
+                Assert.assertEquals(df.count(), report.getNumPoints());
+                Assert.assertTrue(report.getMaxScoreDeviation() <= maxAllowedDeviation);
+                Assert.assertTrue(report.getRankingAgreement() >= 0 && report.getRankingAgreement() <= 1);
+
+                Row[] quantized = model.transform(df).select("results").collect();
+                Assert.assertEquals(expected.length, quantized.length);
+                for (int i = 0; i < expected.length; i++) {
+                    double[] s1 = DataUtils.toPointClassificationResults(expected[i], "results").getScores();
+                    double[] s2 = DataUtils.toPointClassificationResults(quantized[i], "results").getScores();
+                    for (int labelID = 0; labelID < s1.length; labelID++)
+                        Assert.assertTrue(Math.abs(s1[labelID] - s2[labelID]) <= maxAllowedDeviation);
+                }
+            }
+
+            // A DataFrame already returned must not be affected by a later change of the quantization.
+            Row[] again = fullPrecision.select("results").collect();
+            for (int i = 0; i < expected.length; i++)
+                Assert.assertTrue(Arrays.equals(DataUtils.toPointClassificationResults(expected[i], "results").getScores(),
+                        DataUtils.toPointClassificationResults(again[i], "results").getScores()));
+        } finally {
+            if (sc != null)
+                sc.stop();
+        }
+    }
+
+    @Test
+    public void compactTest() {
+        Logging.disableSparkLogging();
+        Logging.disableNLP4SparkMLLogging();
+
+        SparkConf conf = new SparkConf();
+        JavaSparkContext sc = new JavaSparkContext("local", "test", conf);
+
+        try {
+            DataFrame df = loadInitialData(sc);
+            AdaBoostMHEstimator estimator = new AdaBoostMHEstimator();
+            estimator.setNumIterations(30);
+            estimator.setInputCol("trainingData");
+            BoostClassifierModel model = estimator.fit(df);
+            model.setInputCol("trainingData");
+            BoostClassifierModel compacted = model.compact();
+            Assert.assertEquals("trainingData", compacted.getInputCol());
+            Assert.assertTrue(compacted.getClassifier().getWeakHypotheses().length <= 15);
+
+            Row[] rows = df.collect();
+            for (Row row : rows) {
+                MultilabelPoint pt = DataUtils.toMultilabelPoint(row, "trainingData", model.getNumFeatures());
+                double[] s1 = model.getClassifier().classify(pt).getScores();
+                double[] s2 = compacted.getClassifier().classify(pt).getScores();
+                for (int labelID = 0; labelID < s1.length; labelID++)
+                    Assert.assertEquals(s1[labelID], s2[labelID], 1e-9);
+            }
+        } finally {
+            if (sc != null)
+                sc.stop();
+        }
+    }
+
+    @Test
+    public void emptyClassifierTest() {
+        BoostClassifier empty = new BoostClassifier(new WeakHypothesis[0]);
+        Assert.assertEquals(0, empty.getNumLabels());
+        BoostClassifier compacted = empty.compact();
+        Assert.assertEquals(0, compacted.getWeakHypotheses().length);
+        Assert.assertEquals(0, compacted.getNumLabels());
+        PointClassificationResults res = empty.classify(new MultilabelPoint(0, 10, new int[]{3}, new double[]{1}, new int[0]));
+        Assert.assertEquals(0, res.getScores().length);
+    }
+
+    @Test
+    public void prefixEvaluationTest() {
+        Logging.disableSparkLogging();
+        Logging.disableNLP4SparkMLLogging();
+
+        SparkConf conf = new SparkConf();
+        JavaSparkContext sc = new JavaSparkContext("local", "test", conf);
+
+        try {
+            DataFrame df = loadInitialData(sc);
+            AdaBoostMHEstimator estimator = new AdaBoostMHEstimator();
+            estimator.setNumIterations(10);
+            estimator.setInputCol("trainingData");
+            BoostClassifierModel model = estimator.fit(df);
+            model.setInputCol("trainingData");
+
+            int[] checkpoints = new int[]{1, 5, 10};
+            ContingencyTable[] tables = new PrefixModelEvaluator(checkpoints).evaluate(model, df);
+            Assert.assertEquals(checkpoints.length, tables.length);
+
+            Row[] rows = df.collect();
+            for (int i = 0; i < checkpoints.length; i++) {
+                BoostClassifier prefix = new BoostClassifier(Arrays.copyOf(model.getClassifier().getWeakHypotheses(), checkpoints[i]));
+                int tp = 0, tn = 0, fp = 0, fn = 0;
+                for (Row row : rows) {
+                    MultilabelPoint pt = DataUtils.toMultilabelPoint(row, "trainingData", model.getNumFeatures());
+                    double[] scores = prefix.classify(pt).getScores();
+                    for (int labelID = 0; labelID < scores.length; labelID++) {
+                        final int label = labelID;
+                        boolean gold = Arrays.stream(pt.getLabels()).anyMatch(l -> l == label);
+                        if (scores[labelID] > 0 && gold) tp++;
+                        else if (scores[labelID] > 0) fp++;
+                        else if (gold) fn++;
+                        else tn++;
+                    }
+                }
+                Assert.assertEquals(tp, tables[i].tp());
+                Assert.assertEquals(tn, tables[i].tn());
+                Assert.assertEquals(fp, tables[i].fp());
+                Assert.assertEquals(fn, tables[i].fn());
+            }
+        } finally {
+            if (sc != null)
+                sc.stop();
+        }
+    }
+
+    @Test
+    public void thresholdTuningTest() throws IOException {
+        Logging.disableSparkLogging();
+        Logging.disableNLP4SparkMLLogging();
+
+        SparkConf conf = new SparkConf();
+        JavaSparkContext sc = new JavaSparkContext("local", "test", conf);
+
+        try {
+            DataFrame df = loadInitialData(sc);
+            AdaBoostMHEstimator estimator = (AdaBoostMHEstimator) createMultilabelEstimator();
+            estimator.setInputCol("trainingData");
+            BoostClassifierModel model = estimator.fit(df);
+            model.setInputCol("trainingData").setOutputCol("results");
+            MultilabelEvaluator evaluator = new MultilabelEvaluator().setGoldCol("trainingData").setResultsCol("results");
+            MultilabelEvaluation before = evaluator.computeEvaluation(model.transform(df));
+
+            BoostClassifierModel tuned = new ThresholdTuner().tune(model, df);
+            double[] thresholds = tuned.getClassifier().getPositiveThresholds();
+            Assert.assertEquals(model.getClassifier().getNumLabels(), thresholds.length);
+            Assert.assertTrue(Arrays.equals(new double[thresholds.length], model.getClassifier().getPositiveThresholds()));
+            Assert.assertEquals(model.getInputCol(), tuned.getInputCol());
+            DataFrame dfResults = tuned.transform(df);
+            for (Row row : dfResults.select("results").collect())
+                Assert.assertTrue(Arrays.equals(thresholds, DataUtils.toPointClassificationResults(row, "results").getPositiveThresholds()));
+            MultilabelEvaluation after = evaluator.computeEvaluation(dfResults);
+            for (int labelID = 0; labelID < thresholds.length; labelID++)
+                Assert.assertTrue(after.getLabelTable(labelID).f1() >= before.getLabelTable(labelID).f1());
+
+            String modelPath = Files.createTempDirectory("nlp4sparkml").resolve("model").toString();
+            tuned.save(modelPath);
+            Assert.assertTrue(Arrays.equals(thresholds, BoostClassifierModel.load(modelPath).getClassifier().getPositiveThresholds()));
+
+            // The first version of the format has no header and no thresholds.
+            BoostClassifier bc = model.getClassifier();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(bc.getWeakHypotheses().length);
+            out.writeInt(bc.getNumLabels());
+            for (WeakHypothesis wh : bc.getWeakHypotheses()) {
+                for (int labelID = 0; labelID < bc.getNumLabels(); labelID++) {
+                    out.writeInt(wh.getLabelData(labelID).getFeatureID());
+                    out.writeDouble(wh.getLabelData(labelID).getC0());
+                    out.writeDouble(wh.getLabelData(labelID).getC1());
+                }
+            }
+            BoostClassifier legacy = BoostClassifier.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+            Assert.assertEquals(bc.getWeakHypotheses().length, legacy.getWeakHypotheses().length);
+            Assert.assertTrue(Arrays.equals(new double[bc.getNumLabels()], legacy.getPositiveThresholds()));
+        } finally {
+            if (sc != null)
+                sc.stop();
+        }
+    }
+
+    @Test
+    public void kryoTest() {
+        Logging.disableSparkLogging();
+        Logging.disableNLP4SparkMLLogging();
+
+        SparkConf conf = KryoUtils.enableKryo(new SparkConf());
+        JavaSparkContext sc = new JavaSparkContext("local", "test", conf);
+
+        try {
+            DataFrame df = loadInitialData(sc);
+            AdaBoostMHEstimator estimator = (AdaBoostMHEstimator) createMultilabelEstimator();
+            estimator.setInputCol("trainingData");
+            BoostClassifierModel model = estimator.fit(df);
+            BoostClassifier bc = model.getClassifier();
+
+            SerializerInstance ser = new KryoSerializer(conf).newInstance();
+            BoostClassifier bcCopy = ser.deserialize(ser.serialize(bc, ClassTag$.MODULE$.apply(BoostClassifier.class)),
+                    ClassTag$.MODULE$.apply(BoostClassifier.class));
+            Assert.assertEquals(bc.getWeakHypotheses().length, bcCopy.getWeakHypotheses().length);
+            QuantizedBoostClassifier[] quantized = {QuantizedBoostClassifier.quantize(bc, 8), QuantizedBoostClassifier.quantize(bc, 16)};
+            QuantizedBoostClassifier[] quantizedCopies = new QuantizedBoostClassifier[quantized.length];
+            for (int i = 0; i < quantized.length; i++)
+                quantizedCopies[i] = ser.deserialize(ser.serialize(quantized[i], ClassTag$.MODULE$.apply(QuantizedBoostClassifier.class)),
+                        ClassTag$.MODULE$.apply(QuantizedBoostClassifier.class));
+            for (Row row : df.select("trainingData").collect()) {
+                MultilabelPoint pt = DataUtils.toMultilabelPoint(row, "trainingData", model.getNumFeatures());
+                MultilabelPoint ptCopy = ser.deserialize(ser.serialize(pt, ClassTag$.MODULE$.apply(MultilabelPoint.class)),
+                        ClassTag$.MODULE$.apply(MultilabelPoint.class));
+                Assert.assertEquals(pt.getPointID(), ptCopy.getPointID());
+                Assert.assertTrue(Arrays.equals(pt.getFeatures(), ptCopy.getFeatures()));
+                Assert.assertTrue(Arrays.equals(pt.getLabels(), ptCopy.getLabels()));
+                Assert.assertTrue(Arrays.equals(bc.classify(pt).getScores(), bcCopy.classify(ptCopy).getScores()));
+                for (int i = 0; i < quantized.length; i++) {
+                    Assert.assertEquals(quantized[i].getBits(), quantizedCopies[i].getBits());
+                    Assert.assertTrue(Arrays.equals(quantized[i].classify(pt).getScores(), quantizedCopies[i].classify(ptCopy).getScores()));
+                }
+            }
+        } finally {
+            if (sc != null)
+                sc.stop();
+        }
+    }
 }
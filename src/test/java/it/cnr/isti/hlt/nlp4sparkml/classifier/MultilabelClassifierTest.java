@@ -45,6 +45,7 @@ package it.cnr.isti.hlt.nlp4sparkml.classifier;
 import it.cnr.isti.hlt.nlp4sparkml.classifier.MultilabelClassifierEstimator;
 import it.cnr.isti.hlt.nlp4sparkml.classifier.MultilabelClassifierModel;
 import it.cnr.isti.hlt.nlp4sparkml.classifier.boosting.AdaBoostMHEstimator;
+import it.cnr.isti.hlt.nlp4sparkml.data.ContingencyTable;
 import it.cnr.isti.hlt.nlp4sparkml.data.DataUtils;
 import it.cnr.isti.hlt.nlp4sparkml.data.MultilabelPoint;
 import it.cnr.isti.hlt.nlp4sparkml.data.PointClassificationResults;
@@ -66,6 +67,7 @@ import org.junit.Test;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -131,5 +133,91 @@ public abstract class MultilabelClassifierTest {
         }
     }
 
+    @Test
+    public void evaluatorTest() {
+        Logging.disableSparkLogging();
+        Logging.disableNLP4SparkMLLogging();
+
+        SparkConf conf = new SparkConf();
+        JavaSparkContext sc = new JavaSparkContext("local", "test", conf);
+
+        try {
+            DataFrame df = loadInitialData(sc);
+            MultilabelClassifierEstimator estimator = createMultilabelEstimator();
+            estimator.setInputCol("trainingData");
+            MultilabelClassifierModel model = (MultilabelClassifierModel) estimator.fit(df);
+            DataFrame dfResults = model.setInputCol("trainingData").setOutputCol("results").transform(df);
+
+            MultilabelEvaluator evaluator = new MultilabelEvaluator().setGoldCol("trainingData").setResultsCol("results");
+            MultilabelEvaluation evaluation = evaluator.computeEvaluation(dfResults);
+
+            int[] tp = new int[evaluation.getNumLabels()];
+            int[] fp = new int[evaluation.getNumLabels()];
+            int[] fn = new int[evaluation.getNumLabels()];
+            int[] tn = new int[evaluation.getNumLabels()];
+            for (Row row : dfResults.collect()) {
+                PointClassificationResults res = DataUtils.toPointClassificationResults(row, "results");
+                List<Integer> gold = row.getStruct(row.fieldIndex("trainingData")).getList(3);
+                for (int i = 0; i < res.getLabels().length; i++) {
+                    int labelID = res.getLabels()[i];
+                    boolean positive = res.getScores()[i] > res.getPositiveThresholds()[i];
+                    if (positive && gold.contains(labelID)) tp[labelID]++;
+                    else if (positive) fp[labelID]++;
+                    else if (gold.contains(labelID)) fn[labelID]++;
+                    else tn[labelID]++;
+                }
+            }
+            double sumF1 = 0;
+            for (int labelID = 0; labelID < evaluation.getNumLabels(); labelID++) {
+                ContingencyTable ct = evaluation.getLabelTable(labelID);
+                Assert.assertEquals(tp[labelID], ct.tp());
+                Assert.assertEquals(fp[labelID], ct.fp());
+                Assert.assertEquals(fn[labelID], ct.fn());
+                Assert.assertEquals(tn[labelID], ct.tn());
+                sumF1 += ct.f1();
+            }
+            Assert.assertEquals(sumF1 / evaluation.getNumLabels(), evaluator.setMetricName(MultilabelEvaluator.MACRO_F1).evaluate(dfResults), 1e-9);
+            Assert.assertEquals(evaluation.microF1(), evaluator.setMetricName(MultilabelEvaluator.MICRO_F1).evaluate(dfResults), 1e-9);
+        } finally {
+            if (sc != null)
+                sc.stop();
+        }
+    }
+
+    @Test
+    public void vectorColumnTest() {
+        Logging.disableSparkLogging();
+        Logging.disableNLP4SparkMLLogging();
+
+        SparkConf conf = new SparkConf();
+        JavaSparkContext sc = new JavaSparkContext("local", "test", conf);
+
+        try {
+            DataFrame df = loadInitialData(sc);
+            JavaRDD<Row> vectorRows = df.javaRDD().map(row ->
+                    RowFactory.create(DataUtils.fromMultilabelPointAsVector(DataUtils.toMultilabelPoint(row, "trainingData", 15))));
+            ArrayList<StructField> fields = new ArrayList<>();
+            fields.add(DataTypes.createStructField("trainingData", DataUtils.multilabelPointVectorDataType(), false));
+            DataFrame dfVector = df.sqlContext().createDataFrame(vectorRows, DataTypes.createStructType(fields));
+
+            MultilabelClassifierEstimator estimator = createMultilabelEstimator();
+            estimator.setInputCol("trainingData");
+            MultilabelClassifierModel model = (MultilabelClassifierModel) estimator.fit(df);
+            MultilabelClassifierModel vectorModel = (MultilabelClassifierModel) estimator.fit(dfVector);
+            Row[] expected = model.setInputCol("trainingData").setOutputCol("results").transform(df).select("results").collect();
+            Row[] results = vectorModel.setInputCol("trainingData").setOutputCol("results").transform(dfVector).select("results").collect();
+            Assert.assertEquals(expected.length, results.length);
+            for (int i = 0; i < expected.length; i++) {
+                PointClassificationResults r1 = DataUtils.toPointClassificationResults(expected[i], "results");
+                PointClassificationResults r2 = DataUtils.toPointClassificationResults(results[i], "results");
+                Assert.assertEquals(r1.getPointID(), r2.getPointID());
+                Assert.assertTrue(Arrays.equals(r1.getScores(), r2.getScores()));
+            }
+        } finally {
+            if (sc != null)
+                sc.stop();
+        }
+    }
+
     protected abstract MultilabelClassifierEstimator createMultilabelEstimator();
 }
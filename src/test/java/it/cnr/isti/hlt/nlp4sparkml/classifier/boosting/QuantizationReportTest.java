@@ -0,0 +1,79 @@
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+package it.cnr.isti.hlt.nlp4sparkml.classifier.boosting;
+
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ */
+public class QuantizationReportTest {
+
+    @Test
+    public void rankingAgreementTest() {
+        Random r = new Random(1);
+        for (int it = 0; it < 500; it++) {
+            int n = r.nextInt(40);
+            double[] reference = new double[n];
+            double[] quantized = new double[n];
+            for (int i = 0; i < n; i++) {
+                // Few distinct values, so that many pairs are tied.
+                reference[i] = r.nextInt(5) - 2;
+                quantized[i] = r.nextBoolean() ? reference[i] : r.nextInt(5) - 2;
+                if (quantized[i] == 0 && r.nextBoolean())
+                    quantized[i] = -0.0;
+            }
+            long expected = 0;
+            for (int i = 0; i < n; i++) {
+                for (int j = i + 1; j < n; j++) {
+                    if (Math.signum(reference[i] - reference[j]) == Math.signum(quantized[i] - quantized[j]))
+                        expected++;
+                }
+            }
+            Assert.assertEquals(expected, QuantizationReport.countAgreeingPairs(reference, quantized));
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+package it.cnr.isti.hlt.nlp4sparkml.classifier.boosting;
+
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ */
+public class ThresholdTunerTest {
+
+    @Test
+    public void histogramMergeTest() {
+        Random r = new Random(3);
+        int numBins = 16;
+        for (int it = 0; it < 200; it++) {
+            int n = 1 + r.nextInt(300);
+            double scale = Math.pow(10, r.nextInt(9) - 4);
+            double[] scores = new double[n];
+            boolean[] positive = new boolean[n];
+            ThresholdTuner.LabelHistogram[] partials = new ThresholdTuner.LabelHistogram[1 + r.nextInt(4)];
+            for (int i = 0; i < partials.length; i++)
+                partials[i] = new ThresholdTuner.LabelHistogram(numBins);
+            for (int i = 0; i < n; i++) {
+                // Each partial sees a different range, so the merged histograms have different grids.
+                int partial = r.nextInt(partials.length);
+                scores[i] = (r.nextGaussian() + partial * 3) * scale * (partial + 1);
+                positive[i] = r.nextBoolean();
+                partials[partial].add(scores[i], positive[i]);
+            }
+            ThresholdTuner.LabelHistogram merged = partials[0];
+            for (int i = 1; i < partials.length; i++)
+                merged = merged.merge(partials[i]);
+
+            Assert.assertFalse(merged.isEmpty());
+            for (int bin = 0; bin < numBins; bin++) {
+                double lower = merged.lowerBoundary(bin);
+                double upper = merged.lowerBoundary(bin + 1);
+                long expectedNegatives = 0, expectedPositives = 0;
+                for (int i = 0; i < n; i++) {
+                    if (scores[i] >= lower && scores[i] < upper) {
+                        if (positive[i])
+                            expectedPositives++;
+                        else
+                            expectedNegatives++;
+                    }
+                }
+                Assert.assertEquals(expectedNegatives, merged.getCount(bin, false));
+                Assert.assertEquals(expectedPositives, merged.getCount(bin, true));
+            }
+            long total = 0;
+            for (int bin = 0; bin < numBins; bin++)
+                total += merged.getCount(bin, false) + merged.getCount(bin, true);
+            Assert.assertEquals(n, total);
+        }
+    }
+}
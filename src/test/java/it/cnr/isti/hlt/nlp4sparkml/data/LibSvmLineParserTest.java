@@ -0,0 +1,195 @@
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+package it.cnr.isti.hlt.nlp4sparkml.data;
+
+import it.cnr.isti.hlt.nlp4sparkml.classifier.boosting.AdaBoostMHLearner;
+import it.cnr.isti.hlt.nlp4sparkml.classifier.boosting.BoostClassifier;
+import it.cnr.isti.hlt.nlp4sparkml.utils.Logging;
+import junit.framework.Assert;
+import org.apache.spark.SparkConf;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ */
+public class LibSvmLineParserTest {
+
+    @Test
+    public void parseTest() {
+        LibSvmLineParser parser = new LibSvmLineParser(false, false);
+        MultilabelPoint pt = parser.parse("3,1\t5:0.25  2:-1.5e-3 10:+7 # 11:3", 4, 20);
+        Assert.assertEquals(4, pt.getPointID());
+        Assert.assertEquals(20, pt.getNumFeatures());
+        Assert.assertEquals(2, pt.getLabels().length);
+        Assert.assertEquals(2, pt.getLabels()[0]);
+        Assert.assertEquals(0, pt.getLabels()[1]);
+        Assert.assertEquals(3, pt.getFeatures().length);
+        // The features of a point are sorted by ID.
+        Assert.assertEquals(1, pt.getFeatures()[0]);
+        Assert.assertEquals(4, pt.getFeatures()[1]);
+        Assert.assertEquals(9, pt.getFeatures()[2]);
+        Assert.assertEquals(-1.5e-3, pt.getWeights()[0]);
+        Assert.assertEquals(0.25, pt.getWeights()[1]);
+        Assert.assertEquals(7.0, pt.getWeights()[2]);
+        Assert.assertTrue(pt.hasFeature(4));
+        Assert.assertFalse(pt.hasFeature(5));
+        Assert.assertEquals(10, LibSvmLineParser.getMaxFeatureID("3,1\t5:0.25  2:-1.5e-3 10:+7 # 11:3"));
+
+        LibSvmLineParser binaryParser = new LibSvmLineParser(true, true);
+        Assert.assertEquals(1, binaryParser.parse("+1 1:1", 0, 1).getLabels().length);
+        Assert.assertEquals(0, binaryParser.parse("-1 1:1", 0, 1).getLabels().length);
+    }
+
+    @Test
+    public void numbersTest() {
+        String[] numbers = {"0", "-0", "0.0", "1", "123456789", "-2147483648", "0.1", ".5", "5.", "1e22", "1e23",
+                "1.7976931348623157E308", "4.9E-324", "123456789012345678901234567890", "0.30000000000000004",
+                "9007199254740993", "NaN", "-Infinity", "0x1p3", "2.5e-5", "1E+2"};
+        for (String n : numbers)
+            Assert.assertEquals(n, Double.doubleToLongBits(Double.parseDouble(n)),
+                    Double.doubleToLongBits(LibSvmLineParser.parseDouble(n, 0, n.length())));
+
+        Random r = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            double value = r.nextDouble() * Math.pow(10, r.nextInt(20) - 10);
+            String n = r.nextBoolean() ? Double.toString(value) : String.format(Locale.ROOT, "%." + r.nextInt(12) + "f", value);
+            Assert.assertEquals(n, Double.parseDouble(n), LibSvmLineParser.parseDouble(n, 0, n.length()));
+            String id = Integer.toString(r.nextInt());
+            Assert.assertEquals(Integer.parseInt(id), LibSvmLineParser.parseInt(id, 0, id.length()));
+        }
+    }
+
+    @Test
+    public void loadTest() throws IOException {
+        Logging.disableSparkLogging();
+        Logging.disableNLP4SparkMLLogging();
+        ArrayList<String> lines = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            lines.add((i % 3 + 1) + " " + (i % 7 + 1) + ":1.5 " + (i + 8) + ":2");
+            if (i % 10 == 0)
+                lines.add("");
+        }
+        Path dataFile = Files.createTempFile("nlp4sparkml", ".svm");
+        Files.write(dataFile, lines);
+
+        JavaSparkContext sc = new JavaSparkContext("local", "test", new SparkConf());
+        try {
+            List<MultilabelPoint> points = DataUtils.loadLibSvmFileFormatData(sc, dataFile.toString(), false, false).collect();
+            Assert.assertEquals(100, points.size());
+            HashSet<Integer> ids = new HashSet<>();
+            for (MultilabelPoint pt : points) {
+                Assert.assertEquals(107, pt.getNumFeatures());
+                Assert.assertEquals(2, pt.getFeatures().length);
+                ids.add(pt.getPointID());
+            }
+            Assert.assertEquals(100, ids.size());
+
+            points = DataUtils.loadLibSvmFileFormatDataAsList(sc, dataFile.toString(), false, false).collect();
+            Assert.assertEquals(100, points.size());
+            for (MultilabelPoint pt : points) {
+                // The IDs follow the order of the non-empty lines.
+                int i = pt.getPointID();
+                Assert.assertEquals(107, pt.getNumFeatures());
+                Assert.assertEquals(i % 3, pt.getLabels()[0]);
+                Assert.assertEquals(i + 7, pt.getFeatures()[1]);
+            }
+        } finally {
+            sc.stop();
+        }
+    }
+
+    @Test
+    public void loadPartitionedTest() throws IOException {
+        Logging.disableSparkLogging();
+        Logging.disableNLP4SparkMLLogging();
+        // Lines of very different lengths and a block of empty lines, so the partitions have unequal sizes.
+        ArrayList<String> lines = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            StringBuilder line = new StringBuilder((i % 2 + 1) + " " + (i % 2 + 1) + ":1");
+            for (int f = 0; f < (i < 50 ? 40 : 1); f++)
+                line.append(" ").append(f + 3).append(":0.5");
+            lines.add(line.toString());
+            if (i >= 150 && i < 180) {
+                for (int j = 0; j < 20; j++)
+                    lines.add("");
+            }
+        }
+        Path dataFile = Files.createTempFile("nlp4sparkml", ".svm");
+        Files.write(dataFile, lines);
+
+        JavaSparkContext sc = new JavaSparkContext("local[2]", "test", new SparkConf());
+        try {
+            JavaRDD<MultilabelPoint> points = DataUtils.loadLibSvmFileFormatData(sc, dataFile.toString(), 4, false, false);
+            Assert.assertTrue(points.partitions().size() >= 4);
+            // Only the returned points are left persisted, the intermediate parsed points are released.
+            Assert.assertEquals(1, sc.sc().getPersistentRDDs().size());
+            Assert.assertTrue(sc.sc().getPersistentRDDs().contains(points.id()));
+            List<List<MultilabelPoint>> partitions = new ArrayList<>(points.glom().collect());
+            Assert.assertTrue(partitions.get(0).size() != partitions.get(partitions.size() - 1).size());
+            List<MultilabelPoint> collected = points.collect();
+            Assert.assertEquals(200, collected.size());
+            for (int i = 0; i < collected.size(); i++)
+                Assert.assertEquals(i, collected.get(i).getPointID());
+            Assert.assertEquals(200, DataUtils.getNumDocuments(points));
+
+            // The learner indexes its per-document arrays with the point IDs.
+            AdaBoostMHLearner learner = new AdaBoostMHLearner(sc);
+            learner.setNumIterations(3);
+            BoostClassifier bc = learner.buildModel(points);
+            Assert.assertEquals(3, bc.getWeakHypotheses().length);
+        } finally {
+            sc.stop();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+package it.cnr.isti.hlt.nlp4sparkml.data;
+
+import it.cnr.isti.hlt.nlp4sparkml.utils.Logging;
+import junit.framework.Assert;
+import org.apache.spark.SparkConf;
+import org.apache.spark.TaskContext;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ */
+public class MultilabelPointBinaryFormatTest {
+
+    @Test
+    public void saveLoadTest() throws IOException {
+        Logging.disableSparkLogging();
+        Logging.disableNLP4SparkMLLogging();
+        ArrayList<MultilabelPoint> points = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            int[] features = new int[i % 5];
+            double[] weights = new double[features.length];
+            for (int j = 0; j < features.length; j++) {
+                features[j] = j * 3 + i % 2;
+                weights[j] = i * 0.1 + j;
+            }
+            points.add(new MultilabelPoint(i * 2, 20, features, weights, i % 3 == 0 ? new int[0] : new int[]{i % 4, 7}));
+        }
+
+        JavaSparkContext sc = new JavaSparkContext("local", "test", new SparkConf());
+        try {
+            String path = Files.createTempDirectory("nlp4sparkml").resolve("points").toString();
+            Assert.assertEquals(50, MultilabelPointBinaryFormat.save(sc.parallelize(points, 3), path));
+            List<MultilabelPoint> loaded = new ArrayList<>(MultilabelPointBinaryFormat.load(sc, path).collect());
+            loaded.sort(Comparator.comparingInt(MultilabelPoint::getPointID));
+            Assert.assertEquals(points.size(), loaded.size());
+            for (int i = 0; i < points.size(); i++) {
+                MultilabelPoint expected = points.get(i);
+                MultilabelPoint pt = loaded.get(i);
+                Assert.assertEquals(expected.getPointID(), pt.getPointID());
+                Assert.assertEquals(expected.getNumFeatures(), pt.getNumFeatures());
+                Assert.assertTrue(Arrays.equals(expected.getFeatures(), pt.getFeatures()));
+                Assert.assertTrue(Arrays.equals(expected.getWeights(), pt.getWeights()));
+                Assert.assertTrue(Arrays.equals(expected.getLabels(), pt.getLabels()));
+            }
+        } finally {
+            sc.stop();
+        }
+    }
+
+    @Test
+    public void retryTest() throws IOException {
+        Logging.disableSparkLogging();
+        Logging.disableNLP4SparkMLLogging();
+        ArrayList<MultilabelPoint> points = new ArrayList<>();
+        for (int i = 0; i < 20; i++)
+            points.add(new MultilabelPoint(i, 10, new int[]{i % 10}, new double[]{1.0}, new int[]{i % 2}));
+
+        // Each task may fail once: the first attempt of every task fails in the middle of its partition.
+        JavaSparkContext sc = new JavaSparkContext("local[1,2]", "test", new SparkConf());
+        try {
+            Path dir = Files.createTempDirectory("nlp4sparkml").resolve("points");
+            JavaRDD<MultilabelPoint> failing = sc.parallelize(points, 2).map(pt -> {
+                if (TaskContext.get().attemptNumber() == 0 && pt.getPointID() % 10 == 5)
+                    throw new IllegalStateException("Failing first attempt");
+                return pt;
+            });
+            Assert.assertEquals(20, MultilabelPointBinaryFormat.save(failing, dir.toUri().toString()));
+            try (Stream<Path> files = Files.list(dir)) {
+                // Only the partition files are left, without the temporary data of the failed attempts.
+                Assert.assertEquals(2, files.count());
+            }
+            Assert.assertEquals(20, MultilabelPointBinaryFormat.load(sc, dir.toString()).count());
+
+            try {
+                MultilabelPointBinaryFormat.load(sc, "hdfs://namenode/points");
+                Assert.fail("A non-local path must be rejected");
+            } catch (IllegalArgumentException e) {
+            }
+        } finally {
+            sc.stop();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+package it.cnr.isti.hlt.nlp4sparkml.featurizer;
+
+import it.cnr.isti.hlt.nlp4sparkml.data.DataUtils;
+import it.cnr.isti.hlt.nlp4sparkml.indexer.IdentifierGenerator;
+import it.cnr.isti.hlt.nlp4sparkml.indexer.IdentifierGeneratorModel;
+import it.cnr.isti.hlt.nlp4sparkml.indexer.OccurrencesCounter;
+import it.cnr.isti.hlt.nlp4sparkml.tokenizer.PuntuactionTokenizer;
+import it.cnr.isti.hlt.nlp4sparkml.utils.Logging;
+import it.cnr.isti.hlt.nlp4sparkml.utils.RowUtils;
+import it.cnr.isti.hlt.nlp4sparkml.weighter.TfIdfWeighter;
+import it.cnr.isti.hlt.nlp4sparkml.weighter.TfIdfWeighterModel;
+import it.cnr.isti.hlt.nlp4sparkml.weighter.TfIdfWeighterTest;
+import junit.framework.Assert;
+import org.apache.spark.SparkConf;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.sql.DataFrame;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SQLContext;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ */
+public class TextFeaturizerTest {
+
+    private final static String[] text = {
+            "This is the first test, yes the first! Uaooo, such a test.",
+            "Here the second one and the...",
+            "The third one, the most cool."
+    };
+
+    @Test
+    public void fusedPipelineTest() {
+        Logging.disableSparkLogging();
+        Logging.disableNLP4SparkMLLogging();
+        SparkConf conf = new SparkConf();
+        JavaSparkContext sc = new JavaSparkContext("local", "test", conf);
+        try {
+            ArrayList<TfIdfWeighterTest.DocSample> docs = new ArrayList<>();
+            for (int i = 0; i < text.length; i++)
+                docs.add(new TfIdfWeighterTest.DocSample(i, text[i]));
+            DataFrame df = new SQLContext(sc).createDataFrame(sc.parallelize(docs), TfIdfWeighterTest.DocSample.class);
+
+            PuntuactionTokenizer tokenizer = new PuntuactionTokenizer();
+            tokenizer.setInputCol("content").setOutputCol("tokens");
+            DataFrame dfFeatures = tokenizer.transform(df);
+            IdentifierGenerator identifierEstimator = new IdentifierGenerator();
+            ArrayList<String> featuresFields = new ArrayList<>();
+            featuresFields.add("tokens");
+            identifierEstimator.setFeaturesFields(featuresFields);
+            IdentifierGeneratorModel identifierIndexer = identifierEstimator.fit(dfFeatures);
+            DataFrame dfIndexed = identifierIndexer.setIdCol("docID").setInputCol(featuresFields).setOutputCol("featuresIndexed").transform(dfFeatures);
+            OccurrencesCounter counter = new OccurrencesCounter();
+            counter.setInputCol("featuresIndexed").setOutputCol("occurrences");
+            DataFrame dfOccur = counter.transform(dfIndexed);
+            TfIdfWeighterModel tfIdfModel = new TfIdfWeighter().setInputCol("occurrences").fit(dfOccur);
+            DataFrame dfWeights = tfIdfModel.setInputCol("occurrences").setOutputCol("weights").transform(dfOccur);
+
+            HashMap<Long, HashMap<Long, Double>> expected = new HashMap<>();
+            for (Row r : dfWeights.select("docID", "weights").collect()) {
+                HashMap<Long, Double> weights = new HashMap<>();
+                Row w = r.getStruct(1);
+                long[] features = RowUtils.getLongArray(w, TfIdfWeighterModel.FEATURES);
+                double[] values = RowUtils.getDoubleArray(w, TfIdfWeighterModel.WEIGHTS);
+                for (int i = 0; i < features.length; i++)
+                    weights.put(features[i], values[i]);
+                expected.put(r.getLong(0), weights);
+            }
+
+            TextFeaturizer featurizer = new TextFeaturizer()
+                    .setComponents(tokenizer, identifierIndexer, tfIdfModel)
+                    .setInputCol("content").setOutputCol("point").setIdCol("docID");
+            DataFrame dfPoints = featurizer.transform(df);
+            Assert.assertEquals(3, dfPoints.count());
+            List<Row> rows = dfPoints.select("docID", "point").collectAsList();
+            for (Row r : rows) {
+                Row pt = r.getStruct(1);
+                Assert.assertEquals(r.getLong(0), pt.getInt(pt.fieldIndex(DataUtils.POINT_ID)));
+                int[] features = RowUtils.getIntArray(pt, DataUtils.FEATURES);
+                double[] values = RowUtils.getDoubleArray(pt, DataUtils.WEIGHTS);
+                HashMap<Long, Double> weights = expected.get(r.getLong(0));
+                Assert.assertEquals(weights.size(), features.length);
+                for (int i = 0; i < features.length; i++) {
+                    if (i > 0)
+                        Assert.assertTrue(features[i - 1] < features[i]);
+                    Assert.assertEquals(weights.get((long) features[i]), values[i], 1e-9);
+                }
+            }
+
+            // The feature IDs are not narrowed to int outside the range of the featurizer.
+            DocumentFeaturizer tooSmall = new DocumentFeaturizer(tokenizer, identifierIndexer.getDictionary(), tfIdfModel, 1);
+            try {
+                tooSmall.featurize(0, text[0], new int[0]);
+                Assert.fail("Expected an out of range feature ID");
+            } catch (IllegalArgumentException e) {
+            }
+        } finally {
+            if (sc != null)
+                sc.stop();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+package it.cnr.isti.hlt.nlp4sparkml.indexer;
+
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ */
+public class FeaturesDictionaryTest {
+
+    private static final String ALPHABET = "abcdeèé€😀";
+
+    private static HashMap<String, Long> randomFeatures(int numFeatures, Random r) {
+        HashMap<String, Long> features = new HashMap<>();
+        features.put("", 1000000L);
+        while (features.size() < numFeatures) {
+            StringBuilder sb = new StringBuilder();
+            int len = 1 + r.nextInt(8);
+            for (int i = 0; i < len; i++) {
+                int c = r.nextInt(ALPHABET.length() - 1);
+                sb.append(ALPHABET.charAt(c));
+                if (Character.isHighSurrogate(ALPHABET.charAt(c)))
+                    sb.append(ALPHABET.charAt(c + 1));
+            }
+            features.putIfAbsent(sb.toString(), (long) features.size());
+        }
+        return features;
+    }
+
+    private static void checkDictionary(FeaturesDictionary dictionary, HashMap<String, Long> features, Random r) {
+        Assert.assertEquals(features.size(), dictionary.size());
+        for (Map.Entry<String, Long> entry : features.entrySet())
+            Assert.assertEquals(entry.getValue().longValue(), dictionary.getID(entry.getKey()));
+        for (int i = 0; i < 1000; i++) {
+            String missing = Integer.toString(r.nextInt());
+            Assert.assertEquals(features.containsKey(missing) ? features.get(missing).longValue() : -1L, dictionary.getID(missing));
+            missing = features.keySet().iterator().next() + "z";
+            Assert.assertFalse(dictionary.contains(missing));
+        }
+        HashMap<String, Long> decoded = new HashMap<>();
+        dictionary.forEach(decoded::put);
+        Assert.assertEquals(features, decoded);
+        Assert.assertEquals(1000000L, dictionary.getMaxID());
+    }
+
+    @Test
+    public void lookupTest() throws IOException, ClassNotFoundException {
+        Random r = new Random(1);
+        HashMap<String, Long> features = randomFeatures(5000, r);
+        String[] keys = features.keySet().toArray(new String[0]);
+        long[] ids = new long[keys.length];
+        for (int i = 0; i < keys.length; i++)
+            ids[i] = features.get(keys[i]);
+
+        for (int bucketSize : new int[]{1, 3, FeaturesDictionary.DEFAULT_BUCKET_SIZE, 100}) {
+            FeaturesDictionary dictionary = FeaturesDictionary.build(keys, ids, bucketSize);
+            checkDictionary(dictionary, features, r);
+        }
+        FeaturesDictionary dictionary = FeaturesDictionary.build(keys, ids);
+        checkDictionary(dictionary.offHeap(), features, r);
+        Assert.assertEquals(-1, FeaturesDictionary.build(new String[0], new long[0]).getID("a"));
+
+        Path file = Files.createTempFile("nlp4sparkml", ".dict");
+        try {
+            dictionary.writeTo(file);
+            checkDictionary(FeaturesDictionary.map(file), features, r);
+        } finally {
+            Files.delete(file);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream os = new ObjectOutputStream(bytes)) {
+            os.writeObject(dictionary);
+        }
+        try (ObjectInputStream is = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            checkDictionary((FeaturesDictionary) is.readObject(), features, r);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void duplicatesTest() {
+        FeaturesDictionary.build(new String[]{"a", "b", "a"}, new long[]{0, 1, 2});
+    }
+}
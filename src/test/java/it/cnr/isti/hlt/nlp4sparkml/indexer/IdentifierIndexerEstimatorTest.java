@@ -44,6 +44,7 @@ package it.cnr.isti.hlt.nlp4sparkml.indexer;
 
 import it.cnr.isti.hlt.nlp4sparkml.tokenizer.PuntuactionTokenizer;
 import it.cnr.isti.hlt.nlp4sparkml.utils.Logging;
+import it.cnr.isti.hlt.nlp4sparkml.weighter.TfIdfWeighter;
 import junit.framework.Assert;
 import org.apache.spark.SparkConf;
 import org.apache.spark.api.java.JavaRDD;
@@ -53,8 +54,14 @@ import org.apache.spark.sql.Row;
 import org.apache.spark.sql.SQLContext;
 import org.junit.Test;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
@@ -98,8 +105,21 @@ public class IdentifierIndexerEstimatorTest {
         return sqlContext.createDataFrame(rdd, DocSample.class);
     }
 
+    /**
+     * Get the sorted features IDs assigned to each document.
+     */
+    protected Map<Long, List<Long>> indexedFeatures(DataFrame df, String featuresCol) {
+        HashMap<Long, List<Long>> ret = new HashMap<>();
+        for (Row r : df.select("docID", featuresCol).collect()) {
+            List<Long> feats = new ArrayList<>(r.getList(1));
+            Collections.sort(feats);
+            ret.put(r.getLong(0), feats);
+        }
+        return ret;
+    }
+
     @Test
-    public void pipelineTest() {
+    public void pipelineTest() throws IOException {
         Logging.disableSparkLogging();
         Logging.disableNLP4SparkMLLogging();
         SparkConf conf = new SparkConf();
@@ -133,6 +153,179 @@ public class IdentifierIndexerEstimatorTest {
             for (Row r : rows) {
                 System.out.println(r.toString());
             }
+
+            DataFrame dfBroadcastIndexed = identifierIndexer.setBroadcastDictionary(true).transform(dfFeatures);
+            Assert.assertEquals(indexedFeatures(dfIndexedFeatures, "featuresIdexed"), indexedFeatures(dfBroadcastIndexed, "featuresIdexed"));
+            HashMap<String, Long> dictionary = identifierIndexer.collectDictionary();
+            for (Row r : dfBroadcastIndexed.select("tokens", "tokens2", "featuresIdexed").collect()) {
+                List<Long> expected = new ArrayList<>();
+                for (int i = 0; i < 2; i++) {
+                    for (Object token : r.getList(i))
+                        expected.add(dictionary.get(token));
+                }
+                Assert.assertEquals(expected, r.getList(2));
+            }
+            identifierIndexer.setBroadcastDictionary(false);
+
+            String modelPath = Files.createTempDirectory("nlp4sparkml").resolve("model").toString();
+            identifierIndexer.save(modelPath);
+            IdentifierGeneratorModel loadedIndexer = IdentifierGeneratorModel.load(modelPath);
+            Assert.assertEquals(identifierIndexer.uid(), loadedIndexer.uid());
+            Assert.assertEquals(identifierIndexer.getNumDistinctFeatures(), loadedIndexer.getNumDistinctFeatures());
+            Assert.assertEquals(features.length, loadedIndexer.getInternalFeaturesMappinng().count());
+            DataFrame dfLoadedIndexedFeatures = loadedIndexer.transform(dfFeatures);
+            Assert.assertEquals(indexedFeatures(dfIndexedFeatures, "featuresIdexed"), indexedFeatures(dfLoadedIndexedFeatures, "featuresIdexed"));
+        } finally {
+            if (sc != null)
+                sc.stop();
+        }
+    }
+
+    @Test
+    public void documentFrequencyTest() {
+        Logging.disableSparkLogging();
+        Logging.disableNLP4SparkMLLogging();
+        SparkConf conf = new SparkConf();
+        JavaSparkContext sc = new JavaSparkContext("local", "test", conf);
+        try {
+            DataFrame df = loadInitialData(sc);
+            PuntuactionTokenizer tokenizer = new PuntuactionTokenizer();
+            tokenizer.setInputCol("content").setOutputCol("tokens");
+            DataFrame dfFeatures = tokenizer.transform(df);
+            ArrayList<String> featuresFields = new ArrayList<>();
+            featuresFields.add("tokens");
+
+            // "the" is in all the documents, "one" in two documents, all the other tokens in only one.
+            IdentifierGeneratorModel model = new IdentifierGenerator().setFeaturesFields(featuresFields).fit(dfFeatures);
+            Assert.assertEquals(0, model.getDictionary().getID("the"));
+            Assert.assertEquals(1, model.getDictionary().getID("one"));
+            long maxID = model.getDictionary().getMaxID();
+            Assert.assertEquals(model.getNumDistinctFeatures() - 1, maxID);
+
+            model = new IdentifierGenerator().setFeaturesFields(featuresFields).setMinDocumentFrequency(2).fit(dfFeatures);
+            Assert.assertEquals(2, model.getNumDistinctFeatures());
+            model = new IdentifierGenerator().setFeaturesFields(featuresFields).setMinDocumentFrequency(2)
+                    .setMaxDocumentFrequencyRatio(0.9).fit(dfFeatures);
+            Assert.assertEquals(1, model.getNumDistinctFeatures());
+            Assert.assertEquals(0, model.getDictionary().getID("one"));
+            model = new IdentifierGenerator().setFeaturesFields(featuresFields).setMaxNumFeatures(3).fit(dfFeatures);
+            Assert.assertEquals(3, model.getNumDistinctFeatures());
+            Assert.assertEquals(0, model.getDictionary().getID("the"));
+            Assert.assertEquals(1, model.getDictionary().getID("one"));
+        } finally {
+            if (sc != null)
+                sc.stop();
+        }
+    }
+
+    @Test
+    public void extendTest() {
+        Logging.disableSparkLogging();
+        Logging.disableNLP4SparkMLLogging();
+        SparkConf conf = new SparkConf();
+        JavaSparkContext sc = new JavaSparkContext("local", "test", conf);
+        try {
+            DataFrame df = loadInitialData(sc);
+            PuntuactionTokenizer tokenizer = new PuntuactionTokenizer();
+            tokenizer.setInputCol("content").setOutputCol("tokens");
+            DataFrame dfFeatures = tokenizer.transform(df);
+            ArrayList<String> featuresFields = new ArrayList<>();
+            featuresFields.add("tokens");
+
+            IdentifierGeneratorModel model = new IdentifierGenerator().setFeaturesFields(featuresFields)
+                    .fit(dfFeatures.filter("docID < 2"));
+            model.setIdCol("docID").setInputCol(featuresFields).setBroadcastDictionary(true);
+            IdentifierGeneratorModel extended = model.extend(dfFeatures.filter("docID >= 1"));
+            Assert.assertEquals(model.uid(), extended.uid());
+            Assert.assertTrue(extended.getBroadcastDictionary());
+            Assert.assertEquals(new IdentifierGenerator().setFeaturesFields(featuresFields).fit(dfFeatures).getNumDistinctFeatures(),
+                    extended.getNumDistinctFeatures());
+            Assert.assertEquals(extended.getNumDistinctFeatures(), extended.getInternalFeaturesMappinng().count());
+            Assert.assertEquals(extended.getNumDistinctFeatures(), extended.getDictionary().size());
+            Assert.assertEquals(extended.getNumDistinctFeatures() - 1, extended.getDictionary().getMaxID());
+            model.getDictionary().forEach((feature, id) -> Assert.assertEquals(id, extended.getDictionary().getID(feature)));
+            Assert.assertEquals(-1, model.getDictionary().getID("cool"));
+            Assert.assertTrue(extended.getDictionary().getID("cool") > model.getDictionary().getMaxID());
+            Assert.assertEquals(indexedFeatures(extended.transform(dfFeatures), "featuresIndexed"),
+                    indexedFeatures(extended.setBroadcastDictionary(false).transform(dfFeatures), "featuresIndexed"));
+
+            // The pruning params of the generator are applied also to the new features.
+            int maxNumFeatures = (int) model.getNumDistinctFeatures() + 2;
+            IdentifierGeneratorModel capped = new IdentifierGenerator().setFeaturesFields(featuresFields)
+                    .setMaxNumFeatures(maxNumFeatures).fit(dfFeatures.filter("docID < 2"));
+            capped.setIdCol("docID").setInputCol(featuresFields);
+            Assert.assertEquals(maxNumFeatures, capped.getMaxNumFeatures());
+            Assert.assertEquals(maxNumFeatures, capped.extend(dfFeatures.filter("docID >= 1")).getDictionary().size());
+            // The features of the third document appear in only one of the new documents.
+            Assert.assertEquals(model.getNumDistinctFeatures(),
+                    capped.setMinDocumentFrequency(2).extend(dfFeatures.filter("docID >= 1")).getDictionary().size());
+        } finally {
+            if (sc != null)
+                sc.stop();
+        }
+    }
+
+    @Test
+    public void hashingTest() {
+        Logging.disableSparkLogging();
+        Logging.disableNLP4SparkMLLogging();
+        SparkConf conf = new SparkConf();
+        JavaSparkContext sc = new JavaSparkContext("local", "test", conf);
+        try {
+            DataFrame df = loadInitialData(sc);
+            PuntuactionTokenizer tokenizer = new PuntuactionTokenizer();
+            tokenizer.setInputCol("content").setOutputCol("tokens");
+            DataFrame dfFeatures = tokenizer.transform(df);
+
+            ArrayList<String> featuresFields = new ArrayList<>();
+            featuresFields.add("tokens");
+            HashingIdentifierModel hashing = new HashingIdentifierModel().setInputCol(featuresFields)
+                    .setOutputCol("featuresIndexed").setNumFeatures(1000).setSignedHashing(true);
+            Row[] rows = hashing.transform(dfFeatures).select("tokens", "featuresIndexed", "featuresSigns").collect();
+            Assert.assertEquals(text.length, rows.length);
+            for (Row r : rows) {
+                List<String> tokens = r.getList(0);
+                List<Long> ids = r.getList(1);
+                List<Integer> signs = r.getList(2);
+                Assert.assertEquals(tokens.size(), ids.size());
+                for (int i = 0; i < tokens.size(); i++) {
+                    Assert.assertTrue(ids.get(i) >= 0 && ids.get(i) < 1000);
+                    Assert.assertEquals(hashing.getFeatureID(tokens.get(i)), (long) ids.get(i));
+                    Assert.assertEquals(hashing.getFeatureSign(tokens.get(i)), (int) signs.get(i));
+                }
+            }
+
+            // The signs are applied by the occurrences counter and understood by the weighters.
+            OccurrencesCounter counter = new OccurrencesCounter().setSignsCol("featuresSigns");
+            counter.setInputCol("featuresIndexed").setOutputCol("occurrences");
+            DataFrame dfCounted = counter.transform(hashing.transform(dfFeatures));
+            DataFrame dfWeighted = new TfIdfWeighter().setInputCol("occurrences").fit(dfCounted)
+                    .setInputCol("occurrences").setOutputCol("weights").transform(dfCounted);
+            for (Row r : dfWeighted.select("featuresIndexed", "featuresSigns", "occurrences", "weights").collect()) {
+                List<Long> ids = r.getList(0);
+                List<Integer> signs = r.getList(1);
+                HashMap<Long, Long> expected = new HashMap<>();
+                for (int i = 0; i < ids.size(); i++)
+                    expected.merge(ids.get(i), (long) signs.get(i), Long::sum);
+                expected.values().removeIf(count -> count == 0);
+                List<Long> features = r.getStruct(2).getList(0);
+                List<Long> occurrences = r.getStruct(2).getList(1);
+                Assert.assertEquals(expected.size(), features.size());
+                for (int i = 0; i < features.size(); i++)
+                    Assert.assertEquals(expected.get(features.get(i)), occurrences.get(i));
+                List<Double> weights = r.getStruct(3).getList(1);
+                for (int i = 0; i < weights.size(); i++) {
+                    Assert.assertFalse(Double.isNaN(weights.get(i)) || Double.isInfinite(weights.get(i)));
+                    Assert.assertTrue(weights.get(i) == 0 || Math.signum(weights.get(i)) == Long.signum(occurrences.get(i)));
+                }
+            }
+
+            long numDistinctTokens = dfFeatures.select("tokens").javaRDD().flatMap(r -> r.<String>getList(0)).distinct().count();
+            HashingCollisionStatistics stats = hashing.setNumFeatures(1 << 30).computeCollisionStatistics(dfFeatures, 1, 1);
+            Assert.assertEquals(numDistinctTokens, stats.getNumDistinctFeatures());
+            Assert.assertEquals(0, stats.getNumCollisions());
+            stats = hashing.setNumFeatures(1).computeCollisionStatistics(dfFeatures, 1, 1);
+            Assert.assertEquals(numDistinctTokens - 1, stats.getNumCollisions());
         } finally {
             if (sc != null)
                 sc.stop();
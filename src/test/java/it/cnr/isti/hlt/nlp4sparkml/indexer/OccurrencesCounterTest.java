@@ -55,6 +55,7 @@ import org.junit.Test;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -137,8 +138,21 @@ public class OccurrencesCounterTest {
             counter.setInputCol("featuresIndexed").setOutputCol("occurrences");
             DataFrame dfOccur = counter.transform(dfIndexedFeatures);
             List<Row> r = dfOccur.select(dfOccur.col("featuresIndexed"), dfOccur.col("occurrences")).collectAsList();
-            for (Row ro: r)
+            for (Row ro: r) {
                 System.out.println(ro);
+                List<Long> indexed = ro.getList(0);
+                OccurencesCounterHelper helper = OccurencesCounterHelper.getHelper(ro, "occurrences");
+                long[] feats = helper.getFeaturesArray();
+                long[] occurrences = helper.getOccurrencesArray();
+                long total = 0;
+                for (int i = 0; i < feats.length; i++) {
+                    if (i > 0)
+                        Assert.assertTrue(feats[i - 1] < feats[i]);
+                    Assert.assertEquals(Collections.frequency(indexed, feats[i]), occurrences[i]);
+                    total += occurrences[i];
+                }
+                Assert.assertEquals(indexed.size(), total);
+            }
         } finally {
             if (sc != null)
                 sc.stop();
@@ -0,0 +1,119 @@
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+package it.cnr.isti.hlt.nlp4sparkml.streaming;
+
+import it.cnr.isti.hlt.nlp4sparkml.data.PointClassificationResults;
+import it.cnr.isti.hlt.nlp4sparkml.datasource.TextualDocument;
+import it.cnr.isti.hlt.nlp4sparkml.utils.Logging;
+import junit.framework.Assert;
+import org.apache.spark.SparkConf;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.streaming.Durations;
+import org.apache.spark.streaming.api.java.JavaStreamingContext;
+import org.junit.Test;
+import scala.Tuple2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ */
+public class StreamingTextClassifierTest {
+
+    @Test
+    public void classifyStreamTest() throws InterruptedException {
+        Logging.disableSparkLogging();
+        Logging.disableNLP4SparkMLLogging();
+        JavaSparkContext sc = new JavaSparkContext("local[2]", "test", new SparkConf());
+        JavaStreamingContext ssc = null;
+        try {
+            TextClassificationPipelineTest.FittedComponents c = TextClassificationPipelineTest.fit(sc);
+            TextClassificationPipeline pipeline = TextClassificationPipeline.create(c.tokenizer, c.indexer, c.weighter, c.model);
+            String[] text = TextClassificationPipelineTest.text;
+
+            // Two batches of documents, with 4 and 2 documents.
+            Queue<JavaRDD<TextualDocument>> batches = new LinkedList<>();
+            ArrayList<TextualDocument> first = new ArrayList<>();
+            ArrayList<TextualDocument> second = new ArrayList<>();
+            for (int i = 0; i < text.length; i++)
+                (i < 4 ? first : second).add(new TextualDocument(i, "doc" + i, text[i]));
+            batches.add(sc.parallelize(first, 2));
+            batches.add(sc.parallelize(second, 2));
+
+            ssc = new JavaStreamingContext(sc, Durations.milliseconds(500));
+            StreamingTextClassifier classifier = new StreamingTextClassifier(pipeline);
+            ConcurrentHashMap<Long, PointClassificationResults> results = new ConcurrentHashMap<>();
+            classifier.classify(ssc.queueStream(batches, true)).foreachRDD(rdd -> {
+                for (Tuple2<Long, PointClassificationResults> res : rdd.collect())
+                    results.put(res._1(), res._2());
+            });
+            // A second classified stream, without documents, shares the statistics listener of the first one.
+            classifier.classify(ssc.queueStream(new LinkedList<>(), true)).foreachRDD(rdd -> {
+                Assert.assertEquals(0, rdd.count());
+            });
+            ssc.start();
+            for (int i = 0; i < 60 && classifier.getStatistics().size() < 2; i++)
+                Thread.sleep(250);
+
+            List<BatchStatistics> statistics = classifier.getStatistics();
+            Assert.assertTrue(statistics.size() >= 2);
+            Assert.assertEquals(4, statistics.get(0).getNumDocuments());
+            Assert.assertEquals(2, statistics.get(1).getNumDocuments());
+            Assert.assertEquals(text.length, results.size());
+            for (int i = 0; i < text.length; i++) {
+                PointClassificationResults expected = pipeline.classify(new TextualDocument(i, "doc" + i, text[i]));
+                Assert.assertTrue(Arrays.equals(expected.getScores(), results.get((long) i).getScores()));
+            }
+        } finally {
+            if (ssc != null)
+                ssc.stop(false);
+            sc.stop();
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+package it.cnr.isti.hlt.nlp4sparkml.streaming;
+
+import it.cnr.isti.hlt.nlp4sparkml.classifier.boosting.AdaBoostMHEstimator;
+import it.cnr.isti.hlt.nlp4sparkml.classifier.boosting.BoostClassifierModel;
+import it.cnr.isti.hlt.nlp4sparkml.data.DataUtils;
+import it.cnr.isti.hlt.nlp4sparkml.data.MultilabelPoint;
+import it.cnr.isti.hlt.nlp4sparkml.data.PointClassificationResults;
+import it.cnr.isti.hlt.nlp4sparkml.datasource.TextualDocument;
+import it.cnr.isti.hlt.nlp4sparkml.featurizer.TextFeaturizer;
+import it.cnr.isti.hlt.nlp4sparkml.indexer.IdentifierGenerator;
+import it.cnr.isti.hlt.nlp4sparkml.indexer.IdentifierGeneratorModel;
+import it.cnr.isti.hlt.nlp4sparkml.indexer.OccurrencesCounter;
+import it.cnr.isti.hlt.nlp4sparkml.tokenizer.PuntuactionTokenizer;
+import it.cnr.isti.hlt.nlp4sparkml.utils.Logging;
+import it.cnr.isti.hlt.nlp4sparkml.weighter.TfIdfWeighter;
+import it.cnr.isti.hlt.nlp4sparkml.weighter.TfIdfWeighterModel;
+import junit.framework.Assert;
+import org.apache.spark.SparkConf;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.sql.DataFrame;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.RowFactory;
+import org.apache.spark.sql.SQLContext;
+import org.apache.spark.sql.types.DataTypes;
+import org.apache.spark.sql.types.StructField;
+import org.apache.spark.sql.types.StructType;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ */
+public class TextClassificationPipelineTest {
+
+    final static String[] text = {
+            "The match was won by the home team with a late goal.",
+            "The parliament approved the new budget law.",
+            "A great goal decided the final match of the cup.",
+            "The government and the parliament discussed the law.",
+            "The team scored a goal in the first minute of the match.",
+            "The new law on taxes was voted by the government."
+    };
+
+    final static int[][] labels = {{0}, {1}, {0}, {1}, {0}, {1}};
+
+    /**
+     * The fitted components of the pipeline and the DataFrame of the featurized training documents, in the
+     * "point" column.
+     */
+    static class FittedComponents {
+        PuntuactionTokenizer tokenizer;
+        IdentifierGeneratorModel indexer;
+        TfIdfWeighterModel weighter;
+        BoostClassifierModel model;
+        DataFrame points;
+    }
+
+    static FittedComponents fit(JavaSparkContext sc) {
+        ArrayList<Row> rows = new ArrayList<>();
+        for (int i = 0; i < text.length; i++)
+            rows.add(RowFactory.create((long) i, text[i], labels[i]));
+        StructType schema = DataTypes.createStructType(new StructField[]{
+                DataTypes.createStructField("docID", DataTypes.LongType, false),
+                DataTypes.createStructField("content", DataTypes.StringType, false),
+                DataTypes.createStructField("labels", DataTypes.createArrayType(DataTypes.IntegerType), false)});
+        DataFrame df = new SQLContext(sc).createDataFrame(sc.parallelize(rows), schema);
+
+        FittedComponents c = new FittedComponents();
+        c.tokenizer = new PuntuactionTokenizer();
+        c.tokenizer.setInputCol("content").setOutputCol("tokens");
+        DataFrame dfFeatures = c.tokenizer.transform(df);
+        ArrayList<String> featuresFields = new ArrayList<>();
+        featuresFields.add("tokens");
+        c.indexer = new IdentifierGenerator().setFeaturesFields(featuresFields).fit(dfFeatures);
+        c.indexer.setIdCol("docID").setInputCol(featuresFields).setOutputCol("featuresIndexed");
+        OccurrencesCounter counter = new OccurrencesCounter();
+        counter.setInputCol("featuresIndexed").setOutputCol("occurrences");
+        DataFrame dfOccur = counter.transform(c.indexer.transform(dfFeatures));
+        c.weighter = new TfIdfWeighter().setInputCol("occurrences").fit(dfOccur);
+
+        c.points = new TextFeaturizer().setComponents(c.tokenizer, c.indexer, c.weighter)
+                .setInputCol("content").setOutputCol("point").setIdCol("docID").setLabelsCol("labels").transform(df);
+        AdaBoostMHEstimator estimator = new AdaBoostMHEstimator();
+        estimator.setNumIterations(5);
+        estimator.setInputCol("point");
+        c.model = estimator.fit(c.points);
+        c.model.setInputCol("point").setOutputCol("results");
+        return c;
+    }
+
+    @Test
+    public void classifyTest() {
+        Logging.disableSparkLogging();
+        Logging.disableNLP4SparkMLLogging();
+        JavaSparkContext sc = new JavaSparkContext("local", "test", new SparkConf());
+        try {
+            FittedComponents c = fit(sc);
+            TextClassificationPipeline pipeline = TextClassificationPipeline.create(c.tokenizer, c.indexer, c.weighter, c.model);
+            Assert.assertEquals(c.indexer.getDictionary().size(), pipeline.getDictionarySize());
+
+            HashMap<Integer, MultilabelPoint> expectedPoints = new HashMap<>();
+            for (Row r : c.points.select("point").collect()) {
+                MultilabelPoint pt = DataUtils.toMultilabelPoint(r, "point", c.model.getNumFeatures());
+                expectedPoints.put(pt.getPointID(), pt);
+            }
+            HashMap<Integer, PointClassificationResults> expectedResults = new HashMap<>();
+            for (Row r : c.model.transform(c.points).select("results").collect()) {
+                PointClassificationResults res = DataUtils.toPointClassificationResults(r, "results");
+                expectedResults.put(res.getPointID(), res);
+            }
+
+            for (int i = 0; i < text.length; i++) {
+                TextualDocument doc = new TextualDocument(i, "doc" + i, text[i]);
+                MultilabelPoint pt = pipeline.featurize(doc);
+                Assert.assertEquals(i, pt.getPointID());
+                Assert.assertEquals(0, pt.getLabels().length);
+                Assert.assertTrue(Arrays.equals(expectedPoints.get(i).getFeatures(), pt.getFeatures()));
+                Assert.assertTrue(Arrays.equals(expectedPoints.get(i).getWeights(), pt.getWeights()));
+                PointClassificationResults res = pipeline.classify(doc);
+                Assert.assertEquals(i, res.getPointID());
+                Assert.assertTrue(Arrays.equals(expectedResults.get(i).getScores(), res.getScores()));
+            }
+
+            try {
+                pipeline.featurize(new TextualDocument(1L + Integer.MAX_VALUE, "big", text[0]));
+                Assert.fail("A document ID out of the int range must be rejected");
+            } catch (IllegalArgumentException e) {
+            }
+        } finally {
+            sc.stop();
+        }
+    }
+}
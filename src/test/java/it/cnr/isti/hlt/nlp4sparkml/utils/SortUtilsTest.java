@@ -0,0 +1,87 @@
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+package it.cnr.isti.hlt.nlp4sparkml.utils;
+
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ */
+public class SortUtilsTest {
+
+    @Test
+    public void sortByKeyTest() {
+        Random r = new Random(5);
+        for (int it = 0; it < 300; it++) {
+            int n = r.nextInt(100);
+            long[] keys = new long[n];
+            long[] values = new long[n];
+            int[] intKeys = new int[n];
+            double[] doubleValues = new double[n];
+            for (int i = 0; i < n; i++) {
+                // Few distinct keys, to check that the sort is stable.
+                keys[i] = (r.nextInt(10) - 5) * 1000000007L;
+                values[i] = i;
+                intKeys[i] = r.nextInt(10) - 5;
+                doubleValues[i] = i;
+            }
+            long[] origKeys = keys.clone();
+            int[] origIntKeys = intKeys.clone();
+            SortUtils.sortByKey(keys, values);
+            SortUtils.sortByKey(intKeys, doubleValues);
+            Assert.assertTrue(SortUtils.isSorted(keys));
+            Assert.assertTrue(SortUtils.isSorted(intKeys));
+            for (int i = 0; i < n; i++) {
+                Assert.assertEquals(origKeys[(int) values[i]], keys[i]);
+                Assert.assertEquals(origIntKeys[(int) doubleValues[i]], intKeys[i]);
+                if (i > 0 && keys[i - 1] == keys[i])
+                    Assert.assertTrue(values[i - 1] < values[i]);
+                if (i > 0 && intKeys[i - 1] == intKeys[i])
+                    Assert.assertTrue(doubleValues[i - 1] < doubleValues[i]);
+            }
+        }
+    }
+}
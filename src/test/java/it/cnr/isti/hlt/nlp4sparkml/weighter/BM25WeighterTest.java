@@ -56,7 +56,9 @@ import org.apache.spark.sql.Row;
 import org.apache.spark.sql.SQLContext;
 import org.junit.Test;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -103,7 +105,7 @@ public class BM25WeighterTest {
     }
 
     @Test
-    public void pipelineTest() {
+    public void pipelineTest() throws IOException {
         Logging.disableSparkLogging();
         Logging.disableNLP4SparkMLLogging();
         SparkConf conf = new SparkConf();
@@ -150,6 +152,21 @@ public class BM25WeighterTest {
             for (Row ro : r)
                 System.out.println(ro);
 
+            // A single document is weighted with the statistics computed at fit time.
+            Row fullWeights = dfWeights.filter(dfWeights.col("docID").equalTo(1)).select("weights").first();
+            DataFrame dfSingle = bm25Model.transform(dfOccur.filter(dfOccur.col("docID").equalTo(1)));
+            Assert.assertEquals(fullWeights, dfSingle.select("weights").first());
+
+            System.out.println("---- DATASET WEIGHTED WITH SAVED MODEL----");
+            String modelPath = Files.createTempDirectory("nlp4sparkml").resolve("model").toString();
+            bm25Model.save(modelPath);
+            BM25WeighterModel loadedModel = BM25WeighterModel.load(modelPath);
+            Assert.assertEquals(bm25Model.uid(), loadedModel.uid());
+            Assert.assertEquals("weights", loadedModel.getOutputCol());
+            DataFrame dfLoadedWeights = loadedModel.transform(dfOccur);
+            List<Row> loaded = dfLoadedWeights.select(dfLoadedWeights.col("weights")).collectAsList();
+            Assert.assertEquals(r, loaded);
+
         } finally {
             if (sc != null)
                 sc.stop();
@@ -0,0 +1,90 @@
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+package it.cnr.isti.hlt.nlp4sparkml.weighter;
+
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
+
+/**
+ * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ */
+public class CorpusStatisticsTest {
+
+    @Test
+    public void sparseFrequenciesTest() {
+        Random r = new Random(7);
+        CorpusStatistics[] partials = {new CorpusStatistics(), new CorpusStatistics(), new CorpusStatistics()};
+        HashMap<Long, Long> expected = new HashMap<>();
+        long totalLength = 0;
+        int numDocuments = 3000;
+        for (int doc = 0; doc < numDocuments; doc++) {
+            // Hashed IDs spread over a large range, with repeated features in the same document.
+            int numFeatures = 1 + r.nextInt(20);
+            long[] features = new long[numFeatures];
+            long[] occurrences = new long[numFeatures];
+            HashSet<Long> distinct = new HashSet<>();
+            for (int i = 0; i < numFeatures; i++) {
+                features[i] = r.nextInt(5) == 0 ? r.nextInt(10) : (long) r.nextInt(2000) * 1000003L;
+                occurrences[i] = r.nextBoolean() ? 1 + r.nextInt(3) : -1;
+                totalLength += Math.abs(occurrences[i]);
+                distinct.add(features[i]);
+            }
+            for (long featureID : distinct)
+                expected.merge(featureID, 1L, Long::sum);
+            partials[doc % partials.length].add(features, occurrences);
+        }
+
+        CorpusStatistics stats = partials[0].merge(partials[1]).merge(partials[2]);
+        Assert.assertEquals(numDocuments, stats.getNumDocuments());
+        Assert.assertEquals(totalLength / (double) numDocuments, stats.getAvgDocLength(), 1e-9);
+        DocumentFrequencies frequencies = stats.getDocumentFrequencies();
+        Assert.assertEquals(expected.size(), frequencies.size());
+        for (HashMap.Entry<Long, Long> entry : expected.entrySet())
+            Assert.assertEquals(entry.getValue().longValue(), frequencies.get(entry.getKey()));
+        Assert.assertEquals(0, frequencies.get(11));
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+/*
+ *
+ * ****************
+ * This file is part of nlp4sparkml software package (https://github.com/tizfa/nlp4sparkml).
+ *
+ * Copyright 2016 Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ******************
+ */
+
+package it.cnr.isti.hlt.nlp4sparkml.weighter;
+
+import it.cnr.isti.hlt.nlp4sparkml.utils.KryoUtils;
+import junit.framework.Assert;
+import org.apache.spark.SparkConf;
+import org.apache.spark.serializer.KryoSerializer;
+import org.apache.spark.serializer.SerializerInstance;
+import org.junit.Test;
+import scala.reflect.ClassTag$;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @author Tiziano Fagni (tiziano.fagni@isti.cnr.it)
+ */
+public class DocumentFrequenciesTest {
+
+    private static void checkFrequencies(DocumentFrequencies frequencies, Map<Long, Long> expected) throws IOException {
+        Assert.assertEquals(expected.size(), frequencies.size());
+        for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+            Assert.assertEquals(entry.getValue().longValue(), frequencies.get(entry.getKey()));
+            Assert.assertEquals(0, frequencies.get(entry.getKey() + 1000000007L));
+        }
+        Assert.assertEquals(0, frequencies.get(-1));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream os = new DataOutputStream(bytes)) {
+            frequencies.write(os);
+        }
+        try (DataInputStream is = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            DocumentFrequencies read = DocumentFrequencies.read(is);
+            for (Map.Entry<Long, Long> entry : expected.entrySet())
+                Assert.assertEquals(entry.getValue().longValue(), read.get(entry.getKey()));
+        }
+
+        SerializerInstance ser = new KryoSerializer(KryoUtils.enableKryo(new SparkConf())).newInstance();
+        DocumentFrequencies copy = ser.deserialize(ser.serialize(frequencies, ClassTag$.MODULE$.apply(DocumentFrequencies.class)),
+                ClassTag$.MODULE$.apply(DocumentFrequencies.class));
+        Assert.assertEquals(expected.size(), copy.size());
+        for (Map.Entry<Long, Long> entry : expected.entrySet())
+            Assert.assertEquals(entry.getValue().longValue(), copy.get(entry.getKey()));
+    }
+
+    @Test
+    public void lookupTest() throws IOException {
+        HashMap<Long, Long> dense = new HashMap<>();
+        for (long i = 0; i < 1000; i += 2)
+            dense.put(i, i + 1);
+        checkFrequencies(DocumentFrequencies.create(dense), dense);
+
+        HashMap<Long, Long> sparse = new HashMap<>();
+        for (long i = 0; i < 1000; i++)
+            sparse.put(i * 1000003L, 3 * i + 1);
+        checkFrequencies(DocumentFrequencies.create(sparse), sparse);
+        checkFrequencies(DocumentFrequencies.create(new HashMap<>()), new HashMap<>());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void duplicatesTest() {
+        DocumentFrequencies.create(new long[]{3, 1, 3}, new long[]{1, 1, 1});
+    }
+}
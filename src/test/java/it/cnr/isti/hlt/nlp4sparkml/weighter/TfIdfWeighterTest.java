@@ -47,6 +47,7 @@ import it.cnr.isti.hlt.nlp4sparkml.indexer.IdentifierGeneratorModel;
 import it.cnr.isti.hlt.nlp4sparkml.indexer.OccurrencesCounter;
 import it.cnr.isti.hlt.nlp4sparkml.tokenizer.PuntuactionTokenizer;
 import it.cnr.isti.hlt.nlp4sparkml.utils.Logging;
+import it.cnr.isti.hlt.nlp4sparkml.utils.RowUtils;
 import junit.framework.Assert;
 import org.apache.spark.SparkConf;
 import org.apache.spark.api.java.JavaRDD;
@@ -56,7 +57,9 @@ import org.apache.spark.sql.Row;
 import org.apache.spark.sql.SQLContext;
 import org.junit.Test;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -103,7 +106,7 @@ public class TfIdfWeighterTest {
     }
 
     @Test
-    public void pipelineTest() {
+    public void pipelineTest() throws IOException {
         Logging.disableSparkLogging();
         Logging.disableNLP4SparkMLLogging();
         SparkConf conf = new SparkConf();
@@ -147,8 +150,22 @@ public class TfIdfWeighterTest {
             TfIdfWeighterModel tfIdfModel = weighter.setInputCol("occurrences").fit(dfOccur);
             DataFrame dfWeights = tfIdfModel.setInputCol("occurrences").setOutputCol("weights").transform(dfOccur);
             r = dfWeights.select(dfWeights.col("weights")).collectAsList();
-            for (Row ro : r)
+            for (Row ro : r) {
                 System.out.println(ro);
+                long[] weightedFeatures = RowUtils.getLongArray(ro.getStruct(0), TfIdfWeighterModel.FEATURES);
+                for (int i = 1; i < weightedFeatures.length; i++)
+                    Assert.assertTrue(weightedFeatures[i - 1] < weightedFeatures[i]);
+            }
+
+            System.out.println("---- DATASET WEIGHTED WITH SAVED MODEL----");
+            String modelPath = Files.createTempDirectory("nlp4sparkml").resolve("model").toString();
+            tfIdfModel.save(modelPath);
+            TfIdfWeighterModel loadedModel = TfIdfWeighterModel.load(modelPath);
+            Assert.assertEquals(tfIdfModel.uid(), loadedModel.uid());
+            Assert.assertEquals("weights", loadedModel.getOutputCol());
+            DataFrame dfLoadedWeights = loadedModel.transform(dfOccur);
+            List<Row> loaded = dfLoadedWeights.select(dfLoadedWeights.col("weights")).collectAsList();
+            Assert.assertEquals(r, loaded);
 
         } finally {
             if (sc != null)